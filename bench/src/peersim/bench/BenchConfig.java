@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package peersim.bench;
+
+import java.util.*;
+
+import peersim.config.*;
+
+/**
+* Sets the PeerSim configuration for a benchmark. The configuration is
+* static and can be set only once per JVM, so every benchmark that needs a
+* configuration runs its parameter combinations in separate forks (the JMH
+* default) and calls {@link #set} from its trial setup.
+*/
+final class BenchConfig {
+
+
+// ===================== fields ========================================
+// =====================================================================
+
+
+private static Properties current = null;
+
+
+// ====================== initialization ==============================
+// ====================================================================
+
+
+private BenchConfig() {}
+
+
+// ===================== static methods ===============================
+// ====================================================================
+
+
+/**
+* Sets the configuration given as alternating names and values.
+* Calling it again with the same properties has no effect.
+* @throws IllegalStateException if a different configuration was set
+* in this JVM
+*/
+static synchronized void set(String... keyValues) {
+
+	Properties p = new Properties();
+	for (int i = 0; i+1 < keyValues.length; i += 2)
+		p.setProperty(keyValues[i], keyValues[i+1]);
+	if (current != null) {
+		if (current.equals(p)) return;
+		throw new IllegalStateException(
+			"Configuration already set in this JVM, run with forks > 0");
+	}
+	Configuration.setConfig(p);
+	current = p;
+}
+
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package peersim.bench;
+
+import java.io.*;
+import java.util.*;
+
+/**
+* Compares two JMH result files in CSV format (<code>-rf csv</code>), e.g.
+* a stored baseline and the results of the current tree. For every
+* benchmark and parameter combination present in both files it prints the
+* two scores and the change in percent, where a positive change is an
+* improvement: higher throughput, or lower time for the time based modes.
+* Exits with status 1 if some benchmark got worse by more than the
+* threshold.
+* <p>
+* Usage: <code>java peersim.bench.Compare baseline.csv current.csv
+* [threshold percent, default 10]</code>
+*/
+public class Compare {
+
+
+// ===================== static methods ===============================
+// ====================================================================
+
+
+public static void main(String[] args) throws IOException {
+
+	if (args.length < 2) {
+		System.err.println("Usage: peersim.bench.Compare "+
+			"<baseline.csv> <current.csv> [threshold%]");
+		System.exit(2);
+	}
+	double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 10;
+	Map<String,String[]> base = read(args[0]);
+	Map<String,String[]> cur = read(args[1]);
+
+	boolean worse = false;
+	System.out.printf("%-70s %14s %14s %8s%n", "benchmark", "baseline",
+		"current", "change");
+	for (Map.Entry<String,String[]> e : cur.entrySet()) {
+		String[] b = base.get(e.getKey());
+		String[] c = e.getValue();
+		if (b == null) {
+			System.out.printf("%-70s %14s %14s %8s%n", e.getKey(), "-",
+				c[SCORE], "new");
+			continue;
+		}
+		double sb = Double.parseDouble(b[SCORE]);
+		double sc = Double.parseDouble(c[SCORE]);
+		double change = 100*(sc-sb)/sb;
+		if (!c[MODE].equals("thrpt")) change = -change;
+		String mark = "";
+		if (change < -threshold) {
+			worse = true;
+			mark = " WORSE";
+		}
+		System.out.printf("%-70s %14.3f %14.3f %+7.1f%%%s%n", e.getKey(), sb,
+			sc, change, mark);
+	}
+	if (worse) System.exit(1);
+}
+
+// --------------------------------------------------------------------
+
+/** Column indexes in the JMH CSV format */
+private static final int BENCHMARK = 0, MODE = 1, SCORE = 4, UNIT = 6;
+
+/**
+* Reads a JMH CSV file. The key of each row is the benchmark name, the
+* mode, the unit and the parameters.
+*/
+private static Map<String,String[]> read(String file) throws IOException {
+
+	Map<String,String[]> rows = new LinkedHashMap<String,String[]>();
+	BufferedReader in = new BufferedReader(new FileReader(file));
+	try {
+		String[] header = split(in.readLine());
+		String line;
+		while ((line = in.readLine()) != null) {
+			if (line.trim().length() == 0) continue;
+			String[] f = split(line);
+			StringBuilder key = new StringBuilder(f[BENCHMARK]);
+			key.append(' ').append(f[MODE]).append(' ').append(f[UNIT]);
+			for (int i = UNIT+1; i < f.length && i < header.length; ++i)
+				key.append(' ').append(header[i].replace("Param: ", ""))
+				   .append('=').append(f[i]);
+			rows.put(key.toString(), f);
+		}
+	} finally {
+		in.close();
+	}
+	return rows;
+}
+
+// --------------------------------------------------------------------
+
+/** Splits a CSV line whose fields may be quoted (without embedded quotes). */
+private static String[] split(String line) {
+
+	List<String> out = new ArrayList<String>();
+	StringBuilder f = new StringBuilder();
+	boolean quoted = false;
+	for (int i = 0; i < line.length(); ++i) {
+		char c = line.charAt(i);
+		if (c == '"') quoted = !quoted;
+		else if (c == ',' && !quoted) {
+			out.add(f.toString());
+			f.setLength(0);
+		}
+		else f.append(c);
+	}
+	out.add(f.toString());
+	return out.toArray(new String[out.size()]);
+}
+
+}
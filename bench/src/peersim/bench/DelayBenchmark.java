@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+
+package peersim.bench;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import peersim.transport.*;
+import peersim.util.*;
+
+/**
+* Random delays drawn by {@link UniformRandomTransport} and by
+* {@link RandomDelayTransport} with a log-normal, a Pareto and an empirical
+* distribution (a CDF of {@value #POINTS} points, sampled through an
+* {@link AliasTable}). The time is per draw.
+*/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DelayBenchmark {
+
+
+// ===================== parameters ====================================
+// =====================================================================
+
+
+@Param({"uniform", "lognormal", "pareto", "empirical"})
+public String delay;
+
+
+// ===================== constants =====================================
+// =====================================================================
+
+
+/** Draws per invocation */
+public static final int DRAWS = 1000;
+
+/** Points of the empirical CDF */
+public static final int POINTS = 1000;
+
+
+// ===================== fields ========================================
+// =====================================================================
+
+
+private Transport t;
+
+
+// ====================== initialization ==============================
+// ====================================================================
+
+
+@Setup(Level.Trial)
+public void setup() throws IOException {
+
+	final File cdf = File.createTempFile("cdf", ".txt");
+	cdf.deleteOnExit();
+	try (PrintWriter out = new PrintWriter(new FileWriter(cdf))) {
+		// a log-normal CDF, for comparison
+		final double[] v = new double[POINTS];
+		final Random r = new Random(1);
+		for (int i = 0; i < POINTS; ++i)
+			v[i] = new LogNormalDistribution(Math.log(50), 0.5).next(r);
+		Arrays.sort(v);
+		for (int i = 0; i < POINTS; ++i)
+			out.println(v[i] + " " + (i+1.0)/POINTS);
+	}
+	BenchConfig.set(
+		"random.seed", "1234567890",
+		"tr.mindelay", "10",
+		"tr.maxdelay", "1000",
+		"tr.distribution", delay.equals("lognormal") ?
+			LogNormalDistribution.class.getName() : delay.equals("pareto") ?
+			ParetoDistribution.class.getName() :
+			EmpiricalDistribution.class.getName(),
+		"tr.distribution.mu", ""+Math.log(50),
+		"tr.distribution.sigma", "0.5",
+		"tr.distribution.scale", "20",
+		"tr.distribution.shape", "1.5",
+		"tr.distribution.file", cdf.getPath());
+	t = delay.equals("uniform") ? new UniformRandomTransport("tr") :
+		new RandomDelayTransport("tr");
+}
+
+
+// ======================== benchmarks ================================
+// ====================================================================
+
+
+@Benchmark
+@OperationsPerInvocation(DRAWS)
+public long draw() {
+
+	long sum = 0;
+	for (int i = 0; i < DRAWS; ++i) sum += t.getLatency(null, null);
+	return sum;
+}
+
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package peersim.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import peersim.core.*;
+import peersim.edsim.*;
+
+/**
+* Event dispatch of {@link EDSimulator}: every node keeps one event in
+* flight, each delivery schedules the next one with a random delay of
+* mean {@link #delay} (or exactly 1 if the mean is 1, like the forwarding
+* of the search protocols). The
+* experiment is sized to deliver about {@value #EVENTS} events whatever the
+* network size, and the reported time is per event. The work done by the
+* protocol is negligible, so this measures the queue, the dispatch and the
+* bookkeeping of the engine.
+*/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class EngineBenchmark {
+
+
+// ===================== parameters ====================================
+// =====================================================================
+
+
+@Param({"1000", "10000", "100000"})
+public int size;
+
+@Param({"heap", "calendar", "bucket"})
+public String queue;
+
+@Param({"1", "100"})
+public int delay;
+
+
+// ===================== constants =====================================
+// =====================================================================
+
+
+/** Events delivered per experiment (approximately) */
+public static final int EVENTS = 1000000;
+
+/** Event queue classes by parameter value */
+private static final java.util.Map<String,String> QUEUES =
+	new java.util.HashMap<String,String>();
+static {
+	QUEUES.put("heap", "peersim.edsim.Heap");
+	QUEUES.put("calendar", "peersim.edsim.CalendarQueue");
+	QUEUES.put("bucket", "peersim.edsim.BucketQueue");
+}
+
+
+// ====================== initialization ==============================
+// ====================================================================
+
+
+@Setup(Level.Trial)
+public void setup() {
+
+	BenchConfig.set(
+		"random.seed", "1234567890",
+		"network.size", ""+size,
+		"simulation.endtime", ""+((long) EVENTS / size * delay),
+		"simulation.eventqueue", QUEUES.get(queue),
+		"protocol.ping", Ping.class.getName(),
+		"protocol.ping.delay", ""+delay,
+		"init.start", Start.class.getName(),
+		"init.start.protocol", "ping");
+}
+
+
+// ======================== benchmarks ================================
+// ====================================================================
+
+
+/** One experiment; time per delivered event. */
+@Benchmark
+@OperationsPerInvocation(EVENTS)
+public long dispatch() {
+
+	EDSimulator.nextExperiment();
+	return CommonState.getTime();
+}
+
+
+// ======================== components ================================
+// ====================================================================
+
+
+/** Reschedules every event it receives. */
+public static class Ping implements EDProtocol {
+
+	private final int delay;
+
+	public Ping(String prefix) {
+
+		delay = peersim.config.Configuration.getInt(prefix+".delay");
+	}
+
+	public void processEvent(Node node, int pid, Object event) {
+
+		EDSimulator.add(delay == 1 ? 1 : 1+CommonState.r.nextInt(2*delay-1),
+			event, node, pid);
+	}
+
+	public Object clone() {
+
+		try { return super.clone(); }
+		catch (CloneNotSupportedException e) { throw new Error(e); }
+	}
+}
+
+// --------------------------------------------------------------------
+
+/** Schedules the first event of every node. */
+public static class Start implements Control {
+
+	private final int pid;
+
+	public Start(String prefix) {
+
+		pid = peersim.config.Configuration.getPid(prefix+".protocol");
+	}
+
+	public boolean execute() {
+
+		for (int i = 0; i < Network.size(); ++i)
+			EDSimulator.add(0, Boolean.TRUE, Network.get(i), pid);
+		return false;
+	}
+}
+
+}
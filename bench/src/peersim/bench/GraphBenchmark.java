@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package peersim.bench;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import peersim.graph.*;
+
+/**
+* Overlay construction with {@link GraphFactory#wireKOut} and the
+* traversals of {@link GraphAlgorithms} on a k-out graph. No PeerSim
+* configuration is needed.
+*/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+// the recursive algorithms need a deep stack on large graphs
+@Fork(value = 1, jvmArgsAppend = "-Xss256m")
+public class GraphBenchmark {
+
+
+// ===================== parameters ====================================
+// =====================================================================
+
+
+@Param({"1000", "10000", "100000"})
+public int size;
+
+@Param({"10"})
+public int k;
+
+
+// ===================== fields ========================================
+// =====================================================================
+
+
+private Graph g;
+
+private ParallelBFS bfs;
+
+private final GraphAlgorithms ga = new GraphAlgorithms();
+
+private final Random r = new Random(1);
+
+
+// ====================== initialization ==============================
+// ====================================================================
+
+
+@Setup(Level.Trial)
+public void setup() {
+
+	g = GraphFactory.wireKOut(new NeighbourListGraph(size, true), k,
+		new Random(1));
+	bfs = new ParallelBFS(g);
+}
+
+
+// ======================== benchmarks ================================
+// ====================================================================
+
+
+/** Builds a new k-out graph. */
+@Benchmark
+public Graph wireKOut() {
+
+	return GraphFactory.wireKOut(new NeighbourListGraph(size, true), k, r);
+}
+
+// --------------------------------------------------------------------
+
+/** Breadth first search from a random node. */
+@Benchmark
+public int[] dist() {
+
+	ga.dist(g, r.nextInt(size));
+	return ga.d;
+}
+
+// --------------------------------------------------------------------
+
+/** Direction optimizing search from a random node, one thread. */
+@Benchmark
+public int[][] levels() {
+
+	return bfs.levels(new int[] { r.nextInt(size) }, null);
+}
+
+// --------------------------------------------------------------------
+
+/** Weakly connected components. */
+@Benchmark
+public Map weaklyConnectedClusters() {
+
+	return ga.weaklyConnectedClusters(g);
+}
+
+// --------------------------------------------------------------------
+
+/** Strongly connected components (Tarjan). */
+@Benchmark
+public Map tarjan() {
+
+	return ga.tarjan(g);
+}
+
+// --------------------------------------------------------------------
+
+/** Neighbourhood function with 64 registers per counter, one thread. */
+@Benchmark
+public double[] hyperANF() {
+
+	return new HyperANF(bfs, 6, r.nextLong()).run(Integer.MAX_VALUE, null);
+}
+
+// --------------------------------------------------------------------
+
+/** Number of nodes at each distance from a random node. */
+@Benchmark
+public int[] flooding() {
+
+	int[] b = new int[size];
+	ga.flooding(g, b, r.nextInt(size));
+	return b;
+}
+
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package peersim.bench;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import p2p_project.*;
+
+/**
+* The local search of the peer content store ({@link Peer#search}, called
+* by {@link SearchProtocol#searchLocal}) against the previous representation,
+* a <code>HashMap</code> from keyword to file name strings, for random
+* keywords at random peers. {@link #main} prints the memory used per peer.
+*/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@OperationsPerInvocation(IndexBenchmark.LOOKUPS)
+public class IndexBenchmark {
+
+
+// ===================== parameters ====================================
+// =====================================================================
+
+
+@Param({"map", "peer"})
+public String store;
+
+@Param({"10000", "100000"})
+public int peers;
+
+@Param({"100"})
+public int files;
+
+
+// ===================== fields ========================================
+// =====================================================================
+
+
+/** Lookups per operation; the times are per lookup. */
+static final int LOOKUPS = 1 << 16;
+
+private static final String[][] POOLS = {
+	{"guitar","piano","drum","song","album","jazz","rock","concert"},
+	{"soccer","nba","tennis","baseball","stats","team","coach","league"},
+	{"cinema","actor","director","trailer","drama","comedy","scene","film"},
+	{"java","linux","ai","network","database","cloud","security","api"},
+	{"rpg","fps","mario","chess","strategy","quest","level","puzzle"}
+};
+
+/** The keywords of all the pools; keywords[i] has id i. */
+private static final String[] KEYWORDS;
+static {
+	KEYWORDS = new String[POOLS.length*POOLS[0].length];
+	for (int c = 0; c < POOLS.length; ++c)
+		System.arraycopy(POOLS[c], 0, KEYWORDS, c*POOLS[c].length,
+			POOLS[c].length);
+	for (String kw : KEYWORDS) Keywords.id(kw);
+}
+
+/** Index of every peer, as DebugController used to build them. */
+private Map<String,List<String>>[] maps;
+
+/** The file names of every peer, the old Peer kept them besides the index. */
+private List<String>[] names;
+
+private Peer[] store_;
+
+private int[] peerAt;
+
+private int[] keywordAt;
+
+
+// ====================== initialization ==============================
+// ====================================================================
+
+
+@Setup(Level.Trial)
+@SuppressWarnings("unchecked")
+public void setup() {
+
+	final Random r = new Random(1);
+	if (store.equals("map"))
+	{
+		maps = new Map[peers];
+		names = new List[peers];
+		for (int p = 0; p < peers; ++p)
+		{
+			maps[p] = new HashMap<String,List<String>>();
+			names[p] = new ArrayList<String>(files);
+			for (int f = 0; f < files; ++f)
+			{
+				int c = r.nextInt(POOLS.length);
+				String kw = POOLS[c][r.nextInt(POOLS[c].length)];
+				String name = Category.values()[c].name().toLowerCase()+
+					"_"+kw+"_"+r.nextInt(1000)+".txt";
+				names[p].add(name);
+				List<String> l = maps[p].get(kw);
+				if (l == null) maps[p].put(kw, l = new ArrayList<String>());
+				l.add(name);
+			}
+		}
+	}
+	else
+	{
+		store_ = new Peer[peers];
+		for (int p = 0; p < peers; ++p)
+		{
+			int[] codes = new int[files];
+			for (int f = 0; f < files; ++f)
+			{
+				int c = r.nextInt(POOLS.length);
+				String kw = POOLS[c][r.nextInt(POOLS[c].length)];
+				codes[f] = Peer.encode(Category.values()[c],
+					Keywords.id(kw), r.nextInt(1000));
+			}
+			store_[p] = new Peer(Category.fromIndex(p), codes);
+		}
+	}
+	peerAt = new int[LOOKUPS];
+	keywordAt = new int[LOOKUPS];
+	for (int i = 0; i < LOOKUPS; ++i)
+	{
+		peerAt[i] = r.nextInt(peers);
+		keywordAt[i] = r.nextInt(KEYWORDS.length);
+	}
+}
+
+// --------------------------------------------------------------------
+
+private List<String> search(int i) {
+
+	if (maps != null)
+	{
+		List<String> l = maps[peerAt[i]].get(KEYWORDS[keywordAt[i]]);
+		return l == null ? Collections.<String>emptyList() : l;
+	}
+	return store_[peerAt[i]].search(keywordAt[i]);
+}
+
+
+// ======================== benchmarks ================================
+// ====================================================================
+
+
+/**
+* The search of a query, as {@link SearchProtocol} does it: the list of
+* matches and its size. Returns the number of matches.
+*/
+@Benchmark
+public long search() {
+
+	long sum = 0;
+	for (int i = 0; i < LOOKUPS; ++i) sum += search(i).size();
+	return sum;
+}
+
+// --------------------------------------------------------------------
+
+/**
+* As {@link #search}, also reading every matching file name, as when the
+* hits are printed. Returns the total length of the names.
+*/
+@Benchmark
+public long searchNames() {
+
+	long sum = 0;
+	for (int i = 0; i < LOOKUPS; ++i)
+	{
+		final List<String> l = search(i);
+		for (int j = 0; j < l.size(); ++j) sum += l.get(j).length();
+	}
+	return sum;
+}
+
+
+// ======================== memory ====================================
+// ====================================================================
+
+
+/**
+* Prints the heap used per peer by the store.
+* Usage: <code>IndexBenchmark map|peer [peers] [files]</code>.
+*/
+public static void main(String[] args) {
+
+	IndexBenchmark b = new IndexBenchmark();
+	b.store = args[0];
+	b.peers = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+	b.files = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+	long before = used();
+	b.setup();
+	long after = used();
+	System.out.println(b.store+" peers "+b.peers+" files "+b.files+": "+
+		(after-before)/b.peers+" bytes/peer "+b.search(0));
+}
+
+private static long used() {
+
+	Runtime rt = Runtime.getRuntime();
+	for (int i = 0; i < 3; ++i) System.gc();
+	return rt.totalMemory() - rt.freeMemory();
+}
+
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package peersim.bench;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import peersim.core.*;
+import peersim.dynamics.WireKOut;
+
+/**
+* {@link IdleProtocol} against {@link CSRProtocol} on a packed k-out
+* overlay: building the overlay, a scan of every link and a breadth first
+* search, both through the {@link Linkable} interface and through the
+* fastest interface of each protocol (node indices for {@link IdleProtocol},
+* the shared int arrays for {@link CSRProtocol}). {@link #main} prints the
+* memory used per node.
+*/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class LinkableBenchmark {
+
+
+// ===================== parameters ====================================
+// =====================================================================
+
+
+@Param({"idle", "csr"})
+public String protocol;
+
+@Param({"10000", "100000", "1000000"})
+public int size;
+
+@Param({"20"})
+public int k;
+
+
+// ===================== fields ========================================
+// =====================================================================
+
+
+private static final Map<String,String> PROTOCOLS =
+	new HashMap<String,String>();
+static {
+	PROTOCOLS.put("idle", IdleProtocol.class.getName());
+	PROTOCOLS.put("csr", CSRProtocol.class.getName());
+}
+
+private int pid;
+
+private int[] queue;
+
+private boolean[] seen;
+
+private final Random r = new Random(1);
+
+
+// ====================== initialization ==============================
+// ====================================================================
+
+
+@Setup(Level.Trial)
+public void setup() {
+
+	BenchConfig.set(
+		"random.seed", "1234567890",
+		"network.size", ""+size,
+		"protocol.link", PROTOCOLS.get(protocol),
+		"init.rndlink", WireKOut.class.getName(),
+		"init.rndlink.k", ""+k,
+		"init.rndlink.protocol", "link",
+		"init.rndlink.pack", "");
+	build();
+	queue = new int[size];
+	seen = new boolean[size];
+}
+
+
+// ======================== benchmarks ================================
+// ====================================================================
+
+
+/** A new network, wired and packed. */
+@Benchmark
+public int build() {
+
+	Network.reset();
+	pid = peersim.config.Configuration.lookupPid("link");
+	new WireKOut("init.rndlink").execute();
+	return Network.size();
+}
+
+// --------------------------------------------------------------------
+
+/** Visits every link of every node. */
+@Benchmark
+public long scan() {
+
+	long sum = 0;
+	for (int i = 0; i < size; ++i)
+	{
+		Linkable l = (Linkable) Network.get(i).getProtocol(pid);
+		for (int j = 0; j < l.degree(); ++j)
+			sum += l.getNeighbor(j).getIndex();
+	}
+	return sum;
+}
+
+// --------------------------------------------------------------------
+
+/** Breadth first search from a random node; returns the nodes reached. */
+@Benchmark
+public int bfs() {
+
+	Arrays.fill(seen, false);
+	int head = 0, tail = 0;
+	queue[tail++] = r.nextInt(size);
+	seen[queue[0]] = true;
+	while (head < tail)
+	{
+		Linkable l = (Linkable) Network.get(queue[head++]).getProtocol(pid);
+		for (int j = 0; j < l.degree(); ++j)
+		{
+			int v = l.getNeighbor(j).getIndex();
+			if (seen[v]) continue;
+			seen[v] = true;
+			queue[tail++] = v;
+		}
+	}
+	return tail;
+}
+
+
+// --------------------------------------------------------------------
+
+/** As {@link #scan}, on the shared arrays of {@link CSRProtocol}. */
+@Benchmark
+public long scanIndex() {
+
+	Object p = Network.get(0).getProtocol(pid);
+	if (!(p instanceof CSRProtocol)) return scan();
+	final int[] off = ((CSRProtocol) p).getOffsets();
+	final int[] tg = ((CSRProtocol) p).getTargets();
+	long sum = 0;
+	for (int i = 0; i < size; ++i)
+		for (int j = off[i]; j < off[i+1]; ++j)
+			sum += tg[j];
+	return sum;
+}
+
+// --------------------------------------------------------------------
+
+/** As {@link #bfs}, on the shared arrays of {@link CSRProtocol}. */
+@Benchmark
+public int bfsIndex() {
+
+	Object p = Network.get(0).getProtocol(pid);
+	if (!(p instanceof CSRProtocol)) return bfs();
+	final int[] off = ((CSRProtocol) p).getOffsets();
+	final int[] tg = ((CSRProtocol) p).getTargets();
+	Arrays.fill(seen, false);
+	int head = 0, tail = 0;
+	queue[tail++] = r.nextInt(size);
+	seen[queue[0]] = true;
+	while (head < tail)
+	{
+		final int u = queue[head++];
+		for (int j = off[u]; j < off[u+1]; ++j)
+		{
+			final int v = tg[j];
+			if (seen[v]) continue;
+			seen[v] = true;
+			queue[tail++] = v;
+		}
+	}
+	return tail;
+}
+
+
+// ======================== memory ====================================
+// ====================================================================
+
+
+/**
+* Prints the heap used per node by a packed network.
+* Usage: <code>LinkableBenchmark idle|csr [size] [k]</code>.
+*/
+public static void main(String[] args) {
+
+	LinkableBenchmark b = new LinkableBenchmark();
+	b.protocol = args[0];
+	b.size = args.length > 1 ? Integer.parseInt(args[1]) : 1000000;
+	b.k = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+	long before = used();
+	b.setup();
+	long after = used();
+	System.out.println(b.protocol+" size "+b.size+" k "+b.k+": "+
+		(after-before)/b.size+" bytes/node "+Network.get(0).getProtocol(b.pid));
+}
+
+private static long used() {
+
+	Runtime rt = Runtime.getRuntime();
+	for (int i = 0; i < 3; ++i) System.gc();
+	return rt.totalMemory() - rt.freeMemory();
+}
+
+}
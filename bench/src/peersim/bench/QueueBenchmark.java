@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package peersim.bench;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import peersim.edsim.*;
+
+/**
+* Event queue operations: the classic hold model (remove the first event
+* and insert it again a random time later, so the size stays constant) and
+* filling and draining the queue. Compares {@link Heap} with
+* {@link CalendarQueue} and {@link BucketQueue}.
+*/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueueBenchmark {
+
+
+// ===================== parameters ====================================
+// =====================================================================
+
+
+@Param({"heap", "calendar", "bucket"})
+public String queue;
+
+@Param({"1000", "100000", "1000000"})
+public int size;
+
+
+// ===================== fields ========================================
+// =====================================================================
+
+
+/** Mean of the time increments of the hold model */
+private static final int MEAN = 1000;
+
+/** Precomputed increments, so that the RNG is not measured */
+private final int[] inc = new int[1 << 16];
+
+private int next = 0;
+
+private PriorityQ q;
+
+private long now;
+
+/** Used by the fill and drain benchmark */
+private PriorityQ empty;
+
+
+// ====================== initialization ==============================
+// ====================================================================
+
+
+@Setup(Level.Trial)
+public void setup() {
+
+	BenchConfig.set();
+	Random r = new Random(1);
+	for (int i = 0; i < inc.length; ++i) inc[i] = 1 + r.nextInt(2*MEAN);
+	q = create();
+	for (int i = 0; i < size; ++i) q.add(inc[i & (inc.length-1)], null, null, (byte) 0);
+	empty = create();
+}
+
+// --------------------------------------------------------------------
+
+private PriorityQ create() {
+
+	if (queue.equals("calendar")) return new CalendarQueue();
+	if (queue.equals("bucket")) return new BucketQueue();
+	return new Heap();
+}
+
+
+// ======================== benchmarks ================================
+// ====================================================================
+
+
+/** One removeFirst and one add at constant size. */
+@Benchmark
+public long hold() {
+
+	PriorityQ.Event e = q.removeFirst();
+	now = e.time;
+	q.add(now + inc[next++ & (inc.length-1)], e.event, e.node, e.pid);
+	return now;
+}
+
+// --------------------------------------------------------------------
+
+/** Adds 1000 events to an empty queue and removes them; time per event. */
+@Benchmark
+@OperationsPerInvocation(1000)
+public long fillDrain() {
+
+	long t = 0;
+	for (int i = 0; i < 1000; ++i)
+		empty.add(inc[next++ & (inc.length-1)], null, null, (byte) 0);
+	for (int i = 0; i < 1000; ++i) t += empty.removeFirst().time;
+	return t;
+}
+
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+
+package peersim.bench;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import peersim.graph.*;
+
+/**
+* Strongly connected clusters of a large k-out graph:
+* {@link GraphAlgorithms#tarjan} on the graph, and {@link StrongComponents}
+* on its {@link ParallelBFS} copy without a pool (sequential) and on a pool
+* of all the available processors (parallel). The graph is kept in a plain
+* int array, as a {@link NeighbourListGraph} of 10^7 nodes would not fit in
+* the heap.
+*/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class SccBenchmark {
+
+
+// ===================== parameters ====================================
+// =====================================================================
+
+
+@Param({"tarjan", "sequential", "parallel"})
+public String algorithm;
+
+@Param({"1000000", "10000000"})
+public int size;
+
+@Param({"5"})
+public int k;
+
+
+// ===================== fields ========================================
+// =====================================================================
+
+
+private Graph g;
+
+private ParallelBFS copy;
+
+private ForkJoinPool pool;
+
+private final GraphAlgorithms ga = new GraphAlgorithms();
+
+
+// ====================== initialization ==============================
+// ====================================================================
+
+
+@Setup(Level.Trial)
+public void setup() {
+
+	g = new KOut(size, k, new Random(1));
+	if (!algorithm.equals("tarjan")) copy = new ParallelBFS(g);
+	if (algorithm.equals("parallel")) pool = new ForkJoinPool();
+}
+
+// --------------------------------------------------------------------
+
+@TearDown(Level.Trial)
+public void tearDown() {
+
+	if (pool != null) pool.shutdown();
+}
+
+
+// ======================== benchmarks ================================
+// ====================================================================
+
+
+/** The clusters; returns their number. */
+@Benchmark
+public int scc() {
+
+	if (algorithm.equals("tarjan")) return ga.tarjan(g).size();
+	return new StrongComponents(copy).run(pool).size();
+}
+
+
+// ======================== graph =====================================
+// ====================================================================
+
+
+/**
+* A directed graph with k random out-links per node (self loops and
+* multiple links are allowed), in one int array.
+*/
+private static final class KOut implements Graph {
+
+	private final int size, k;
+
+	private final int[] links;
+
+	KOut(int size, int k, Random r) {
+
+		this.size = size;
+		this.k = k;
+		links = new int[size * k];
+		for (int i = 0; i < links.length; ++i) links[i] = r.nextInt(size);
+	}
+
+	public int getNeighbours(int i, int[] buf) {
+
+		if (k <= buf.length) System.arraycopy(links, i * k, buf, 0, k);
+		return k;
+	}
+
+	public Collection<Integer> getNeighbours(int i) {
+
+		List<Integer> l = new ArrayList<Integer>(k);
+		for (int j = 0; j < k; ++j) l.add(links[i * k + j]);
+		return l;
+	}
+
+	public boolean isEdge(int i, int j) {
+
+		for (int x = 0; x < k; ++x) if (links[i * k + x] == j) return true;
+		return false;
+	}
+
+	public Object getNode(int i) { return null; }
+
+	public Object getEdge(int i, int j) { return null; }
+
+	public int size() { return size; }
+
+	public boolean directed() { return true; }
+
+	public boolean setEdge(int i, int j) {
+
+		throw new UnsupportedOperationException();
+	}
+
+	public boolean clearEdge(int i, int j) {
+
+		throw new UnsupportedOperationException();
+	}
+
+	public int degree(int i) { return k; }
+}
+
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package peersim.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import peersim.edsim.*;
+import peersim.util.MetricsRegistry;
+
+/**
+* A whole search experiment of the p2p_project protocols: initialization of
+* the peers, then {@value #QUERIES} queries forwarded by
+* {@link p2p_project.FloodProtocol} or {@link p2p_project.RandomWalkProtocol}
+* over a k-out overlay. Tracing is off, so this measures forwarding,
+* duplicate detection, the local search and the statistics.
+*/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SearchBenchmark {
+
+
+// ===================== parameters ====================================
+// =====================================================================
+
+
+@Param({"flood", "rw"})
+public String protocol;
+
+@Param({"1000", "10000", "100000"})
+public int size;
+
+
+// ===================== constants =====================================
+// =====================================================================
+
+
+/** Number of queries per experiment */
+public static final int QUERIES = 100;
+
+
+// ===================== fields ========================================
+// =====================================================================
+
+
+private int experiment = 0;
+
+
+// ====================== initialization ==============================
+// ====================================================================
+
+
+@Setup(Level.Trial)
+public void setup() {
+
+	BenchConfig.set(
+		"random.seed", "1234567890",
+		"network.size", ""+size,
+		"simulation.endtime", "1000000",
+		"trace.level", "0",
+		"protocol.link", "peersim.core.IdleProtocol",
+		"protocol.search", protocol.equals("flood") ?
+			"p2p_project.FloodProtocol" : "p2p_project.RandomWalkProtocol",
+		"protocol.search.step", "1000",
+		"init.rndlink", "peersim.dynamics.WireKOut",
+		"init.rndlink.k", "4",
+		"init.rndlink.protocol", "link",
+		"control.debug", "p2p_project.DebugController",
+		"control.debug.protocol", "search",
+		"control.debug.linkable", "link",
+		"control.debug.at", "0",
+		"control.debug.filesPerPeer", "10",
+		"control.qd", "p2p_project.QueryDriver",
+		"control.qd.protocol", "search",
+		"control.qd.at", "1",
+		"control.qd.numQueries", ""+QUERIES,
+		"control.qd.ttl", "5",
+		"control.qd.gap", "10",
+		"stats.protocol", protocol,
+		"stats.tag", "bench");
+}
+
+
+// ======================== benchmarks ================================
+// ====================================================================
+
+
+/** One experiment; time per experiment. */
+@Benchmark
+public void experiment() {
+
+	// clears the search statistics of the previous invocation
+	MetricsRegistry.startExperiment(experiment++);
+	EDSimulator.nextExperiment();
+}
+
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+
+package peersim.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import peersim.config.*;
+import peersim.core.*;
+import peersim.edsim.*;
+import peersim.transport.*;
+
+/**
+* Sending through {@link E2ETransport} (a latency matrix on the heap)
+* against {@link CoordinateTransport} (latencies computed from
+* coordinates), with the same synthetic coordinates, so that both give
+* the same latencies. {@link #send} is an experiment in which every node
+* keeps one message in flight to random nodes until about {@value #EVENTS}
+* messages are delivered, and the reported time is per message;
+* {@link #latency} only looks up the latency of random pairs of nodes.
+*/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TransportBenchmark {
+
+
+// ===================== parameters ====================================
+// =====================================================================
+
+
+@Param({"e2e", "coordinates"})
+public String transport;
+
+@Param({"1000", "10000"})
+public int routers;
+
+
+// ===================== constants =====================================
+// =====================================================================
+
+
+/** Messages delivered per experiment (approximately) */
+public static final int EVENTS = 1000000;
+
+/** Nodes of the network */
+public static final int SIZE = 10000;
+
+/** Pairs looked up by {@link #latency} */
+public static final int PAIRS = 1 << 16;
+
+
+// ===================== fields ========================================
+// =====================================================================
+
+
+private Node[] src, dest;
+
+private int tr;
+
+
+// ====================== initialization ==============================
+// ====================================================================
+
+
+@Setup(Level.Trial)
+public void setup() {
+
+	final boolean e2e = transport.equals("e2e");
+	BenchConfig.set(
+		"random.seed", "1234567890",
+		"network.size", ""+SIZE,
+		"simulation.endtime", "1000000000",
+		"protocol.tr", e2e ? E2ETransport.class.getName() :
+			CoordinateTransport.class.getName(),
+		"protocol.ping", Ping.class.getName(),
+		"protocol.ping.transport", "tr",
+		"coord.routers", ""+routers,
+		"coord.height", "10",
+		"init.assign", UniformRouterAssignment.class.getName(),
+		"init.assign.protocol", "tr",
+		"init.start", Start.class.getName(),
+		"init.start.protocol", "ping",
+		"include.init", "assign start");
+	new SyntheticCoordinates("coord").execute();
+	if (e2e) {
+		E2ENetwork.reset(routers, true);
+		for (int i = 0; i < routers; ++i)
+			for (int j = 0; j < i; ++j)
+				E2ENetwork.setLatency(i, j, CoordinateNetwork.getLatency(i, j));
+	}
+	// a first experiment sets up the network for latency()
+	EDSimulator.nextExperiment();
+	tr = Configuration.lookupPid("tr");
+	src = new Node[PAIRS];
+	dest = new Node[PAIRS];
+	for (int i = 0; i < PAIRS; ++i) {
+		src[i] = Network.get(CommonState.r.nextInt(Network.size()));
+		dest[i] = Network.get(CommonState.r.nextInt(Network.size()));
+	}
+}
+
+
+// ======================== benchmarks ================================
+// ====================================================================
+
+
+/** One experiment; time per delivered message. */
+@Benchmark
+@OperationsPerInvocation(EVENTS)
+public long send() {
+
+	EDSimulator.nextExperiment();
+	return CommonState.getTime();
+}
+
+// --------------------------------------------------------------------
+
+/** Time per latency lookup. */
+@Benchmark
+@OperationsPerInvocation(PAIRS)
+public long latency() {
+
+	final Transport t = (Transport) src[0].getProtocol(tr);
+	long sum = 0;
+	for (int i = 0; i < PAIRS; ++i)
+		sum += t.getLatency(src[i], dest[i]);
+	return sum;
+}
+
+
+// ======================== components ================================
+// ====================================================================
+
+
+/** Sends every message it receives to a random node. */
+public static class Ping implements EDProtocol {
+
+	/** Messages left to send in the experiment */
+	static long left;
+
+	public Ping(String prefix) {}
+
+	public void processEvent(Node node, int pid, Object event) {
+
+		if (left-- <= 0) return;
+		final Node to = Network.get(CommonState.r.nextInt(Network.size()));
+		((Transport) node.getProtocol(FastConfig.getTransport(pid))).send(
+			node, to, event, pid);
+	}
+
+	public Object clone() {
+
+		try { return super.clone(); }
+		catch (CloneNotSupportedException e) { throw new Error(e); }
+	}
+}
+
+// --------------------------------------------------------------------
+
+/** Schedules the first message of every node. */
+public static class Start implements Control {
+
+	private final int pid;
+
+	public Start(String prefix) {
+
+		pid = Configuration.getPid(prefix+".protocol");
+	}
+
+	public boolean execute() {
+
+		Ping.left = EVENTS;
+		for (int i = 0; i < Network.size(); ++i)
+			EDSimulator.add(0, Boolean.TRUE, Network.get(i), pid);
+		return false;
+	}
+}
+
+}
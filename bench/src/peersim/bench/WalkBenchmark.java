@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package peersim.bench;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import p2p_project.*;
+
+/**
+* {@link WalkEngine} on a random k-out overlay without matches, so every
+* walker runs until the ttl or a revisit: with one walker per batch (a
+* single dependent chain of memory accesses) and with larger batches.
+* One operation runs all the walkers and returns the number of steps.
+*/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class WalkBenchmark {
+
+
+// ===================== parameters ====================================
+// =====================================================================
+
+
+@Param({"1", "64", "1024"})
+public int batch;
+
+@Param({"100000", "1000000"})
+public int size;
+
+@Param({"20"})
+public int k;
+
+@Param({"100000"})
+public int walkers;
+
+@Param({"64"})
+public int ttl;
+
+@Param({"1"})
+public int threads;
+
+
+// ===================== fields ========================================
+// =====================================================================
+
+
+private WalkEngine engine;
+
+private ExecutorService pool;
+
+
+// ====================== initialization ==============================
+// ====================================================================
+
+
+@Setup(Level.Trial)
+public void setup() {
+
+	// k distinct random out-links per node, as WireKOut
+	final Random r = new Random(1);
+	final int[] offsets = new int[size+1];
+	final int[] targets = new int[size*k];
+	for (int i = 0; i < size; ++i)
+	{
+		offsets[i+1] = offsets[i]+k;
+		for (int j = 0; j < k; ++j)
+		{
+			int v;
+			do v = r.nextInt(size);
+			while (v == i || contains(targets, offsets[i], offsets[i]+j, v));
+			targets[offsets[i]+j] = v;
+		}
+	}
+	engine = new WalkEngine(OverlaySnapshot.of(offsets, targets),
+		new Peer[size], ttl, Long.MAX_VALUE, 42, walkers, batch);
+	for (int w = 0; w < walkers; ++w) engine.add(w, r.nextInt(size), 0, 0);
+	if (threads > 1) pool = Executors.newFixedThreadPool(threads);
+}
+
+// --------------------------------------------------------------------
+
+@TearDown(Level.Trial)
+public void tearDown() {
+
+	if (pool != null) pool.shutdown();
+}
+
+// --------------------------------------------------------------------
+
+private static boolean contains(int[] a, int from, int to, int v) {
+
+	for (int i = from; i < to; ++i) if (a[i] == v) return true;
+	return false;
+}
+
+
+// ======================== benchmarks ================================
+// ====================================================================
+
+
+/** Runs all the walkers; returns the number of steps. */
+@Benchmark
+public long walk() {
+
+	engine.run(pool, threads);
+	long steps = 0;
+	for (int w = 0; w < walkers; ++w) steps += engine.forwards(w);
+	return steps;
+}
+
+}
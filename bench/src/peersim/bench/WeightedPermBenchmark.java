@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+
+package peersim.bench;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import peersim.util.*;
+
+/**
+* Weighted random permutations: {@link WeightedRandPerm} (a linear scan per
+* draw) against {@link FastWeightedRandPerm} (a Fenwick tree), drawing
+* {@value #DRAWS} elements after each reset, over weights uniform in
+* [1,100]. The time is per element drawn.
+*/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WeightedPermBenchmark {
+
+
+// ===================== parameters ====================================
+// =====================================================================
+
+
+@Param({"linear", "tree"})
+public String perm;
+
+@Param({"100", "10000", "1000000"})
+public int size;
+
+
+// ===================== constants =====================================
+// =====================================================================
+
+
+/** Elements drawn after each reset */
+public static final int DRAWS = 100;
+
+
+// ===================== fields ========================================
+// =====================================================================
+
+
+private IndexIterator it;
+
+
+// ====================== initialization ==============================
+// ====================================================================
+
+
+@Setup(Level.Trial)
+public void setup() {
+
+	final Random r = new Random(1234567890);
+	final double[] w = new double[size];
+	for (int i = 0; i < size; ++i) w[i] = 1+99*r.nextDouble();
+	it = perm.equals("linear") ? new WeightedRandPerm(r, w) :
+		new FastWeightedRandPerm(r, w);
+}
+
+
+// ======================== benchmarks ================================
+// ====================================================================
+
+
+@Benchmark
+@OperationsPerInvocation(DRAWS)
+public long draws() {
+
+	it.reset(size);
+	long sum = 0;
+	for (int i = 0; i < DRAWS; ++i) sum += it.next();
+	return sum;
+}
+
+}
@@ -0,0 +1,53 @@
+package p2p_project;
+
+// approximate SeenSet: a bloom filter sized for "capacity" qids with false positive rate "fpr"
+// a false positive means a node wrongly drops a query it never processed
+// there are no false negatives, so a query is never processed twice by a node
+public class BloomSeenSet implements SeenSet {
+
+    private final int capacity;
+    private final double fpr;
+    private final long[] bits;
+    private final int numBits; // power of two
+    private final int hashes;
+
+    public BloomSeenSet(int capacity, double fpr) {
+        if (fpr <= 0 || fpr >= 1) throw new IllegalArgumentException("fpr must be in (0,1): " + fpr);
+        this.capacity = Math.max(1, capacity);
+        this.fpr = fpr;
+        // standard sizing: m = -n ln(p) / (ln 2)^2, k = m/n ln 2
+        double m = -this.capacity * Math.log(fpr) / (Math.log(2) * Math.log(2));
+        this.numBits = Integer.highestOneBit((int) Math.min(1 << 30, Math.max(64, Math.ceil(m))) * 2 - 1);
+        this.bits = new long[Math.max(1, numBits >>> 6)];
+        this.hashes = Math.max(1, (int) Math.round(numBits / (double) this.capacity * Math.log(2)));
+    }
+
+    @Override
+    public boolean add(long qid) {
+        // double hashing: h1 + i*h2
+        long h = qid * 0x9E3779B97F4A7C15L;
+        int h1 = (int) (h >>> 32);
+        int h2 = (int) h | 1;
+        int mask = numBits - 1;
+        boolean isNew = false;
+        for (int i = 0; i < hashes; i++) {
+            int b = (h1 + i * h2) & mask;
+            long m = 1L << (b & 63);
+            if ((bits[b >>> 6] & m) == 0) {
+                bits[b >>> 6] |= m;
+                isNew = true;
+            }
+        }
+        return isNew;
+    }
+
+    @Override
+    public long memoryBytes() {
+        return 40 + 16 + 8L * bits.length;
+    }
+
+    @Override
+    public SeenSet fresh() {
+        return new BloomSeenSet(capacity, fpr);
+    }
+}
@@ -7,9 +7,6 @@ import peersim.core.Node;
 import peersim.core.CommonState;
 import peersim.core.Linkable;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
 
@@ -18,7 +15,7 @@ import java.util.Random;
  * it also prints helpful debug information
  * 
  * - assigns categories to peers and generates their corresponding files
- * - maps keywords to matching files for fast local lookup
+ * - maps keywords to matching files for fast local lookup (interned keyword ids, see Peer)
  * - generate files deterministically using the simulation random seed
  * - prints neighbor lists when simulation starts
  * - prints peer state for debugging
@@ -52,8 +49,8 @@ public class DebugController implements Control {
         Random random = CommonState.r; // results reproducible because random.seed set in config
 
         // print neighbor list of every peer at time = 0
-        if (t == 0) {
-            System.out.println("\n=== NEIGHBOR LISTS (time 0) ===");
+        if (t == 0 && Trace.DEBUGS) {
+            Trace.debug("\n=== NEIGHBOR LISTS (time 0) ===");
             for (int i = 0; i < Network.size(); i++) {
                 Node n = Network.get(i);
                 Linkable l = (Linkable) n.getProtocol(linkPid);
@@ -67,9 +64,9 @@ public class DebugController implements Control {
                 }
                 sb.append("]");
         
-                System.out.println(sb.toString());
+                Trace.debug(sb.toString());
             }
-            System.out.println("=== END NEIGHBORS ===\n");
+            Trace.debug("=== END NEIGHBORS ===\n");
         }
         
         // loop through all peers
@@ -81,37 +78,38 @@ public class DebugController implements Control {
             // assign category and generate files at the peer node
             if (proto.getPeer() == null) {
                 Category category = Category.fromIndex(n.getID());
-                List<String> files = genFiles(category, random);
-                // build keyword index 
-                // keyword -> files containing keyword
-                Map<String, List<String>> index = buildIndex(files);
-
-                proto.setPeer(new Peer(category, files, index)); // attach peer data
+                int[] files = genFiles(category, random);
+                // Peer builds the keyword index: keyword id -> files containing keyword
+                proto.setPeer(new Peer(category, files)); // attach peer data
             }
 
             // get peer and print debug info
-            Peer p = proto.getPeer();
-            List<String> sample = p.files.subList(0, Math.min(3, p.files.size()));
-            System.out.println("Node " + n.getID()
-                    + " category=" + p.category
-                    + " sample=" + sample
-                    + " time=" + t);
+            if (Trace.DEBUGS) {
+                Peer p = proto.getPeer();
+                List<String> sample = p.files().subList(0, Math.min(3, p.fileCount()));
+                Trace.debug("Node " + n.getID()
+                        + " category=" + p.category
+                        + " sample=" + sample
+                        + " time=" + t);
+            }
         }
         return false;
     }
 
     // helper to generate files for a given peer based on its category
-    private List<String> genFiles(Category category, Random random) {
-        List<String> out = new ArrayList<>(filesPerPeer);
+    // files are int codes, see Peer.encode
+    private int[] genFiles(Category category, Random random) {
+        int[] out = new int[filesPerPeer];
+        int k = 0;
 
         for (int i = 0; i < inCategory; i++) {
             String keyword = pickKeyword(category, random);
-            out.add(makeFilename(category, keyword, random));
+            out[k++] = makeFile(category, keyword, random);
         }
         for (int i = 0; i < filesPerPeer - inCategory; i++) {
             Category other = pickOther(category, random);
             String keyword = pickKeyword(other, random);
-            out.add(makeFilename(other, keyword, random));
+            out[k++] = makeFile(other, keyword, random);
         }
         return out;
     }
@@ -126,10 +124,10 @@ public class DebugController implements Control {
         return other;
     }
 
-    // helper to create .txt file names based on category, keyword, and a random integer
+    // helper to create .txt files based on category, keyword, and a random integer
     // e.g. a MUSIC peer file may be named music_guitar_123.txt
-    private static String makeFilename(Category category, String keyword, Random random) {
-        return category.name().toLowerCase() + "_" + keyword + "_" + random.nextInt(1000) + ".txt";
+    private static int makeFile(Category category, String keyword, Random random) {
+        return Peer.encode(category, Keywords.id(keyword), random.nextInt(1000));
     }
 
     // helper that returns random (preset) keywords based on category
@@ -144,27 +142,4 @@ public class DebugController implements Control {
         }
         return pool[random.nextInt(pool.length)];
     }
-
-    // helper that builds the search index
-    // example:
-    //    guitar → [file1, file2]
-    //    piano → [file3]
-    private Map<String, List<String>> buildIndex(List<String> files) {
-        Map<String, List<String>> map = new HashMap<>();
-    
-        for (String f : files) {
-            String keyword = extractKeyword(f);
-            map.computeIfAbsent(keyword, k -> new ArrayList<>()).add(f);
-        }
-    
-        return map;
-    }
-
-    // helper that extracts keywords based on filename
-    // based on format: category_keyword_id.txt
-    private String extractKeyword(String filename) {
-        String[] parts = filename.split("_");
-        if (parts.length >= 2) return parts[1];
-        return filename;
-    }
 }
@@ -2,7 +2,9 @@ package p2p_project;
 
 import peersim.core.Node;
 import peersim.core.Linkable;
+import peersim.config.FastConfig;
 import peersim.edsim.EDSimulator;
+import peersim.transport.Transport;
 
 // implements flood search as a SearchProtocol extension
 public class FloodProtocol extends SearchProtocol {
@@ -11,15 +13,42 @@ public class FloodProtocol extends SearchProtocol {
     }
     // FLOODING
     // send query to all neighbors except self and origin
+    // all neighbors receive the same (pooled) query object, through the
+    // transport of this protocol, or through a single multicast event if
+    // there is no transport. the targets of a multicast are collected in the
+    // scratch array of the pool, so a hop does not allocate
     @Override
     public void forwardQuery(Node node, int pid, Query q) {
         Linkable link = (Linkable) node.getProtocol(linkPid);
-        for (int i = 0; i < link.degree(); i++) {
-            Node nb = link.getNeighbor(i);
-            if (nb.getID() == node.getID()) continue;
-            if (nb.getID() == q.senderId) continue;
-            Stats.queryForwards++;
-            EDSimulator.add(1, q.nextHop(node.getID()), nb, pid);
+        MessagePool pool = MessagePool.get();
+        Query next = pool.nextHop(q, node.getID());
+        int degree = link.degree();
+        if (FastConfig.hasTransport(pid)) {
+            Transport t = (Transport) node.getProtocol(FastConfig.getTransport(pid));
+            for (int i = 0; i < degree; i++) {
+                Node nb = link.getNeighbor(i);
+                if (skip(nb, node, q)) continue;
+                Stats.forwarded(q.qid);
+                next.retain();
+                t.send(node, nb, next, pid);
+            }
+        } else {
+            Node[] targets = pool.targets(degree);
+            int n = 0;
+            for (int i = 0; i < degree; i++) {
+                Node nb = link.getNeighbor(i);
+                if (skip(nb, node, q)) continue;
+                Stats.forwarded(q.qid);
+                next.retain();
+                targets[n++] = nb;
+            }
+            EDSimulator.multicast(1, next, targets, n, pid);
+            java.util.Arrays.fill(targets, 0, n, null);
         }
+        pool.done(next);
+    }
+
+    private static boolean skip(Node nb, Node node, Query q) {
+        return nb.getID() == node.getID() || nb.getID() == q.senderId;
     }
 }
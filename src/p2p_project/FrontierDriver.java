@@ -0,0 +1,312 @@
+package p2p_project;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import peersim.config.Configuration;
+import peersim.config.FastConfig;
+import peersim.config.IllegalParameterException;
+import peersim.core.CommonState;
+import peersim.core.Control;
+import peersim.core.Network;
+import peersim.util.MetricsRegistry;
+
+// bulk-synchronous replacement of QueryDriver, same parameters plus "linkable" and "threads"
+//
+// instead of one event per message, every query is run to the end when the control executes,
+// one round per hop (one tick), over a CSR copy of the overlay (OverlaySnapshot):
+// - flood: the frontier of a round is the set of nodes that get the query for the first time
+//   in that tick. frontiers are int arrays and a bitset marks the visited nodes; large
+//   frontiers are split among the threads
+// - random walk: one walker per query, run in batches by WalkEngine. each walker has its own
+//   random generator, so walkers can run on any thread in any order
+//
+// results go to Stats as the event driven protocols would report them, with their simulated
+// times. hits, first hit latency and hops are the same as with QueryDriver. flood forwards are
+// the same on symmetric overlays: a node that gets the query from several neighbors in the same
+// tick takes the lowest index one as sender, where the event run takes whichever comes first.
+// random walks are the same in distribution, not draw for draw (the event run uses CommonState.r)
+//
+// assumes node ids are network indices (as QueryDriver does), the overlay and the up state do not
+// change while the queries run, and exact duplicate detection (seen = hash). there is no
+// per-message tracing, and the seen sets of the protocols are not touched
+//
+// every hop takes one tick, as when the search protocol has no transport; a protocol with a
+// transport is rejected, since its delays and drops would be ignored
+public class FrontierDriver implements Control {
+
+    private static final String PID = "protocol";
+    private static final String LINKABLE = "linkable";
+    private static final String NUM_QUERIES = "numQueries";
+    private static final String TTL = "ttl";
+    private static final String ORIGIN = "origin";
+    private static final String GAP = "gap";
+    private static final String START_QID = "startQid";
+    private static final String THREADS = "threads"; // optional, default 1
+
+    // registry names
+    public static final String TIMER = "search.frontier";
+    public static final String MAX_FRONTIER = "search.frontier.max";
+
+    // frontiers smaller than this are expanded by the calling thread
+    private static final int CHUNK = 4096;
+    private static final int NONE = Integer.MAX_VALUE;
+
+    private final int pid;
+    private final int linkPid;
+    private final int numQueries;
+    private final int ttl;
+    private final long originId;
+    private final int gap;
+    private final long startQid;
+    private final int threads;
+    private boolean done = false;
+
+    // state of the run
+    private OverlaySnapshot g;
+    private Peer[] peers;
+    private ExecutorService pool;
+
+    // flood state, reused by all queries and reset after each one
+    private int[] queue; // visited nodes in the order of their rounds
+    private long[] visited;
+    private AtomicIntegerArray sender; // NONE if not visited
+
+    public FrontierDriver(String prefix) {
+        this.pid = Configuration.getPid(prefix + "." + PID);
+        if (FastConfig.hasTransport(pid))
+            throw new IllegalParameterException(prefix + "." + PID, "the protocol has a transport; "
+                    + "FrontierDriver counts one tick per hop and would ignore its delays and drops");
+        this.linkPid = Configuration.getPid(prefix + "." + LINKABLE);
+        this.numQueries = Configuration.getInt(prefix + "." + NUM_QUERIES, 10);
+        this.ttl = Configuration.getInt(prefix + "." + TTL, 3);
+        this.originId = Configuration.getLong(prefix + "." + ORIGIN, 0L);
+        this.gap = Configuration.getInt(prefix + "." + GAP, 0);
+        this.startQid = Configuration.getLong(prefix + "." + START_QID, 1L);
+        this.threads = Math.max(1, Configuration.getInt(prefix + "." + THREADS, 1));
+    }
+
+    @Override
+    public boolean execute() {
+        if (done) return false;
+        done = true;
+
+        MetricsRegistry.Timer timer = MetricsRegistry.current().timer(TIMER);
+        long t = timer.start();
+
+        Object proto = Network.get((int) originId).getProtocol(pid);
+        if (!(proto instanceof FloodProtocol) && !(proto instanceof RandomWalkProtocol))
+            throw new IllegalStateException("FrontierDriver: " + proto.getClass().getName()
+                    + " is neither a flood nor a random walk");
+
+        g = OverlaySnapshot.of(linkPid);
+        peers = new Peer[g.size];
+        for (int i = 0; i < g.size; i++)
+            peers[i] = ((SearchProtocol) Network.get(i).getProtocol(pid)).getPeer();
+        if (threads > 1) {
+            pool = Executors.newFixedThreadPool(threads, r -> {
+                Thread th = new Thread(r, "frontier");
+                th.setDaemon(true);
+                return th;
+            });
+        }
+
+        long now = CommonState.getTime();
+        long end = CommonState.getEndTime();
+        int origin = (int) originId;
+        if (Trace.HITS) Trace.batchStart(now);
+
+        // the first n queries are injected before the end time, as QueryDriver would schedule them
+        int n = 0;
+        int[] kw = new int[QueryDriver.KEYWORDS.length];
+        for (int i = 0; i < kw.length; i++) kw[i] = Keywords.id(QueryDriver.KEYWORDS[i]);
+        for (int i = 0; i < numQueries; i++) {
+            Stats.queryStarted(startQid + i, now);
+            if (end - now > (long) i * gap) n = i + 1;
+        }
+
+        try {
+            if (proto instanceof FloodProtocol) {
+                queue = new int[g.size];
+                visited = new long[(g.size + 63) >>> 6];
+                sender = new AtomicIntegerArray(g.size);
+                for (int i = 0; i < g.size; i++) sender.set(i, NONE);
+                for (int i = 0; i < n; i++)
+                    flood(startQid + i, kw[i % kw.length], origin, now + (long) i * gap, end);
+            } else {
+                walk(n, kw, origin, now, end, CommonState.r.nextLong());
+            }
+        } finally {
+            if (pool != null) pool.shutdownNow();
+            pool = null;
+            g = null;
+            peers = null;
+            queue = null;
+            visited = null;
+            sender = null;
+        }
+        timer.stop(t);
+        return false;
+    }
+
+    // FLOODING
+    // round h processes the nodes that got the query at time t0 + h
+    private void flood(long qid, int kw, int origin, long t0, long end) {
+        if (!g.isUp(origin)) return;
+        queue[0] = origin;
+        mark(origin);
+        sender.set(origin, origin);
+        int from = 0, to = 1; // current frontier, queue[from .. to)
+        MetricsRegistry.Gauge max = MetricsRegistry.current().gauge(MAX_FRONTIER);
+
+        for (int h = 0; from < to; h++) {
+            long time = t0 + h;
+            boolean deliver = end - time > 1; // messages sent now arrive before the end
+            Round r = new Round(from, to, kw, h < ttl, deliver);
+            int n = to - from;
+            if (pool == null || n < 2 * CHUNK) {
+                r.next = queue; // sequential: the next frontier goes right after this one
+                r.nextSize = to;
+                r.call();
+            } else {
+                r = expand(r, n);
+            }
+            max.max(n);
+
+            if (r.forwards > 0) Stats.forwarded(qid, r.forwards);
+            if (r.hits > 0) {
+                Stats.hitsSent(qid, r.hits);
+                if (deliver && g.isUp(origin)) Stats.hitsReceived(qid, time + 1, h, r.hits);
+            }
+
+            // the claimed nodes form the next frontier, visited from now on
+            int next = r.next == queue ? r.nextSize : to + r.nextSize;
+            for (int k = to; k < next; k++) mark(queue[k]);
+            from = to;
+            to = next;
+        }
+
+        // reset for the next query
+        for (int k = 0; k < to; k++) {
+            int v = queue[k];
+            visited[v >>> 6] = 0;
+            sender.set(v, NONE);
+        }
+    }
+
+    // splits the frontier among the threads and gathers the next frontier after it
+    private Round expand(Round whole, int n) {
+        int chunks = Math.min(threads * 4, (n + CHUNK - 1) / CHUNK);
+        List<Round> parts = new ArrayList<>(chunks);
+        for (int c = 0; c < chunks; c++) {
+            Round p = new Round(whole.from + (int) ((long) n * c / chunks),
+                    whole.from + (int) ((long) n * (c + 1) / chunks), whole.kw, whole.forward, whole.deliver);
+            p.next = new int[64];
+            parts.add(p);
+        }
+        int tail = whole.to;
+        for (Round p : invokeAll(parts)) {
+            whole.forwards += p.forwards;
+            whole.hits += p.hits;
+            System.arraycopy(p.next, 0, queue, tail, p.nextSize);
+            tail += p.nextSize;
+        }
+        whole.next = null;
+        whole.nextSize = tail - whole.to;
+        return whole;
+    }
+
+    private void mark(int v) { visited[v >>> 6] |= 1L << v; }
+
+    private boolean isVisited(int v) { return (visited[v >>> 6] & (1L << v)) != 0; }
+
+    // makes u the sender of v if it has a lower index than the current one
+    // returns true for the first sender, that is when v joins the next frontier
+    private boolean claim(int v, int u) {
+        while (true) {
+            int s = sender.get(v);
+            if (u >= s) return false;
+            if (sender.compareAndSet(v, s, u)) return s == NONE;
+        }
+    }
+
+    // one round over queue[from .. to)
+    private final class Round implements Callable<Round> {
+        final int from, to, kw;
+        final boolean forward, deliver;
+        int[] next; // claimed nodes
+        int nextSize;
+        int forwards, hits;
+
+        Round(int from, int to, int kw, boolean forward, boolean deliver) {
+            this.from = from;
+            this.to = to;
+            this.kw = kw;
+            this.forward = forward;
+            this.deliver = deliver;
+        }
+
+        @Override
+        public Round call() {
+            int[] off = g.offsets, tg = g.targets;
+            for (int k = from; k < to; k++) {
+                int u = queue[k];
+                Peer p = peers[u];
+                // a node with a match answers and does not forward
+                if (p != null && p.count(kw) > 0) {
+                    hits++;
+                    continue;
+                }
+                if (!forward) continue;
+                int s = sender.get(u);
+                for (int e = off[u]; e < off[u + 1]; e++) {
+                    int v = tg[e];
+                    if (v == u || v == s) continue;
+                    forwards++;
+                    if (!deliver || !g.isUp(v) || isVisited(v)) continue;
+                    if (claim(v, u)) {
+                        if (nextSize == next.length) next = Arrays.copyOf(next, nextSize * 2);
+                        next[nextSize++] = v;
+                    }
+                }
+            }
+            return this;
+        }
+    }
+
+    // RANDOM WALK
+    private void walk(int n, int[] kw, int origin, long now, long end, long seed) {
+        if (!g.isUp(origin)) return;
+        WalkEngine walks = new WalkEngine(g, peers, ttl, end, seed, n);
+        for (int i = 0; i < n; i++) walks.add(startQid + i, origin, kw[i % kw.length], now + (long) i * gap);
+        walks.run(pool, threads);
+        for (int w = 0; w < n; w++) {
+            long qid = walks.qid(w);
+            if (walks.forwards(w) > 0) Stats.forwarded(qid, walks.forwards(w));
+            if (!walks.hit(w)) continue;
+            Stats.hitSent(qid);
+            long time = walks.hitTime(w);
+            if (time >= 0) Stats.hitReceived(qid, time, walks.hitHops(w));
+        }
+    }
+
+    private <T> List<T> invokeAll(List<? extends Callable<T>> tasks) {
+        List<T> out = new ArrayList<>(tasks.size());
+        try {
+            for (Future<T> f : pool.invokeAll(tasks)) out.add(f.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+        return out;
+    }
+}
@@ -0,0 +1,49 @@
+package p2p_project;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+// global keyword dictionary: every distinct keyword gets a small int id
+//
+// peers store the keyword ids of their files instead of strings (see Peer),
+// and queries carry the id of their keyword, so a local search compares ints
+// and a keyword string exists only once in the whole simulation
+//
+// ids are dense, starting from 0, and never reused
+public final class Keywords {
+
+    // ids must fit in the file codes of Peer
+    public static final int MAX = 1 << Peer.KEYWORD_BITS;
+
+    private static final Map<String, Integer> ids = new HashMap<>();
+    private static String[] names = new String[64];
+    private static int size = 0;
+
+    private Keywords() {}
+
+    // id of the keyword, a new one is assigned if it is not known yet
+    public static synchronized int id(String keyword) {
+        Integer id = ids.get(keyword);
+        if (id != null) return id;
+        if (size == MAX) throw new IllegalStateException("more than " + MAX + " keywords");
+        if (size == names.length) names = Arrays.copyOf(names, size * 2);
+        names[size] = keyword;
+        ids.put(keyword, size);
+        return size++;
+    }
+
+    // id of the keyword, -1 if it is not known
+    public static synchronized int lookup(String keyword) {
+        Integer id = ids.get(keyword);
+        return id == null ? -1 : id;
+    }
+
+    public static synchronized String name(int id) {
+        return names[id];
+    }
+
+    public static synchronized int size() {
+        return size;
+    }
+}
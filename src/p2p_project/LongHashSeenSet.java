@@ -0,0 +1,77 @@
+package p2p_project;
+
+// exact SeenSet: open addressing (linear probing) over a primitive long array
+// no boxing and no entry objects, about 8-16 bytes per stored qid
+public class LongHashSeenSet implements SeenSet {
+
+    private static final long EMPTY = 0L; // qid 0 is tracked separately
+
+    private final int initialCapacity;
+    private long[] table;
+    private int size = 0;
+    private boolean hasZero = false;
+
+    // capacity: expected number of qids, rounded up to a power of two
+    public LongHashSeenSet(int capacity) {
+        this.initialCapacity = Math.max(4, capacity);
+        this.table = new long[tableSize(initialCapacity)];
+    }
+
+    @Override
+    public boolean add(long qid) {
+        if (qid == EMPTY) {
+            if (hasZero) return false;
+            hasZero = true;
+            return true;
+        }
+        int mask = table.length - 1;
+        int i = mix(qid) & mask;
+        while (table[i] != EMPTY) {
+            if (table[i] == qid) return false;
+            i = (i + 1) & mask;
+        }
+        table[i] = qid;
+        // keep the load factor at most 1/2
+        if (++size * 2 > table.length) grow();
+        return true;
+    }
+
+    // removes all the qids, keeps the capacity
+    public void clear() {
+        java.util.Arrays.fill(table, EMPTY);
+        size = 0;
+        hasZero = false;
+    }
+
+    @Override
+    public long memoryBytes() {
+        return 16 + 8L * table.length + 16 + 16; // object + array + header
+    }
+
+    @Override
+    public SeenSet fresh() {
+        return new LongHashSeenSet(initialCapacity);
+    }
+
+    private void grow() {
+        long[] old = table;
+        table = new long[old.length * 2];
+        int mask = table.length - 1;
+        for (long k : old) {
+            if (k == EMPTY) continue;
+            int i = mix(k) & mask;
+            while (table[i] != EMPTY) i = (i + 1) & mask;
+            table[i] = k;
+        }
+    }
+
+    // qids are often consecutive: scramble them before masking
+    private static int mix(long k) {
+        k *= 0x9E3779B97F4A7C15L;
+        return (int) (k ^ (k >>> 32));
+    }
+
+    private static int tableSize(int capacity) {
+        return Integer.highestOneBit(capacity * 2 - 1) << 1;
+    }
+}
@@ -0,0 +1,129 @@
+package p2p_project;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import peersim.core.Node;
+
+// recycles Query and Response objects so that forwarding a query does not
+// allocate a new message per hop and per neighbor
+//
+// - a query that is forwarded is shared by all the events carrying it
+//   (e.g. all the neighbors of a flooding node), with a reference count
+// - the receiver releases the message when processEvent is done with it,
+//   the last release puts it back in the pool
+// - messages that are never delivered (dropped at end time, node down) are
+//   simply left to the garbage collector
+//
+// there is one pool per thread, so it is safe with the parallel engine.
+// the counters are printed at the end of the run by Stats and show that
+// the number of allocations stays bounded by the number of messages in
+// flight while the number of reuses grows with the number of forwards
+public class MessagePool {
+
+    // initial capacity of the free lists, they grow as needed
+    private static final int INITIAL = 64;
+
+    private static final List<MessagePool> ALL = new ArrayList<>();
+
+    private static final ThreadLocal<MessagePool> LOCAL = ThreadLocal.withInitial(() -> {
+        MessagePool p = new MessagePool();
+        synchronized (ALL) { ALL.add(p); }
+        return p;
+    });
+
+    private Query[] queries = new Query[INITIAL];
+    private int freeQueries = 0;
+    private Response[] responses = new Response[INITIAL];
+    private int freeResponses = 0;
+    private Node[] targets = new Node[INITIAL];
+
+    // allocation report
+    private long queriesAllocated = 0;
+    private long queriesReused = 0;
+    private long responsesAllocated = 0;
+    private long responsesReused = 0;
+
+    private MessagePool() {}
+
+    // pool of the current thread
+    public static MessagePool get() {
+        return LOCAL.get();
+    }
+
+    // returns a query for the next hop of q, sent by newSenderId
+    // the caller must call retain() on it once per event it is attached to,
+    // and then done(), which recycles it if it was not sent at all
+    public Query nextHop(Query q, long newSenderId) {
+        Query n;
+        if (freeQueries > 0) {
+            n = queries[--freeQueries];
+            queries[freeQueries] = null;
+            queriesReused++;
+            n.set(q.qid, q.originId, newSenderId, q.keyword, q.keywordId, q.ttl - 1, q.hops + 1);
+        } else {
+            n = new Query(q.qid, q.originId, newSenderId, q.keyword, q.keywordId, q.ttl - 1, q.hops + 1);
+            queriesAllocated++;
+        }
+        return n;
+    }
+
+    // to be called after the query returned by nextHop has been sent
+    public void done(Query q) {
+        if (q.refs == 0) recycle(q);
+    }
+
+    // to be called by the receiver of q once it does not need it anymore
+    public void release(Query q) {
+        if (q.releaseRef()) recycle(q);
+    }
+
+    private void recycle(Query q) {
+        q.keyword = null;
+        if (freeQueries == queries.length) queries = java.util.Arrays.copyOf(queries, freeQueries * 2);
+        queries[freeQueries++] = q;
+    }
+
+    // returns a response, to be released by the origin once processed
+    public Response response(long qid, long responderId, List<String> hits, int hops) {
+        Response r;
+        if (freeResponses > 0) {
+            r = responses[--freeResponses];
+            responses[freeResponses] = null;
+            responsesReused++;
+            r.set(qid, responderId, hits, hops);
+        } else {
+            r = new Response(qid, responderId, hits, hops);
+            responsesAllocated++;
+        }
+        return r;
+    }
+
+    public void release(Response r) {
+        r.hits = null;
+        if (freeResponses == responses.length) responses = java.util.Arrays.copyOf(responses, freeResponses * 2);
+        responses[freeResponses++] = r;
+    }
+
+    // scratch array for the receivers of a multicast, at least n long
+    // EDSimulator.multicast copies the receivers, so it is free again once the call returns
+    public Node[] targets(int n) {
+        if (targets.length < n) targets = new Node[Math.max(n, targets.length * 2)];
+        return targets;
+    }
+
+    // one line summary of all the pools, printed at the end of the run
+    public static String report() {
+        long qa = 0, qr = 0, ra = 0, rr = 0;
+        synchronized (ALL) {
+            for (MessagePool p : ALL) {
+                qa += p.queriesAllocated;
+                qr += p.queriesReused;
+                ra += p.responsesAllocated;
+                rr += p.responsesReused;
+            }
+        }
+        return "MessagePool: queries allocated=" + qa + " reused=" + qr
+                + " responses allocated=" + ra + " reused=" + rr;
+    }
+}
@@ -0,0 +1,68 @@
+package p2p_project;
+
+import peersim.core.Linkable;
+import peersim.core.Network;
+import peersim.core.Node;
+
+// immutable copy of an overlay in compressed sparse row form, used by FrontierDriver
+// the neighbors of the node at network index i are targets[offsets[i] .. offsets[i+1]),
+// in the order of its Linkable, and nodes are identified by their network index
+//
+// 4 bytes per link plus 4 bytes per node, and no Node objects to chase while traversing
+public final class OverlaySnapshot {
+
+    public final int size;
+    final int[] offsets;
+    final int[] targets;
+    private final long[] up; // bitset of the nodes that were up
+
+    private OverlaySnapshot(int size, int[] offsets, int[] targets, long[] up) {
+        this.size = size;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.up = up;
+    }
+
+    // copies the links of protocol linkPid of every node in the network
+    public static OverlaySnapshot of(int linkPid) {
+        int n = Network.size();
+        int[] offsets = new int[n + 1];
+        long[] up = new long[(n + 63) >>> 6];
+        long links = 0;
+        for (int i = 0; i < n; i++) {
+            Node node = Network.get(i);
+            if (node.isUp()) up[i >>> 6] |= 1L << i;
+            links += ((Linkable) node.getProtocol(linkPid)).degree();
+            if (links > Integer.MAX_VALUE - 8) throw new IllegalStateException("more than 2^31 links");
+            offsets[i + 1] = (int) links;
+        }
+        int[] targets = new int[(int) links];
+        for (int i = 0; i < n; i++) {
+            Linkable l = (Linkable) Network.get(i).getProtocol(linkPid);
+            int o = offsets[i];
+            for (int j = 0; j < l.degree(); j++) targets[o + j] = l.getNeighbor(j).getIndex();
+        }
+        return new OverlaySnapshot(n, offsets, targets, up);
+    }
+
+    // from arrays in the same form, all nodes up; the arrays are not copied
+    public static OverlaySnapshot of(int[] offsets, int[] targets) {
+        int n = offsets.length - 1;
+        long[] up = new long[(n + 63) >>> 6];
+        java.util.Arrays.fill(up, -1L);
+        return new OverlaySnapshot(n, offsets, targets, up);
+    }
+
+    public int degree(int i) { return offsets[i + 1] - offsets[i]; }
+
+    public int neighbor(int i, int j) { return targets[offsets[i] + j]; }
+
+    public boolean isUp(int i) { return (up[i >>> 6] & (1L << i)) != 0; }
+
+    public int links() { return targets.length; }
+
+    // approximate heap size, including the arrays
+    public long memoryBytes() {
+        return 32 + (16 + 4L * offsets.length) + (16 + 4L * targets.length) + (16 + 8L * up.length);
+    }
+}
@@ -1,20 +1,158 @@
 package p2p_project;
 
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 
 // data class representing peer state
-// contains: peer category, list of its files, and its keyword index
+// contains: peer category, its files, and its keyword index
 
 // note: peer id is not stored in the class itself, but instead tracked by PeerSim
+//
+// files are not stored as strings: a file named {category}_{keyword}_{number}.txt
+// is an int code (see encode). the codes are kept sorted by keyword id (see Keywords),
+// so a search is one binary search on a single array, plus the position of each file
+// in generation order. with 100 files this is about 600 bytes per peer, the file
+// names are only built when they are printed
 public class Peer {
+    // layout of a file code: category | keyword id | number
+    static final int NUMBER_BITS = 10;
+    static final int KEYWORD_BITS = 18;
+    public static final int MAX_NUMBER = 1 << NUMBER_BITS;
+    public static final int MAX_FILES = 1 << 16;
+
+    private static final Category[] CATEGORIES = Category.values(); // values() copies
+
     public final Category category;
-    public final List<String> files;
-    public final Map<String, List<String>> index;
+    private final int[] codes; // file codes sorted by keyword id (stable)
+    private final char[] order; // position in codes of each file, in generation order
 
-    public Peer(Category category, List<String> files, Map<String, List<String>> index) {
+    public Peer(Category category, int[] files) {
+        if (files.length > MAX_FILES) throw new IllegalArgumentException("more than " + MAX_FILES + " files");
         this.category = category;
-        this.files = files;
-        this.index = index;
+
+        // sort (keyword, position) pairs, so files with the same keyword keep their order
+        long[] keys = new long[files.length];
+        for (int i = 0; i < files.length; i++) keys[i] = ((long) keyword(files[i]) << 16) | i;
+        Arrays.sort(keys);
+        codes = new int[files.length];
+        order = new char[files.length];
+        for (int k = 0; k < keys.length; k++) {
+            int i = (int) keys[k] & 0xffff;
+            codes[k] = files[i];
+            order[i] = (char) k;
+        }
+    }
+
+    // code of the file {category}_{keyword}_{number}.txt
+    public static int encode(Category category, int keywordId, int number) {
+        if (number < 0 || number >= MAX_NUMBER) throw new IllegalArgumentException("file number " + number);
+        return (category.ordinal() << (KEYWORD_BITS + NUMBER_BITS)) | (keywordId << NUMBER_BITS) | number;
+    }
+
+    public static int keyword(int code) {
+        return (code >>> NUMBER_BITS) & ((1 << KEYWORD_BITS) - 1);
+    }
+
+    public static String fileName(int code) {
+        Category c = CATEGORIES[code >>> (KEYWORD_BITS + NUMBER_BITS)];
+        return c.name().toLowerCase() + "_" + Keywords.name(keyword(code)) + "_"
+                + (code & (MAX_NUMBER - 1)) + ".txt";
+    }
+
+    // length of fileName(code), without building it
+    public static int nameLength(int code) {
+        Category c = CATEGORIES[code >>> (KEYWORD_BITS + NUMBER_BITS)];
+        int number = code & (MAX_NUMBER - 1);
+        int digits = number < 10 ? 1 : number < 100 ? 2 : number < 1000 ? 3 : 4;
+        return c.name().length() + 1 + Keywords.name(keyword(code)).length() + 1 + digits + 4;
+    }
+
+    // total length of the names in the list, from the codes (no string is built)
+    // when it comes from files() or search()
+    public static int nameLength(List<String> names) {
+        if (names instanceof Names) return ((Names) names).nameLength();
+        int n = 0;
+        for (int i = 0; i < names.size(); i++) n += names.get(i).length();
+        return n;
+    }
+
+    public int fileCount() { return codes.length; }
+
+    // code of the i-th file, in generation order
+    public int fileCode(int i) { return codes[order[i]]; }
+
+    // the file names, in generation order
+    public List<String> files() {
+        return new Names(0, codes.length, false);
+    }
+
+    // number of files with the given keyword
+    public int count(int keywordId) {
+        int from = lowerBound(keywordId);
+        return end(from, keywordId) - from;
+    }
+
+    // the names of the files with the given keyword, in generation order
+    // no allocation when there is no match
+    public List<String> search(int keywordId) {
+        if (keywordId < 0) return Collections.emptyList();
+        int from = lowerBound(keywordId);
+        int to = end(from, keywordId);
+        if (from == to) return Collections.emptyList();
+        return new Names(from, to, true);
+    }
+
+    // approximate heap size of this object, including the arrays
+    public long memoryBytes() {
+        return 24 + (16 + 4L * codes.length) + (16 + 2L * order.length);
+    }
+
+    // first position in codes whose keyword id is >= k
+    private int lowerBound(int k) {
+        int lo = 0, hi = codes.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (keyword(codes[mid]) < k) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    // end of the run of keyword k starting at from, the runs are short
+    // so this scans instead of a second binary search
+    private int end(int from, int k) {
+        int to = from;
+        while (to < codes.length && keyword(codes[to]) == k) to++;
+        return to;
+    }
+
+    // read-only view of a range of files, either in generation or in keyword order
+    private final class Names extends AbstractList<String> {
+        private final int from, to;
+        private final boolean indexed;
+
+        Names(int from, int to, boolean indexed) {
+            this.from = from;
+            this.to = to;
+            this.indexed = indexed;
+        }
+
+        @Override
+        public String get(int i) {
+            if (i < 0 || i >= to - from) throw new IndexOutOfBoundsException("" + i);
+            int p = indexed ? from + i : order[from + i];
+            return fileName(codes[p]);
+        }
+
+        @Override
+        public int size() { return to - from; }
+
+        int nameLength() {
+            int n = 0;
+            for (int i = from; i < to; i++) n += Peer.nameLength(codes[indexed ? i : order[i]]);
+            return n;
+        }
     }
 }
@@ -1,28 +1,71 @@
 package p2p_project;
 
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+import peersim.transport.SizedMessage;
+
 // origin creates a query, which will traverse the network
 
 // for requests
-public class Query {
-    public final long qid;
-    public final long originId;
-    public final long senderId;
-    public final String keyword;
-    public final int ttl; // time to live (i.e. how far query can travel)
-    public final int hops;
+// query objects are recycled through MessagePool, so the fields are not final.
+// they must only be written by the pool; receivers treat a query as read-only
+// because flooding shares one query object between all the neighbors of a hop
+public class Query implements SizedMessage {
+    public long qid;
+    public long originId;
+    public long senderId;
+    public String keyword;
+    public int keywordId; // id of keyword in Keywords, used by the local search
+    public int ttl; // time to live (i.e. how far query can travel)
+    public int hops;
+
+    // number of pending deliveries of this object (see MessagePool)
+    // updated atomically because receivers may run on different threads
+    volatile int refs;
+    private static final AtomicIntegerFieldUpdater<Query> REFS =
+            AtomicIntegerFieldUpdater.newUpdater(Query.class, "refs");
 
     public Query(long qid, long originId, long senderId, String keyword, int ttl, int hops) {
+        set(qid, originId, senderId, keyword, Keywords.id(keyword), ttl, hops);
+    }
+
+    Query(long qid, long originId, long senderId, String keyword, int keywordId, int ttl, int hops) {
+        set(qid, originId, senderId, keyword, keywordId, ttl, hops);
+    }
+
+    // forwards query to next peer based on newSenderId param passed by forwarding algorithm
+    // updates ttl and hops accordingly
+    // note: allocates a new query, the search protocols use MessagePool.nextHop instead
+    public Query nextHop(long newSenderId) {
+        return new Query(qid, originId, newSenderId, keyword, keywordId, ttl - 1, hops + 1);
+    }
+
+    void set(long qid, long originId, long senderId, String keyword, int keywordId, int ttl, int hops) {
         this.qid = qid;
         this.originId = originId;
         this.senderId = senderId;
         this.keyword = keyword;
+        this.keywordId = keywordId;
         this.ttl = ttl;
         this.hops = hops;
+        this.refs = 0;
     }
 
-    // forwards query to next peer based on newSenderId param passed by forwarding algorithm
-    // updates ttl and hops accordingly
-    public Query nextHop(long newSenderId) {
-        return new Query(qid, originId, newSenderId, keyword, ttl - 1, hops + 1);
+    // size on the wire as a Gnutella 0.4 query: 23 byte header, minimum speed,
+    // keyword and terminating zero. used by BandwidthTransport
+    @Override
+    public int getSize() {
+        return 23 + 2 + (keyword == null ? 0 : keyword.length()) + 1;
+    }
+
+    // called once for every event that carries this object
+    void retain() {
+        REFS.incrementAndGet(this);
+    }
+
+    // called once a receiver is done with the object
+    // returns true if it was the last pending delivery
+    boolean releaseRef() {
+        return REFS.decrementAndGet(this) <= 0;
     }
 }
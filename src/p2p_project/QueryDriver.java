@@ -22,6 +22,12 @@ public class QueryDriver implements Control {
     private static final String GAP = "gap"; // optional: ticks between injections
     private static final String START_QID = "startQid"; // optional: base qid
 
+    // keywords of the queries, in turn
+    static final String[] KEYWORDS = {
+        "league","team","coach","soccer","nba",
+        "java","linux","cloud","film","actor"
+    };
+
     // loaded from config
     private final int numQueries;
     private final int ttl;
@@ -57,23 +63,18 @@ public class QueryDriver implements Control {
         // EDSimulator.add(0, msg, target, pid);
         // System.out.println("\nDriver injected QUERY '" + msg.keyword + "' to node " + target.getID() + " (origin)\n");
 
-        String[] keywords = new String[] {
-            "league","team","coach","soccer","nba",
-            "java","linux","cloud","film","actor"
-        };
-    
         Node origin = Network.get((int) originId);
 
-        System.out.println("Query batch start time=" + peersim.core.CommonState.getTime());
+        if (Trace.HITS) Trace.batchStart(peersim.core.CommonState.getTime());
 
         for (int i = 0; i < numQueries; i++) {
             long qid = startQid + i;
-            String kw = keywords[i % keywords.length];
+            String kw = KEYWORDS[i % KEYWORDS.length];
         
             // send query to node origin
             Query msg = new Query(qid, originId, originId, kw, ttl, 0);
         
-            Stats.startTime.put(qid, peersim.core.CommonState.getTime());
+            Stats.queryStarted(qid, peersim.core.CommonState.getTime());
         
             // inject into simulator
             EDSimulator.add((long) i * gap, msg, origin, pid);
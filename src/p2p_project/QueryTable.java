@@ -0,0 +1,132 @@
+package p2p_project;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import peersim.util.LogHistogram;
+
+// per-query measurements kept in primitive arrays, used by Stats
+// not synchronized: Stats serializes everything except message(), which may run
+// concurrently with itself but not with start()
+// replaces the HashMap<Long,Long> maps: about 40 bytes per query, no boxing
+//
+// queries get consecutive slots in the order they are started,
+// an open-addressing index maps qid -> slot
+public class QueryTable {
+
+    private static final int NONE = -1;
+
+    // slot data
+    private long[] qids = new long[64];
+    private long[] starts = new long[64];
+    private long[] hits = new long[64]; // time of the first hit, -1 if none yet
+    private int[] hops = new int[64]; // hops of the first hit
+    // forwards + hits sent for this query; atomic because every node counts its own forwards
+    private AtomicIntegerArray messages = new AtomicIntegerArray(64);
+    private int size = 0;
+
+    // qid -> slot index, NONE for free cells
+    private int[] index = new int[128];
+
+    public QueryTable() {
+        Arrays.fill(index, NONE);
+    }
+
+    public int size() { return size; }
+
+    public long qid(int slot) { return qids[slot]; }
+
+    public long start(int slot) { return starts[slot]; }
+
+    public long hit(int slot) { return hits[slot]; }
+
+    public int hops(int slot) { return hops[slot]; }
+
+    public int messages(int slot) { return messages.get(slot); }
+
+    // registers a new query, ignored if the qid is already known
+    public void start(long qid, long time) {
+        if (find(qid) != NONE) return;
+        if (size == qids.length) growSlots();
+        qids[size] = qid;
+        starts[size] = time;
+        hits[size] = -1;
+        hops[size] = -1;
+        messages.set(size, 0);
+        insert(qid, size);
+        size++;
+        if (size * 2 > index.length) growIndex();
+    }
+
+    // counts a message sent on behalf of the query
+    public void message(long qid) {
+        int s = find(qid);
+        if (s != NONE) messages.incrementAndGet(s);
+    }
+
+    // counts n messages at once
+    public void message(long qid, int n) {
+        int s = find(qid);
+        if (s != NONE) messages.addAndGet(s, n);
+    }
+
+    // records a hit received at the origin; returns the slot if it is the first one, NONE otherwise
+    public int hit(long qid, long time, int hopCount) {
+        int s = find(qid);
+        if (s == NONE || hits[s] >= 0) return NONE;
+        hits[s] = time;
+        hops[s] = hopCount;
+        return s;
+    }
+
+    // distribution of messages per query over all the queries started so far
+    public LogHistogram messageHistogram() {
+        LogHistogram h = new LogHistogram();
+        for (int i = 0; i < size; i++) h.add(messages.get(i));
+        return h;
+    }
+
+    public void clear() {
+        size = 0;
+        Arrays.fill(index, NONE);
+    }
+
+    private int find(long qid) {
+        int mask = index.length - 1;
+        int i = mix(qid) & mask;
+        while (index[i] != NONE) {
+            if (qids[index[i]] == qid) return index[i];
+            i = (i + 1) & mask;
+        }
+        return NONE;
+    }
+
+    private void insert(long qid, int slot) {
+        int mask = index.length - 1;
+        int i = mix(qid) & mask;
+        while (index[i] != NONE) i = (i + 1) & mask;
+        index[i] = slot;
+    }
+
+    private void growSlots() {
+        int n = qids.length * 2;
+        qids = Arrays.copyOf(qids, n);
+        starts = Arrays.copyOf(starts, n);
+        hits = Arrays.copyOf(hits, n);
+        hops = Arrays.copyOf(hops, n);
+        AtomicIntegerArray m = new AtomicIntegerArray(n);
+        for (int i = 0; i < size; i++) m.set(i, messages.get(i));
+        messages = m;
+    }
+
+    private void growIndex() {
+        index = new int[index.length * 2];
+        Arrays.fill(index, NONE);
+        for (int s = 0; s < size; s++) insert(qids[s], s);
+    }
+
+    private static int mix(long k) {
+        k *= 0x9E3779B97F4A7C15L;
+        return (int) (k ^ (k >>> 32));
+    }
+}
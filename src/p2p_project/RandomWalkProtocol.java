@@ -3,7 +3,6 @@ package p2p_project;
 import peersim.core.Node;
 import peersim.core.Linkable;
 import peersim.core.CommonState;
-import peersim.edsim.EDSimulator;
 
 // implements random walk as a SearchProtocol extension
 public class RandomWalkProtocol extends SearchProtocol {
@@ -17,8 +16,10 @@ public class RandomWalkProtocol extends SearchProtocol {
         Linkable link = (Linkable) node.getProtocol(linkPid);
         Node next = pickNeighbor(link, node.getID(), q.senderId);
         if (next == null) return;
-        Stats.queryForwards++;
-        EDSimulator.add(1, q.nextHop(node.getID()), next, pid);
+        Stats.forwarded(q.qid);
+        Query fwd = MessagePool.get().nextHop(q, node.getID());
+        fwd.retain();
+        send(node, next, fwd, pid);
     }
 
     // helper to select a random neighbor that is not self or origin
@@ -2,17 +2,34 @@ package p2p_project;
 
 import java.util.List;
 
+import peersim.transport.SizedMessage;
+
 // if match for query is found, we send back a response to the origin
 
 // for responses: the id of the responder is stored in a response message,
 // this way, origin knows which peer holds the matching data
-public class Response {
-    public final long qid;
-    public final long responderId;
-    public final List<String> hits;
-    public final int hops;
+
+// response objects are recycled through MessagePool, so the fields are not final
+// hits is a read-only view of the responder's index (not a copy)
+public class Response implements SizedMessage {
+    public long qid;
+    public long responderId;
+    public List<String> hits;
+    public int hops;
 
     public Response(long qid, long responderId, List<String> hits, int hops) {
+        set(qid, responderId, hits, hops);
+    }
+
+    // size on the wire as a Gnutella 0.4 query hit: 23 byte header, 11 byte
+    // hit header, index, size, name and two zeros per hit, 16 byte servent id.
+    // used by BandwidthTransport on every send, so the names are not built
+    @Override
+    public int getSize() {
+        return 23 + 11 + 16 + hits.size() * (4 + 4 + 2) + Peer.nameLength(hits);
+    }
+
+    void set(long qid, long responderId, List<String> hits, int hops) {
         this.qid = qid;
         this.responderId = responderId;
         this.hits = hits;
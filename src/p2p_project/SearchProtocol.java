@@ -3,25 +3,25 @@ package p2p_project;
 import java.util.List;
 
 import peersim.config.Configuration;
+import peersim.config.FastConfig;
 import peersim.core.Node;
 import peersim.edsim.EDProtocol;
 import peersim.core.CommonState;
 import peersim.edsim.EDSimulator;
 import peersim.core.Network;
-
-import java.util.HashSet;
-import java.util.Set;
+import peersim.transport.Transport;
 
 public abstract class SearchProtocol implements EDProtocol, PeerProtocol {
     protected static final String PAR_STEP = "step";
     protected final long step;
 
     protected Peer self;
-    protected Set<Long> seen = new HashSet<>();
+    protected SeenSet seen; // duplicate detection, configured by the "seen" parameter
     protected int linkPid = -1; // config sets this
 
     protected SearchProtocol(String prefix) {
         this.step = Configuration.getLong(prefix + "." + PAR_STEP);
+        this.seen = SeenSet.fromConfig(prefix);
     }
     
     // reset per-node state so cloned protocol instances do not share memory
@@ -35,7 +35,7 @@ public abstract class SearchProtocol implements EDProtocol, PeerProtocol {
         }
 
         // per-node state must not be shared
-        c.seen = new HashSet<>();
+        c.seen = seen.fresh();
         c.self = null; // each node will set its own Peer later
         c.linkPid = -1; // set again by DebugController
         return c;
@@ -45,25 +45,18 @@ public abstract class SearchProtocol implements EDProtocol, PeerProtocol {
     public void processEvent(Node node, int pid, Object event) {
         // handle response
         // updates stats for metrics
-        // print information
+        // trace information (see Trace for levels and sinks)
         if (event instanceof Response) {
             Response h = (Response) event;
 
-            Stats.hitsReceivedAtOrigin++;
-            if (!Stats.hitTime.containsKey(h.qid)) {
-                Stats.hitTime.put(h.qid, CommonState.getTime());
-            }
-
-            System.out.println("ORIGIN node " + node.getID()
-                    + " received HIT for qid=" + h.qid
-                    + " from=" + h.responderId
-                    + " hops=" + h.hops
-                    + " hits=" + h.hits
-                    + " time=" + CommonState.getTime());
+            Stats.hitReceived(h.qid, CommonState.getTime(), h.hops);
 
-            System.out.println("STATS: forwards=" + Stats.queryForwards
-                    + " hitsSent=" + Stats.hitsSent
-                    + " hitsRecvAtOrigin=" + Stats.hitsReceivedAtOrigin);
+            if (Trace.HITS) {
+                Trace.hitReceived(CommonState.getTime(), node.getID(), h);
+                Trace.stats(CommonState.getTime(), Stats.queryForwards(), Stats.hitsSent(),
+                        Stats.hitsReceivedAtOrigin());
+            }
+            MessagePool.get().release(h);
             return;
         }
 
@@ -71,31 +64,31 @@ public abstract class SearchProtocol implements EDProtocol, PeerProtocol {
         if (!(event instanceof Query)) return;
         Query q = (Query) event;
 
+        // query objects are pooled: give it back once we are done with it
+        handleQuery(node, pid, q);
+        MessagePool.get().release(q);
+    }
+
+    // query handling, q must not be kept after returning
+    private void handleQuery(Node node, int pid, Query q) {
         // duplicate check to prevent processing the same query multiple times
-        if (seen.contains(q.qid)) return;
-        seen.add(q.qid);
+        if (!seen.add(q.qid)) return;
 
         // search peer's local files for match
-        java.util.List<String> hits = searchLocal(q.keyword);
+        java.util.List<String> hits = searchLocal(q.keywordId);
 
-        System.out.println("Node " + node.getID()
-                + " got QUERY qid=" + q.qid
-                + " kw='" + q.keyword + "'"
-                + " ttl=" + q.ttl
-                + " hops=" + q.hops
-                + " from=" + q.senderId
-                + " hits=" + hits);
+        if (Trace.QUERIES) Trace.query(CommonState.getTime(), node.getID(), q, hits);
 
         // if found, send response to origin + update stats
         if (!hits.isEmpty()) {
             // sends response directly to origin based on origin ID
             // doesn't need to re-traverse backwards
             Node origin = Network.get((int) q.originId);
-            Response hm = new Response(q.qid, node.getID(), hits, q.hops);
+            Response hm = MessagePool.get().response(q.qid, node.getID(), hits, q.hops);
 
-            Stats.hitsSent++;
-            EDSimulator.add(1, hm, origin, pid);
-            System.out.println("Node " + node.getID() + " sending HIT back to origin " + q.originId);
+            Stats.hitSent(q.qid);
+            send(node, origin, hm, pid);
+            if (Trace.QUERIES) Trace.hitSent(CommonState.getTime(), node.getID(), q.originId, q.qid);
             return;
         }
 
@@ -106,15 +99,34 @@ public abstract class SearchProtocol implements EDProtocol, PeerProtocol {
         forwardQuery(node, pid, q);
     }
 
+    // sends through the transport of this protocol (the "transport" parameter),
+    // so that its latency and drops apply. without one, the message arrives
+    // in the next time unit, as before
+    protected static void send(Node src, Node dest, Object msg, int pid) {
+        if (FastConfig.hasTransport(pid)) {
+            ((Transport) src.getProtocol(FastConfig.getTransport(pid))).send(src, dest, msg, pid);
+        } else {
+            EDSimulator.add(1, msg, dest, pid);
+        }
+    }
+
     public void setLinkPid(int linkPid) { this.linkPid = linkPid; }
 
     public void setPeer(Peer p) { this.self = p; }
  
     public Peer getPeer() { return self; }
 
+    // memory used by duplicate detection at this node, reported by Stats
+    public long seenMemoryBytes() { return seen.memoryBytes(); }
+
     // search keyword in peer's local index
     public List<String> searchLocal(String keyword) {
+        return searchLocal(Keywords.lookup(keyword));
+    }
+
+    // same, with the keyword id (see Keywords), does not allocate when there is no match
+    public List<String> searchLocal(int keywordId) {
         if (self == null) return java.util.Collections.emptyList();
-        return self.index.getOrDefault(keyword, java.util.Collections.emptyList());
+        return self.search(keywordId);
     }
 }
@@ -0,0 +1,48 @@
+package p2p_project;
+
+import peersim.config.Configuration;
+import peersim.config.IllegalParameterException;
+
+// duplicate detection for search protocols: remembers which qids a node has processed
+// every node has its own instance (see SearchProtocol.clone)
+//
+// implementations, selected by the "seen" parameter of the search protocol:
+// - hash:   exact, open-addressing set of primitive longs (default)
+// - window: exact for the last "seen.window" qids above the highest one seen,
+//           older qids are reported as already seen
+// - bloom:  approximate, may report a new qid as seen with probability "seen.fpr"
+//           once "seen.capacity" qids have been added
+public interface SeenSet {
+
+    // records qid, returns true if it was not seen before
+    boolean add(long qid);
+
+    // approximate number of bytes used by this instance
+    long memoryBytes();
+
+    // returns an empty set with the same parameters
+    SeenSet fresh();
+
+    // config keys, relative to the protocol prefix
+    String PAR_SEEN = "seen";
+    String PAR_CAPACITY = "seen.capacity";
+    String PAR_WINDOW = "seen.window";
+    String PAR_FPR = "seen.fpr";
+
+    // builds the prototype instance for the search protocol with the given prefix
+    static SeenSet fromConfig(String prefix) {
+        String type = Configuration.getString(prefix + "." + PAR_SEEN, "hash");
+        switch (type) {
+            case "hash":
+                return new LongHashSeenSet(Configuration.getInt(prefix + "." + PAR_CAPACITY, 16));
+            case "window":
+                return new WindowSeenSet(Configuration.getInt(prefix + "." + PAR_WINDOW, 1024));
+            case "bloom":
+                return new BloomSeenSet(Configuration.getInt(prefix + "." + PAR_CAPACITY, 1024),
+                        Configuration.getDouble(prefix + "." + PAR_FPR, 0.01));
+            default:
+                throw new IllegalParameterException(prefix + "." + PAR_SEEN,
+                        "unknown duplicate detection '" + type + "', use hash, window or bloom");
+        }
+    }
+}
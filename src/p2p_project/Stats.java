@@ -1,47 +1,185 @@
 package p2p_project;
 
 import peersim.config.Configuration;
+import peersim.core.Network;
+import peersim.core.Node;
+import peersim.transport.BandwidthTransport;
+
+import peersim.util.LogHistogram;
+import peersim.util.MetricsRegistry;
 
 import java.io.File;
 import java.io.FileWriter;
 
-import java.util.HashMap;
-import java.util.Map;
-
 // for collecting analysis metrics and saving data
+// per-query data lives in primitive arrays (QueryTable), and the first-hit latency
+// and hop count distributions are updated online in log-linear histograms,
+// StatsObserver prints them periodically during the run
+//
+// counters live in the MetricsRegistry of the current experiment, so they are
+// safe under the parallel engine and start from zero in every experiment.
+// the CSV files are written at the end of each experiment (simulation.experiments)
 public class Stats {
-    public static long queryForwards = 0;
-    public static long hitsSent = 0;
-    public static long hitsReceivedAtOrigin = 0;
+    // registry names
+    public static final String FORWARDS = "search.forwards";
+    public static final String HITS_SENT = "search.hitsSent";
+    public static final String HITS_RECV = "search.hitsRecv";
+    public static final String SERVED = "search.served";
+    public static final String SEEN_BYTES = "search.seenBytesPerNode";
+    public static final String WRITE = "search.writeCsv";
+
+    // counters of the current experiment, looked up once per experiment
+    private static MetricsRegistry.Counter queryForwards;
+    private static MetricsRegistry.Counter hitsSent;
+    private static MetricsRegistry.Counter hitsReceivedAtOrigin;
+
+    // qid -> start time, first hit time, hops and messages
+    public static final QueryTable queries = new QueryTable();
+    // first-hit latency and hop count of the served queries
+    public static final LogHistogram latency = new LogHistogram();
+    public static final LogHistogram hops = new LogHistogram();
 
-    // mapping qid -> startTime
-    public static final Map<Long, Long> startTime = new HashMap<>();
-    // mapping qid -> hitTime
-    public static final Map<Long, Long> hitTime = new HashMap<>();
+    // for the throughput estimate
+    private static long minStart = Long.MAX_VALUE;
+    private static long maxHit = Long.MIN_VALUE;
+
+    // per-query data and histograms are updated under this lock, except message counts
+    private static final Object lock = new Object();
+
+    // true if there is data not yet written to csv
+    private static boolean dirty = false;
+    private static long lastRun = 0;
 
     // data collection configuration
     private static final String OUTDIR = "run_outputs";
     private static final String CFG_TAG = "stats.tag";
     private static final String CFG_PROTOCOL = "stats.protocol";
 
+    public static long queryForwards() { return queryForwards.get(); }
+
+    public static long hitsSent() { return hitsSent.get(); }
+
+    public static long hitsReceivedAtOrigin() { return hitsReceivedAtOrigin.get(); }
+
+    // a query is injected at the origin
+    public static void queryStarted(long qid, long time) {
+        synchronized (lock) {
+            queries.start(qid, time);
+            if (time < minStart) minStart = time;
+            dirty = true;
+        }
+    }
+
+    // a query is forwarded to a neighbor
+    // queries are only started by controls, never while the protocols run,
+    // so the table can be read without the lock here
+    public static void forwarded(long qid) {
+        queryForwards.increment();
+        queries.message(qid);
+    }
+
+    // n forwards at once, used by FrontierDriver
+    public static void forwarded(long qid, int n) {
+        queryForwards.add(n);
+        queries.message(qid, n);
+    }
+
+    // a hit is sent back to the origin
+    public static void hitSent(long qid) {
+        hitsSent.increment();
+        queries.message(qid);
+    }
+
+    public static void hitsSent(long qid, int n) {
+        hitsSent.add(n);
+        queries.message(qid, n);
+    }
+
+    // a hit arrives at the origin, only the first one per query counts for latency
+    public static void hitReceived(long qid, long time, int hopCount) {
+        hitsReceived(qid, time, hopCount, 1);
+    }
+
+    // n hits with the same time and hop count arrive at the origin
+    public static void hitsReceived(long qid, long time, int hopCount, int n) {
+        hitsReceivedAtOrigin.add(n);
+        synchronized (lock) {
+            int s = queries.hit(qid, time, hopCount);
+            if (s < 0) return;
+            latency.add(time - queries.start(s));
+            hops.add(hopCount);
+            if (time > maxHit) maxHit = time;
+        }
+    }
+
+    // current state as a single line, used by StatsObserver
+    public static String snapshot(long time) {
+        synchronized (lock) {
+            return "STATS time=" + time
+                    + " injected=" + queries.size()
+                    + " served=" + latency.getN()
+                    + " forwards=" + queryForwards()
+                    + " hitsSent=" + hitsSent()
+                    + " hitsRecv=" + hitsReceivedAtOrigin()
+                    + " latency[p50/p90/p99/max]=" + percentiles(latency, "/")
+                    + " hops=" + percentiles(hops, "/")
+                    + " msgs=" + percentiles(queries.messageHistogram(), "/");
+        }
+    }
+
+    private static String percentiles(LogHistogram h, String sep) {
+        return h.getPercentile(50) + sep + h.getPercentile(90) + sep
+                + h.getPercentile(99) + sep + h.getMax();
+    }
+
     static {
-        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+        bind(MetricsRegistry.current());
+        MetricsRegistry.addListener(new MetricsRegistry.Listener() {
+            @Override
+            public void experimentStarted(MetricsRegistry registry) {
+                reset();
+                bind(registry);
+            }
+
+            @Override
+            public void experimentEnded(MetricsRegistry registry) {
+                write(registry);
+            }
+        });
+        // in case the simulation does not end normally
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> write(MetricsRegistry.current())));
+    }
+
+    private static void bind(MetricsRegistry registry) {
+        queryForwards = registry.counter(FORWARDS);
+        hitsSent = registry.counter(HITS_SENT);
+        hitsReceivedAtOrigin = registry.counter(HITS_RECV);
+    }
+
+    private static void write(MetricsRegistry registry) {
+        synchronized (lock) {
+            if (!dirty) return;
+            dirty = false;
+            MetricsRegistry.Timer t = registry.timer(WRITE);
+            long start = t.start();
             try {
-                writeCsv();
+                writeCsv(registry);
             } catch (Exception e) {
                 System.err.println("Stats write failed: " + e);
             }
-        }));
+            t.stop(start);
+        }
     }
     
     // write data to csv
-    private static void writeCsv() throws Exception {
+    private static void writeCsv(MetricsRegistry registry) throws Exception {
     
         String protocol = Configuration.getString(CFG_PROTOCOL, "unknown");
         String tag = Configuration.getString(CFG_TAG, "exp");
     
-        // runID = timestamp
-        long run = System.currentTimeMillis();
+        // runID = timestamp, unique even if experiments end within the same millisecond
+        long run = Math.max(System.currentTimeMillis(), lastRun + 1);
+        lastRun = run;
     
         File dir = new File(OUTDIR);
         dir.mkdirs();
@@ -59,45 +197,87 @@ public class Stats {
                 protocol + "_" + tag + "_" + run + "_perquery.csv");
 
     
-        writeSummary(summary, protocol, tag, run);
+        writeSummary(summary, protocol, tag, run, registry);
         writePerQuery(perQuery, protocol, tag, run);
     
         System.out.println("Saved stats -> " + summary.getName());
+        System.out.println(MessagePool.report());
     }
 
     // writes one row per sim run
-    private static void writeSummary(File f, String protocol, String tag, long run) throws Exception {
+    private static void writeSummary(File f, String protocol, String tag, long run,
+                                     MetricsRegistry registry) throws Exception {
 
-        int injected = startTime.size();
-        int served = hitTime.size();
-    
-        // average latency
-        double avgLatency = 0;
-        int count = 0;
-    
-        for (Long qid : hitTime.keySet()) {
-            Long st = startTime.get(qid);
-            Long ht = hitTime.get(qid);
-            if (st != null && ht != null) {
-                avgLatency += (ht - st);
-                count++;
-            }
-        }
+        int injected = queries.size();
+        long served = latency.getN();
     
-        if (count > 0) avgLatency /= count;
+        // average latency (exact, the histogram keeps the sum)
+        double avgLatency = latency.getAverage();
     
         // throughput estimate
-        long minStart = startTime.values().stream().min(Long::compareTo).orElse(0L);
-        long maxHit = hitTime.values().stream().max(Long::compareTo).orElse(0L);
-        double throughput = served / (double) Math.max(1, maxHit - minStart + 1);
+        long first = injected > 0 ? minStart : 0L;
+        long last = served > 0 ? maxHit : 0L;
+        double throughput = served / (double) Math.max(1, last - first + 1);
+        LogHistogram msgs = queries.messageHistogram();
+
+        double seenBytes = seenBytesPerNode();
+        double[] links = linkLoad();
+        System.out.println("Duplicate detection memory: " + seenBytes + " bytes/node");
+        registry.gauge(SERVED).set(served);
+        registry.gauge(SEEN_BYTES).set((long) seenBytes);
     
         try (FileWriter w = new FileWriter(f)) {
-            w.write("protocol,tag,run,injected,served,avg_latency,throughput,forwards,hitsSent,hitsRecv\n");
+            w.write("protocol,tag,run,injected,served,avg_latency,throughput,forwards,hitsSent,hitsRecv,seen_bytes_per_node,"
+                    + "lat_p50,lat_p90,lat_p99,lat_max,hops_p50,hops_p90,hops_p99,hops_max,"
+                    + "msgs_p50,msgs_p90,msgs_p99,msgs_max,up_util,down_util,max_queue\n");
             w.write(protocol + "," + tag + "," + run + "," +
                     injected + "," + served + "," +
                     avgLatency + "," + throughput + "," +
-                    queryForwards + "," + hitsSent + "," + hitsReceivedAtOrigin + "\n");
+                    queryForwards() + "," + hitsSent() + "," + hitsReceivedAtOrigin() + "," +
+                    seenBytes + "," +
+                    percentiles(latency, ",") + "," + percentiles(hops, ",") + "," +
+                    percentiles(msgs, ",") + "," +
+                    links[0] + "," + links[1] + "," + (long) links[2] + "\n");
+        }
+    }
+
+    // average memory used by the seen sets of the search protocols of each node
+    private static double seenBytesPerNode() {
+        int n = Network.size();
+        if (n == 0) return 0;
+        long total = 0;
+        for (int i = 0; i < n; i++) {
+            Node node = Network.get(i);
+            for (int j = 0; j < node.protocolSize(); j++) {
+                Object p = node.getProtocol(j);
+                if (p instanceof SearchProtocol) total += ((SearchProtocol) p).seenMemoryBytes();
+            }
         }
+        return total / (double) n;
+    }
+
+    // average uplink and downlink utilisation and longest queue of the
+    // BandwidthTransport protocols of the nodes, all 0 without them
+    private static double[] linkLoad() {
+        double[] load = new double[3];
+        int n = Network.size(), links = 0;
+        for (int i = 0; i < n; i++) {
+            Node node = Network.get(i);
+            for (int j = 0; j < node.protocolSize(); j++) {
+                Object p = node.getProtocol(j);
+                if (!(p instanceof BandwidthTransport)) continue;
+                BandwidthTransport t = (BandwidthTransport) p;
+                load[0] += t.getUplinkUtilisation();
+                load[1] += t.getDownlinkUtilisation();
+                load[2] = Math.max(load[2], Math.max(t.getMaxUplinkQueue(), t.getMaxDownlinkQueue()));
+                links++;
+            }
+        }
+        if (links > 0) {
+            load[0] /= links;
+            load[1] /= links;
+        }
+        return load;
     }
 
     // writes query rows
@@ -105,28 +285,34 @@ public class Stats {
 
         try (FileWriter w = new FileWriter(f)) {
     
-            w.write("protocol,tag,run,qid,start,hit,latency\n");
+            w.write("protocol,tag,run,qid,start,hit,latency,hops,messages\n");
     
-            for (Long qid : startTime.keySet()) {
+            for (int s = 0; s < queries.size(); s++) {
     
-                Long st = startTime.get(qid);
-                Long ht = hitTime.get(qid);
-                Long lat = (st != null && ht != null) ? (ht - st) : null;
+                long st = queries.start(s);
+                long ht = queries.hit(s);
+                boolean served = ht >= 0;
     
                 w.write(protocol + "," + tag + "," + run + "," +
-                        qid + "," +
+                        queries.qid(s) + "," +
                         st + "," +
-                        (ht == null ? "" : ht) + "," +
-                        (lat == null ? "" : lat) + "\n");
+                        (served ? String.valueOf(ht) : "") + "," +
+                        (served ? String.valueOf(ht - st) : "") + "," +
+                        (served ? String.valueOf(queries.hops(s)) : "") + "," +
+                        queries.messages(s) + "\n");
             }
         }
     } 
 
+    // clears the per-query data, the counters are reset by the new experiment's registry
     public static void reset() {
-        queryForwards = 0;
-        hitsSent = 0;
-        hitsReceivedAtOrigin = 0;
-        startTime.clear();
-        hitTime.clear();
+        synchronized (lock) {
+            queries.clear();
+            latency.reset();
+            hops.reset();
+            minStart = Long.MAX_VALUE;
+            maxHit = Long.MIN_VALUE;
+            dirty = false;
+        }
     }
 }
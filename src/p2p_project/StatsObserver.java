@@ -0,0 +1,21 @@
+package p2p_project;
+
+import peersim.core.CommonState;
+import peersim.core.Control;
+
+// PeerSim control that prints the running search metrics (see Stats.snapshot)
+// schedule it with the usual step parameter, e.g.
+//   control.stats p2p_project.StatsObserver
+//   control.stats.step CYCLE
+// one line per execution: counters plus p50/p90/p99/max of first-hit latency,
+// hops of the first hit and messages per query
+public class StatsObserver implements Control {
+
+    public StatsObserver(String prefix) {}
+
+    @Override
+    public boolean execute() {
+        System.out.println(Stats.snapshot(CommonState.getTime()));
+        return false;
+    }
+}
@@ -0,0 +1,316 @@
+package p2p_project;
+
+import peersim.config.Configuration;
+import peersim.config.IllegalParameterException;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.List;
+
+// tracing of search events, replaces the println calls of the protocols
+//
+// config:
+//   trace.level  0 = off, 1 = hits at origin + running stats, 2 = + every query/hit sent,
+//                3 = + DebugController dumps (default, same output as before)
+//   trace.sink   console (default), csv or binary
+//   trace.file   output file for csv/binary, default run_outputs/trace/{protocol}_{tag}_{time}.{csv|bin}
+//   trace.buffer capacity (records) of the ring buffer of csv/binary sinks, default 65536
+//
+// the level is a static final constant read when the class is loaded, so call sites
+// guarded by "if (Trace.QUERIES)" are removed by the JIT when tracing is off
+//
+// console prints synchronously in the calling thread, so its lines keep their place
+// among other output. csv and binary records are put in a bounded ring buffer and
+// written by a background thread; producers wait when the buffer is full
+//
+// binary records are fixed size, big endian:
+//   byte type, long time, long node, long qid, long peer, int ttl, int hops, int hits
+// type is one of the T_ constants, peer is the sender (query), origin (hit sent)
+// or responder (hit received); for stats records qid/peer/ttl hold forwards/hitsSent/hitsRecv;
+// batch records only have the time (node = -1)
+public final class Trace {
+
+    public static final int OFF = 0;
+    public static final int HIT = 1;
+    public static final int QUERY = 2;
+    public static final int DEBUG = 3;
+
+    // record types
+    public static final byte T_QUERY = 1;
+    public static final byte T_HIT_SENT = 2;
+    public static final byte T_HIT_RECV = 3;
+    public static final byte T_STATS = 4;
+    public static final byte T_BATCH = 5;
+
+    private static final String PAR_LEVEL = "trace.level";
+    private static final String PAR_SINK = "trace.sink";
+    private static final String PAR_FILE = "trace.file";
+    private static final String PAR_BUFFER = "trace.buffer";
+
+    public static final int LEVEL = Configuration.getInt(PAR_LEVEL, DEBUG);
+    public static final boolean HITS = LEVEL >= HIT;
+    public static final boolean QUERIES = LEVEL >= QUERY;
+    public static final boolean DEBUGS = LEVEL >= DEBUG;
+
+    private static final Sink SINK = LEVEL > OFF ? createSink() : null;
+
+    private Trace() {}
+
+    // node got a query; hits are the local matches
+    public static void query(long time, long node, Query q, List<String> hits) {
+        SINK.record(T_QUERY, time, node, q.qid, q.senderId, q.ttl, q.hops, hits, q.keyword);
+    }
+
+    // node found a match and sends a hit to the origin
+    public static void hitSent(long time, long node, long origin, long qid) {
+        SINK.record(T_HIT_SENT, time, node, qid, origin, 0, 0, null, null);
+    }
+
+    // origin received a hit
+    public static void hitReceived(long time, long node, Response h) {
+        SINK.record(T_HIT_RECV, time, node, h.qid, h.responderId, 0, h.hops, h.hits, null);
+    }
+
+    // running counters, traced with every hit received
+    public static void stats(long time, long forwards, long hitsSent, long hitsRecv) {
+        SINK.record(T_STATS, time, -1, forwards, hitsSent, (int) hitsRecv, 0, null, null);
+    }
+
+    // a query driver starts injecting its queries
+    public static void batchStart(long time) {
+        SINK.record(T_BATCH, time, -1, 0, 0, 0, 0, null, null);
+    }
+
+    // free text debug output (DebugController), always on the console
+    public static void debug(String line) {
+        System.out.println(line);
+    }
+
+    private static Sink createSink() {
+        String type = Configuration.getString(PAR_SINK, "console");
+        if (type.equals("console")) return new ConsoleSink(System.out);
+        if (!type.equals("csv") && !type.equals("binary"))
+            throw new IllegalParameterException(PAR_SINK, "use console, csv or binary");
+        boolean csv = type.equals("csv");
+
+        String path = Configuration.getString(PAR_FILE, null);
+        if (path == null) {
+            String protocol = Configuration.getString("stats.protocol", "unknown");
+            String tag = Configuration.getString("stats.tag", "exp");
+            path = "run_outputs/trace/" + protocol + "_" + tag + "_" + System.currentTimeMillis()
+                    + (csv ? ".csv" : ".bin");
+        }
+        File f = new File(path);
+        if (f.getParentFile() != null) f.getParentFile().mkdirs();
+        try {
+            OutputStream out = new BufferedOutputStream(new FileOutputStream(f), 1 << 16);
+            AsyncSink s = new AsyncSink(out, csv, Configuration.getInt(PAR_BUFFER, 1 << 16));
+            Runtime.getRuntime().addShutdownHook(new Thread(s::close));
+            return s;
+        } catch (IOException e) {
+            throw new IllegalParameterException(PAR_FILE, "cannot open " + f + ": " + e);
+        }
+    }
+
+    private interface Sink {
+        void record(byte type, long time, long node, long qid, long peer, int ttl, int hops,
+                    List<String> hits, String keyword);
+    }
+
+    // human readable lines, same format the protocols used to print
+    private static final class ConsoleSink implements Sink {
+        private final PrintStream out;
+
+        ConsoleSink(PrintStream out) { this.out = out; }
+
+        @Override
+        public void record(byte type, long time, long node, long qid, long peer, int ttl, int hops,
+                           List<String> hits, String keyword) {
+            switch (type) {
+                case T_QUERY:
+                    out.println("Node " + node
+                            + " got QUERY qid=" + qid
+                            + " kw='" + keyword + "'"
+                            + " ttl=" + ttl
+                            + " hops=" + hops
+                            + " from=" + peer
+                            + " hits=" + hits);
+                    break;
+                case T_HIT_SENT:
+                    out.println("Node " + node + " sending HIT back to origin " + peer);
+                    break;
+                case T_HIT_RECV:
+                    out.println("ORIGIN node " + node
+                            + " received HIT for qid=" + qid
+                            + " from=" + peer
+                            + " hops=" + hops
+                            + " hits=" + hits
+                            + " time=" + time);
+                    break;
+                case T_STATS:
+                    out.println("STATS: forwards=" + qid
+                            + " hitsSent=" + peer
+                            + " hitsRecvAtOrigin=" + ttl);
+                    break;
+                case T_BATCH:
+                    out.println("Query batch start time=" + time);
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    // bounded ring buffer of primitive records, drained to a file by a daemon thread
+    private static final class AsyncSink implements Sink, Runnable {
+        private final DataOutputStream bin;
+        private final PrintStream text;
+        private final int capacity;
+
+        private final byte[] types;
+        private final long[] times, nodes, qids, peers;
+        private final int[] ttls, hopss, hitss;
+        private final String[] keywords;
+        private long head = 0; // next record to write out
+        private long tail = 0; // next free slot
+        private boolean closed = false;
+        private final Thread writer;
+
+        AsyncSink(OutputStream out, boolean csv, int capacity) {
+            this.capacity = Math.max(16, capacity);
+            this.bin = csv ? null : new DataOutputStream(out);
+            this.text = csv ? new PrintStream(out, false) : null;
+            types = new byte[this.capacity];
+            times = new long[this.capacity];
+            nodes = new long[this.capacity];
+            qids = new long[this.capacity];
+            peers = new long[this.capacity];
+            ttls = new int[this.capacity];
+            hopss = new int[this.capacity];
+            hitss = new int[this.capacity];
+            keywords = new String[this.capacity];
+            if (csv) text.println("type,time,node,qid,peer,ttl,hops,hits,keyword");
+            writer = new Thread(this, "trace writer");
+            writer.setDaemon(true);
+            writer.start();
+        }
+
+        @Override
+        public synchronized void record(byte type, long time, long node, long qid, long peer, int ttl,
+                                        int hops, List<String> hits, String keyword) {
+            while (tail - head == capacity && !closed) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            if (closed) return;
+            int i = (int) (tail % capacity);
+            types[i] = type;
+            times[i] = time;
+            nodes[i] = node;
+            qids[i] = qid;
+            peers[i] = peer;
+            ttls[i] = ttl;
+            hopss[i] = hops;
+            hitss[i] = hits == null ? 0 : hits.size();
+            keywords[i] = keyword;
+            // wake up the writer only when it may be waiting for data
+            if (tail++ == head) notifyAll();
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    long from, to;
+                    synchronized (this) {
+                        while (head == tail && !closed) wait();
+                        if (head == tail) break;
+                        from = head;
+                        to = tail;
+                    }
+                    // records in [from, to) are not touched by producers until head moves
+                    for (long k = from; k < to; k++) write((int) (k % capacity));
+                    synchronized (this) {
+                        head = to;
+                        notifyAll();
+                    }
+                }
+                flush();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException e) {
+                System.err.println("Trace write failed: " + e);
+            }
+        }
+
+        private void write(int i) throws IOException {
+            if (bin != null) {
+                bin.writeByte(types[i]);
+                bin.writeLong(times[i]);
+                bin.writeLong(nodes[i]);
+                bin.writeLong(qids[i]);
+                bin.writeLong(peers[i]);
+                bin.writeInt(ttls[i]);
+                bin.writeInt(hopss[i]);
+                bin.writeInt(hitss[i]);
+            } else {
+                text.print(typeName(types[i]));
+                text.print(',');
+                text.print(times[i]);
+                text.print(',');
+                text.print(nodes[i]);
+                text.print(',');
+                text.print(qids[i]);
+                text.print(',');
+                text.print(peers[i]);
+                text.print(',');
+                text.print(ttls[i]);
+                text.print(',');
+                text.print(hopss[i]);
+                text.print(',');
+                text.print(hitss[i]);
+                text.print(',');
+                text.println(keywords[i] == null ? "" : keywords[i]);
+            }
+            keywords[i] = null;
+        }
+
+        private void flush() throws IOException {
+            if (bin != null) bin.close();
+            else text.close();
+        }
+
+        // drains the buffer and closes the file, called at shutdown
+        void close() {
+            synchronized (this) {
+                closed = true;
+                notifyAll();
+            }
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private static String typeName(byte t) {
+            switch (t) {
+                case T_QUERY: return "query";
+                case T_HIT_SENT: return "hit_sent";
+                case T_HIT_RECV: return "hit_recv";
+                case T_STATS: return "stats";
+                case T_BATCH: return "batch";
+                default: return "?";
+            }
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package p2p_project;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+// batched random walks over an OverlaySnapshot, used by FrontierDriver
+//
+// a walker moves like a RandomWalkProtocol query: to a random neighbor that is neither the node
+// itself nor the sender, one hop per tick, and it stops on a node it already visited, on a
+// node with a match, or when the ttl runs out
+//
+// walkers are kept in primitive arrays (about 32 bytes each) and run in batches of BATCH:
+// every step moves all the walkers of the batch that are still active, so the cache misses of
+// independent walkers overlap instead of following one walker at a time. batches are split
+// among the threads. each walker has its own SplitMix64 stream, seeded from the engine seed
+// and its qid, so the result does not depend on the batches or the threads
+public final class WalkEngine {
+
+    public static final int BATCH = 1024; // default batch size
+    private static final long GAMMA = 0x9E3779B97F4A7C15L;
+
+    private final OverlaySnapshot g;
+    private final Peer[] peers;
+    private final int ttl;
+    private final long end;
+    private final long seed;
+    private final int batch;
+
+    // one entry per walker
+    private final long[] qid;
+    private final int[] origin;
+    private final int[] keyword;
+    private final long[] start;
+    private final int[] forwards;
+    private final int[] hitHops; // hops of the node with a match, -1 if none
+    private int size = 0;
+
+    public WalkEngine(OverlaySnapshot g, Peer[] peers, int ttl, long end, long seed, int walkers) {
+        this(g, peers, ttl, end, seed, walkers, BATCH);
+    }
+
+    // batch is the number of walkers moved together, 1 runs one walker at a time
+    public WalkEngine(OverlaySnapshot g, Peer[] peers, int ttl, long end, long seed, int walkers, int batch) {
+        this.batch = batch;
+        this.g = g;
+        this.peers = peers;
+        this.ttl = ttl;
+        this.end = end;
+        this.seed = seed;
+        qid = new long[walkers];
+        origin = new int[walkers];
+        keyword = new int[walkers];
+        start = new long[walkers];
+        forwards = new int[walkers];
+        hitHops = new int[walkers];
+    }
+
+    // adds a walker that starts at the origin at the given time, returns its index
+    public int add(long qid, int origin, int keywordId, long time) {
+        this.qid[size] = qid;
+        this.origin[size] = origin;
+        this.keyword[size] = keywordId;
+        this.start[size] = time;
+        return size++;
+    }
+
+    public int size() { return size; }
+
+    public long qid(int w) { return qid[w]; }
+
+    public int forwards(int w) { return forwards[w]; }
+
+    // true if the walker reached a node with a match, which sent a hit
+    public boolean hit(int w) { return hitHops[w] >= 0; }
+
+    public int hitHops(int w) { return hitHops[w]; }
+
+    // time the hit arrives at the origin, -1 if there is no hit or it is not delivered
+    public long hitTime(int w) {
+        if (hitHops[w] < 0) return -1;
+        long time = start[w] + hitHops[w] + 1;
+        return end - time > 0 && g.isUp(origin[w]) ? time : -1;
+    }
+
+    // runs all the walkers, on the pool if it is not null
+    public void run(ExecutorService pool, int threads) {
+        int batches = (size + batch - 1) / batch;
+        if (pool == null || batches < 2) {
+            new Batches(0, batches).call();
+            return;
+        }
+        int tasks = Math.min(threads * 4, batches);
+        List<Batches> parts = new ArrayList<>(tasks);
+        for (int t = 0; t < tasks; t++)
+            parts.add(new Batches(batches * t / tasks, batches * (t + 1) / tasks));
+        try {
+            for (Future<Batches> f : pool.invokeAll(parts)) f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    // a range of batches, run by one thread, with the per-batch state of the walkers
+    private final class Batches implements Callable<Batches> {
+        final int from, to;
+        final int[] active = new int[batch]; // walker indices
+        final int[] at = new int[batch];
+        final int[] sender = new int[batch];
+        final long[] rng = new long[batch];
+        // (batch slot, node) pairs already visited
+        final LongHashSeenSet seen = new LongHashSeenSet(batch * 4);
+
+        Batches(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public Batches call() {
+            for (int b = from; b < to; b++) run(b * batch, Math.min(size, (b + 1) * batch));
+            return this;
+        }
+
+        private void run(int lo, int hi) {
+            int n = hi - lo;
+            for (int a = 0; a < n; a++) {
+                int w = lo + a;
+                active[a] = a;
+                at[a] = origin[w];
+                sender[a] = origin[w];
+                rng[a] = mix(seed + qid[w] * GAMMA);
+                forwards[w] = 0;
+                hitHops[w] = -1;
+            }
+            seen.clear();
+            int[] off = g.offsets, tg = g.targets;
+
+            // hop h: every active walker processes the node it is at, then moves or stops
+            for (int h = 0; n > 0; h++) {
+                int k = 0;
+                for (int i = 0; i < n; i++) {
+                    int a = active[i], w = lo + a, u = at[a];
+                    if (end - (start[w] + h) <= 0 || !g.isUp(u) || !seen.add(((long) a << 32) | u)) continue;
+                    Peer p = peers[u];
+                    if (p != null && p.count(keyword[w]) > 0) {
+                        hitHops[w] = h;
+                        continue;
+                    }
+                    if (h >= ttl) continue;
+                    int d = off[u + 1] - off[u];
+                    if (d == 0) continue;
+                    int s = sender[a], v = -1;
+                    int first = nextInt(a, d);
+                    for (int j = 0; j < d; j++) {
+                        int x = tg[off[u] + (first + j) % d];
+                        if (x != u && x != s) {
+                            v = x;
+                            break;
+                        }
+                    }
+                    if (v < 0) continue;
+                    forwards[w]++;
+                    sender[a] = u;
+                    at[a] = v;
+                    active[k++] = a;
+                }
+                n = k;
+            }
+        }
+
+        // uniform in [0, bound), same rejection as java.util.Random
+        private int nextInt(int a, int bound) {
+            while (true) {
+                rng[a] += GAMMA;
+                int bits = (int) (mix(rng[a]) >>> 33);
+                int r = bits % bound;
+                if (bits - r + (bound - 1) >= 0) return r;
+            }
+        }
+    }
+
+    // SplitMix64 finalizer
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,50 @@
+package p2p_project;
+
+// SeenSet for qids that are issued in (roughly) increasing order, like the ones of QueryDriver
+// keeps one bit for each of the last "window" qids up to the highest qid seen so far
+// qids that fell out of the window are considered seen, so a query that is still
+// travelling after "window" newer queries passed by the node is dropped
+// memory is fixed: window/8 bytes per node
+public class WindowSeenSet implements SeenSet {
+
+    private final int window; // multiple of 64
+    private final long[] bits;
+    private long high = -1; // highest qid seen, -1 if none
+
+    public WindowSeenSet(int window) {
+        this.window = Math.max(64, (window + 63) & ~63);
+        this.bits = new long[this.window >>> 6];
+    }
+
+    @Override
+    public boolean add(long qid) {
+        if (qid > high) {
+            // slide the window forward, clearing the bits that are reused
+            long from = Math.max(high + 1, qid - window + 1);
+            for (long q = from; q <= qid; q++) clear(q);
+            high = qid;
+        } else if (qid <= high - window) {
+            return false; // too old
+        }
+        int i = (int) Math.floorMod(qid, (long) window);
+        long m = 1L << (i & 63);
+        if ((bits[i >>> 6] & m) != 0) return false;
+        bits[i >>> 6] |= m;
+        return true;
+    }
+
+    private void clear(long qid) {
+        int i = (int) Math.floorMod(qid, (long) window);
+        bits[i >>> 6] &= ~(1L << (i & 63));
+    }
+
+    @Override
+    public long memoryBytes() {
+        return 32 + 16 + 8L * bits.length;
+    }
+
+    @Override
+    public SeenSet fresh() {
+        return new WindowSeenSet(window);
+    }
+}
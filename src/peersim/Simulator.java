@@ -24,6 +24,7 @@ import peersim.cdsim.*;
 import peersim.config.*;
 import peersim.core.*;
 import peersim.edsim.*;
+import peersim.util.MetricsRegistry;
 
 
 /**
@@ -182,6 +183,12 @@ public static void main(String[] args)
 				CommonState.r.getLastSeed());
 			System.out.println("\n\n");
 			
+			// metrics of different experiments must not mix
+			MetricsRegistry.startExperiment(k);
+			MetricsRegistry.Timer timer =
+				MetricsRegistry.current().timer("simulation.experiment");
+			long start = timer.start();
+			
 			// XXX could be done through reflection, but
 			// this is easier to read.
 			switch(SIMID)
@@ -193,6 +200,12 @@ public static void main(String[] args)
 				EDSimulator.nextExperiment();
 				break;
 			}
+			
+			timer.stop(start);
+			MetricsRegistry.endExperiment();
+			// after the listeners, which may record metrics of their own
+			System.err.print("Simulator: metrics of experiment "+k+"\n"+
+				MetricsRegistry.current());
 		}
 	
 	} catch (MissingParameterException e) {
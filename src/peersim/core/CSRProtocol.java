@@ -0,0 +1,398 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package peersim.core;
+
+import java.util.Arrays;
+
+import peersim.config.Configuration;
+
+/**
+ * A {@link Linkable} for static topologies. It stores the same links as
+ * {@link IdleProtocol}, but once the overlay is complete all the links of all
+ * the nodes are kept in two int arrays shared by the instances, in compressed
+ * sparse row form: the neighbors of the node in row <code>r</code> are the
+ * rows <code>targets[offsets[r] .. offsets[r+1])</code>, and a table maps
+ * rows back to nodes. Rows are assigned in the order the instances are
+ * created, so for the initial network the row of a node is its index.
+ * The row of a killed node is given to a new node once no node links to
+ * it anymore, so with a dynamic network the number of rows stays close to
+ * the number of live nodes (plus the killed ones that are still linked).
+ * <p>
+ * While the overlay is wired, every instance collects the rows of its
+ * neighbors in an int array of its own. The first call to {@link #pack} on
+ * any node freezes the whole overlay into the shared arrays and frees the
+ * per-node arrays. {@link peersim.dynamics.WireGraph} does this when its
+ * <code>pack</code> parameter is set. A node that gets a new link after that
+ * goes back to an array of its own, until the next {@link #pack}.
+ * <p>
+ * The protocol is selected like any other {@link Linkable}, for example
+ * through the <code>protocol</code> parameter of
+ * {@link peersim.dynamics.WireKOut}. Through the {@link Linkable} interface
+ * it is not faster than {@link IdleProtocol}, since every neighbor is looked
+ * up in the row table; code that works on node indices can use
+ * {@link #getNeighborRow} or the shared arrays ({@link #getOffsets},
+ * {@link #getTargets}) and never touch the nodes.
+ */
+public class CSRProtocol implements Protocol, Linkable
+{
+
+// --------------------------------------------------------------------------
+// Parameters
+// --------------------------------------------------------------------------
+
+/**
+ * Default init capacity
+ */
+private static final int DEFAULT_INITIAL_CAPACITY = 10;
+
+/**
+ * Initial capacity of the per-node arrays used before freezing. Defaults to
+ * {@value #DEFAULT_INITIAL_CAPACITY}.
+ * @config
+ */
+private static final String PAR_INITCAP = "capacity";
+
+// --------------------------------------------------------------------------
+// Fields
+// --------------------------------------------------------------------------
+
+/** The links of all the instances cloned from the same prototype */
+private Overlay overlay;
+
+/** The row of this instance */
+private int row;
+
+/** Rows of the neighbors, null if they are in the shared arrays */
+private int[] links;
+
+/** Position of the neighbors in the shared arrays, if links is null */
+private int start;
+
+/** Number of neighbors */
+private int len;
+
+// --------------------------------------------------------------------------
+// Initialization
+// --------------------------------------------------------------------------
+
+public CSRProtocol(String prefix)
+{
+	overlay = new Overlay(Configuration.lookupPid(
+		prefix.substring(Node.PAR_PROT.length() + 1)));
+	row = -1; // the prototype has no row
+	links = new int[Configuration.getInt(prefix + "." + PAR_INITCAP,
+			DEFAULT_INITIAL_CAPACITY)];
+	len = 0;
+}
+
+//--------------------------------------------------------------------------
+
+/** The copy gets a new row, with the links of this instance. */
+public Object clone()
+{
+	CSRProtocol p = null;
+	try { p = (CSRProtocol) super.clone(); }
+	catch( CloneNotSupportedException e ) {} // never happens
+	if (links != null)
+		p.links = Arrays.copyOf(links, Math.max(links.length, len));
+	else
+		p.links = Arrays.copyOfRange(overlay.targets, start, start + len);
+	p.start = 0;
+	// the node being created, see GeneralNode.clone
+	p.row = overlay.register(p, CommonState.getNode());
+	return p;
+}
+
+// --------------------------------------------------------------------------
+// Methods
+// --------------------------------------------------------------------------
+
+public boolean contains(Node n)
+{
+	return indexOf(overlay.rowOf(n)) >= 0;
+}
+
+// --------------------------------------------------------------------------
+
+/** Adds given node if it is not already a neighbor. There is no limit
+* to the number of nodes that can be added. */
+public boolean addNeighbor(Node n)
+{
+	final int r = overlay.rowOf(n);
+	if (r < 0)
+		throw new IllegalArgumentException(
+			"Node has no "+getClass().getName()+" of this overlay");
+	if (indexOf(r) >= 0) return false;
+	if (links == null) thaw();
+	if (len == links.length)
+		links = Arrays.copyOf(links, Math.max(4, 3 * len / 2));
+	links[len++] = r;
+	overlay.refs[r]++;
+	return true;
+}
+
+// --------------------------------------------------------------------------
+
+public Node getNeighbor(int i)
+{
+	return overlay.nodes[getNeighborRow(i)];
+}
+
+// --------------------------------------------------------------------------
+
+/**
+ * Returns the row of the neighbor with the given index, see
+ * {@link #getNeighbor}.
+ */
+public int getNeighborRow(int i)
+{
+	if (i < 0 || i >= len) throw new IndexOutOfBoundsException(""+i);
+	return links == null ? overlay.targets[start + i] : links[i];
+}
+
+// --------------------------------------------------------------------------
+
+/** Returns the row of this instance. */
+public int getRow() { return row; }
+
+// --------------------------------------------------------------------------
+
+/**
+ * Returns the shared offsets array, indexed by row, or null if the overlay
+ * is not frozen. It must not be modified.
+ */
+public int[] getOffsets() { return overlay.loose == 0 ? overlay.offsets : null; }
+
+// --------------------------------------------------------------------------
+
+/**
+ * Returns the shared targets array, or null if the overlay is not frozen.
+ * It must not be modified.
+ */
+public int[] getTargets() { return overlay.loose == 0 ? overlay.targets : null; }
+
+// --------------------------------------------------------------------------
+
+/** Returns the node in the given row, null if the row is not in use. */
+public Node getNode(int row) { return overlay.nodes[row]; }
+
+// --------------------------------------------------------------------------
+
+public int degree()
+{
+	return len;
+}
+
+// --------------------------------------------------------------------------
+
+/** Freezes the whole overlay, see the class comment. */
+public void pack()
+{
+	if (overlay.loose > 0) overlay.freeze();
+}
+
+// --------------------------------------------------------------------------
+
+public String toString()
+{
+	StringBuffer buffer = new StringBuffer();
+	buffer.append("row=" + row + " len=" + len +
+		(links == null ? " frozen" : "") + " [");
+	for (int i = 0; i < len; ++i) {
+		buffer.append(getNeighbor(i).getIndex() + " ");
+	}
+	return buffer.append("]").toString();
+}
+
+// --------------------------------------------------------------------------
+
+public void onKill()
+{
+	if (row < 0 || overlay.dead[row]) return; // already killed
+	overlay.kill(this);
+	if (links != null) overlay.loose--;
+	else if (len > 0) overlay.loose++; // its links stay in the shared arrays
+	links = null;
+	start = 0;
+	len = 0;
+}
+
+// --------------------------------------------------------------------------
+
+/** Position of the given row among the neighbors, -1 if it is not there. */
+private int indexOf(int r)
+{
+	final int[] a = links == null ? overlay.targets : links;
+	final int from = links == null ? start : 0;
+	for (int i = 0; i < len; i++) {
+		if (a[from + i] == r)
+			return i;
+	}
+	return -1;
+}
+
+// --------------------------------------------------------------------------
+
+/** Moves the links of this instance from the shared arrays to its own. */
+private void thaw()
+{
+	links = Arrays.copyOfRange(overlay.targets, start, start + len);
+	start = 0;
+	overlay.loose++;
+}
+
+// --------------------------------------------------------------------------
+// Shared state
+// --------------------------------------------------------------------------
+
+/** The rows and links of the instances cloned from one prototype. */
+private static final class Overlay
+{
+	/** The protocol id, to find the instance of a neighbor */
+	final int pid;
+
+	/** The instances, indexed by row */
+	CSRProtocol[] instances = new CSRProtocol[16];
+
+	/** The nodes, indexed by row */
+	Node[] nodes = new Node[16];
+
+	/** Number of links to each row */
+	int[] refs = new int[16];
+
+	/** True for the rows of killed instances */
+	boolean[] dead = new boolean[16];
+
+	/** Rows that can be given to new instances, spare[0 .. spares) */
+	int[] spare = new int[16];
+	int spares = 0;
+
+	/** ID of the node in row 0; rows and IDs usually grow together */
+	long firstID;
+
+	int rows = 0;
+
+	/**
+	 * Number of live instances with links of their own, plus the frozen
+	 * instances killed since the last freeze; the shared arrays are valid
+	 * only when it is 0
+	 */
+	int loose = 0;
+
+	/** The shared arrays, null before the first freeze */
+	int[] offsets;
+	int[] targets;
+
+	Overlay(int pid) { this.pid = pid; }
+
+	/** Gives a row to a new instance, a spare one if possible. */
+	int register(CSRProtocol p, Node n)
+	{
+		final int r;
+		if (spares > 0) r = spare[--spares];
+		else
+		{
+			if (rows == instances.length)
+			{
+				instances = Arrays.copyOf(instances, rows * 2);
+				nodes = Arrays.copyOf(nodes, rows * 2);
+				refs = Arrays.copyOf(refs, rows * 2);
+				dead = Arrays.copyOf(dead, rows * 2);
+			}
+			if (rows == 0) firstID = n.getID();
+			r = rows++;
+		}
+		instances[r] = p;
+		nodes[r] = n;
+		dead[r] = false;
+		for (int i = 0; i < p.len; i++) refs[p.links[i]]++;
+		loose++;
+		return r;
+	}
+
+	/**
+	 * Drops the links of a killed instance, and frees its row and the
+	 * rows of killed neighbors that are no longer linked.
+	 */
+	void kill(CSRProtocol p)
+	{
+		for (int i = 0; i < p.len; i++)
+		{
+			final int r = p.getNeighborRow(i);
+			if (--refs[r] == 0 && dead[r]) release(r);
+		}
+		dead[p.row] = true;
+		if (refs[p.row] == 0) release(p.row);
+	}
+
+	/** Makes a row of a killed instance available to new instances. */
+	private void release(int r)
+	{
+		instances[r].row = -1;
+		instances[r] = null;
+		nodes[r] = null;
+		if (spares == spare.length)
+			spare = Arrays.copyOf(spare, spares * 2);
+		spare[spares++] = r;
+	}
+
+	/** The row of the node in this overlay, -1 if it is not part of it. */
+	int rowOf(Node n)
+	{
+		final long r = n.getID() - firstID;
+		if (r >= 0 && r < rows && nodes[(int) r] == n) return (int) r;
+		Protocol p = n.getProtocol(pid);
+		if (!(p instanceof CSRProtocol) || ((CSRProtocol) p).overlay != this)
+			return -1;
+		return ((CSRProtocol) p).row;
+	}
+
+	/** Moves the links of all the instances into new shared arrays. */
+	void freeze()
+	{
+		long total = 0;
+		for (int r = 0; r < rows; r++)
+			if (instances[r] != null) total += instances[r].len;
+		if (total > Integer.MAX_VALUE)
+			throw new IllegalStateException("More than 2^31 links");
+		final int[] off = new int[rows+1];
+		final int[] tg = new int[(int) total];
+		for (int r = 0; r < rows; r++)
+		{
+			CSRProtocol p = instances[r];
+			if (p == null) // spare row
+			{
+				off[r+1] = off[r];
+				continue;
+			}
+			if (p.links != null)
+				System.arraycopy(p.links, 0, tg, off[r], p.len);
+			else if (p.len > 0) // len is 0 when killed, targets may be null
+				System.arraycopy(targets, p.start, tg, off[r], p.len);
+			off[r+1] = off[r] + p.len;
+			p.links = null;
+			p.start = off[r];
+		}
+		offsets = off;
+		targets = tg;
+		loose = 0;
+	}
+}
+
+}
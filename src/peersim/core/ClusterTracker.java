@@ -0,0 +1,206 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+		
+package peersim.core;
+
+import java.util.Arrays;
+import peersim.graph.UnionFind;
+
+/**
+* Follows the weakly connected clusters of the graph that
+* {@link OverlayGraph} defines over a {@link Linkable} protocol, without
+* walking the whole overlay every time. It keeps a {@link UnionFind} over
+* the node indices, and {@link #update} brings it up to date:
+* nodes appended to the network by {@link Network#add} become new
+* clusters, and neighbors appended to the end of the neighbor lists (as
+* {@link Linkable#addNeighbor} does in {@link IdleProtocol}) merge clusters.
+* This takes one check per node, and time proportional to the new
+* links only.
+* <p>
+* Changes that may split a cluster make the next call to {@link #update}
+* rebuild the clusters from the whole overlay: removing or moving nodes
+* (eg {@link Network#remove}, {@link Network#shuffle}), a change of the
+* up state of a node, or a neighbor list that got shorter or whose
+* last known neighbor has changed. A protocol that replaces neighbors
+* while keeping the last one in place is not noticed, so the tracker should
+* be used only with protocols that do not drop links, such as
+* {@link IdleProtocol}.
+*/
+public class ClusterTracker {
+
+
+// ====================== fields ================================
+// ==============================================================
+
+
+/**
+* The protocol ID that selects the Linkable protocol.
+*/
+public final int protocolID;
+
+private final UnionFind uf = new UnionFind(0);
+
+/** The node seen at each index at the last update */
+private Node[] node = new Node[0];
+
+/** The up state of the nodes at the last update */
+private boolean[] up = new boolean[0];
+
+/** The number of neighbors already merged */
+private int[] degree = new int[0];
+
+/** The last neighbor already merged */
+private Node[] last = new Node[0];
+
+private int rebuilds = 0;
+
+
+// ====================== public constructors ===================
+// ==============================================================
+
+
+/**
+* @param protocolID The protocol on which this tracker is supposed
+* to operate.
+*/
+public ClusterTracker( int protocolID ) {
+
+	this.protocolID = protocolID;
+}
+
+
+// ======================= public methods =======================
+// ==============================================================
+
+
+/**
+* Brings the clusters up to date with the current overlay and returns
+* them. Clusters are identified by their smallest node index.
+* The returned object is owned by the tracker; it must not be modified
+* and it is valid until the next call.
+*/
+public UnionFind update() {
+
+	final int size = Network.size();
+	if( uf.size() > size )
+	{
+		rebuild(size);
+		return uf;
+	}
+	final int old = uf.size();
+	for(int i=0; i<old; ++i)
+	{
+		final Node n = Network.node[i];
+		if( n != node[i] || n.isUp() != up[i] )
+		{
+			rebuild(size);
+			return uf;
+		}
+	}
+	grow(size);
+	for(int i=old; i<size; ++i)
+	{
+		uf.add();
+		see(i);
+	}
+	for(int i=0; i<size; ++i)
+	{
+		if( !merge(i) )
+		{
+			rebuild(size);
+			return uf;
+		}
+	}
+	return uf;
+}
+
+// --------------------------------------------------------------
+
+/**
+* Returns the number of times the clusters had to be rebuilt from the
+* whole overlay.
+*/
+public int rebuilds() { return rebuilds; }
+
+
+// ======================= private methods ======================
+// ==============================================================
+
+
+/** Recomputes the clusters from scratch */
+private void rebuild( int size ) {
+
+	++rebuilds;
+	uf.reset(size);
+	grow(size);
+	for(int i=0; i<size; ++i) see(i);
+	for(int i=0; i<size; ++i) merge(i);
+}
+
+// --------------------------------------------------------------
+
+/** Records node i with no neighbors merged */
+private void see( int i ) {
+
+	node[i] = Network.node[i];
+	up[i] = node[i].isUp();
+	degree[i] = 0;
+	last[i] = null;
+}
+
+// --------------------------------------------------------------
+
+/**
+* Merges the clusters along the neighbors of node i that were
+* appended since the last call. Returns false if the neighbor list has
+* changed in another way.
+*/
+private boolean merge( int i ) {
+
+	final Linkable lble = (Linkable)node[i].getProtocol(protocolID);
+	final int deg = lble.degree();
+	int k = degree[i];
+	if( deg < k || (k > 0 && lble.getNeighbor(k-1) != last[i]) )
+		return false;
+	if( deg == k ) return true;
+	for(; k<deg; ++k)
+	{
+		final Node n = lble.getNeighbor(k);
+		// edges are included only if both ends are up, as in OverlayGraph
+		if( up[i] && n.isUp() ) uf.union(i,n.getIndex());
+	}
+	degree[i] = deg;
+	last[i] = lble.getNeighbor(deg-1);
+	return true;
+}
+
+// --------------------------------------------------------------
+
+private void grow( int size ) {
+
+	if( size <= node.length ) return;
+	final int cap = Math.max(size,3*node.length/2+1);
+	node = Arrays.copyOf(node,cap);
+	up = Arrays.copyOf(up,cap);
+	degree = Arrays.copyOf(degree,cap);
+	last = Arrays.copyOf(last,cap);
+}
+
+}
+
@@ -91,6 +91,14 @@ private static int pid;
  */
 private static Node node;
 
+/**
+ * Per-thread copy of time, pid and node. It is used by the parallel event
+ * driven engine while several threads execute events concurrently, and it
+ * is null otherwise.
+ * @see #setThreadLocal
+ */
+private static ThreadLocal<Context> context = null;
+
 /**
 * This source of randomness should be used by all components.
 * This field is public because it doesn't matter if it changes
@@ -150,6 +158,8 @@ protected CommonState() {}
  */
 public static long getTime()
 {
+	final ThreadLocal<Context> c = context;
+	if( c != null ) return c.get().time;
 	return time;
 }
 
@@ -167,7 +177,7 @@ public static long getTime()
  */
 public static int getIntTime()
 {
-	return (int)(time>>toshift);
+	return (int)(getTime()>>toshift);
 }
 
 //-----------------------------------------------------------------
@@ -177,7 +187,9 @@ public static int getIntTime()
  */
 public static void setTime(long t)
 {
-	time = t;
+	final ThreadLocal<Context> c = context;
+	if( c != null ) c.get().time = t;
+	else time = t;
 }
 
 //-----------------------------------------------------------------
@@ -239,6 +251,8 @@ public static void setPhase(int p)
 */
 public static int getPid()
 {
+	final ThreadLocal<Context> c = context;
+	if( c != null ) return c.get().pid;
 	return pid;
 }
 
@@ -247,7 +261,9 @@ public static int getPid()
 /** Sets the current protocol identifier.*/
 public static void setPid(int p)
 {
-	pid = p;
+	final ThreadLocal<Context> c = context;
+	if( c != null ) c.get().pid = p;
+	else pid = p;
 }
 
 //-----------------------------------------------------------------
@@ -258,6 +274,8 @@ public static void setPid(int p)
  */
 public static Node getNode()
 {
+	final ThreadLocal<Context> c = context;
+	if( c != null ) return c.get().node;
 	return node;
 }
 
@@ -266,7 +284,47 @@ public static Node getNode()
 /** Sets the current node */
 public static void setNode(Node n)
 {
-	node = n;
+	final ThreadLocal<Context> c = context;
+	if( c != null ) c.get().node = n;
+	else node = n;
+}
+
+//-----------------------------------------------------------------
+
+/**
+ * Switches between global and per-thread time, pid and node.
+ * When switched on, every thread gets its own copy of these values
+ * initialized to the current global ones; when switched off, the values of
+ * the calling thread become the global ones again.
+ * This is meant for engines that execute events concurrently,
+ * and it must be called only when no other thread is using this class.
+ */
+public static void setThreadLocal(boolean on)
+{
+	if( on == (context != null) ) return;
+	if( on )
+	{
+		final long t = time;
+		final int p = pid;
+		final Node n = node;
+		context = new ThreadLocal<Context>() {
+			protected Context initialValue() {
+				Context c = new Context();
+				c.time = t;
+				c.pid = p;
+				c.node = n;
+				return c;
+			}
+		};
+	}
+	else
+	{
+		Context c = context.get();
+		context = null;
+		time = c.time;
+		pid = c.pid;
+		node = c.node;
+	}
 }
 
 //-----------------------------------------------------------------
@@ -289,6 +347,15 @@ public static void main(String pars[]) {
 	System.err.println(getTime()+" "+getIntTime());
 }
 */
-}
 
+//-----------------------------------------------------------------
 
+/** Holder of the per-thread state. */
+private static class Context
+{
+	long time;
+	int pid;
+	Node node;
+}
+
+}
@@ -121,6 +121,31 @@ public Collection<Integer> getNeighbours(int i) {
 
 // ---------------------------------------------------------------
 
+/**
+* Copies the indices of those neighbors that are up, without creating
+* a list. If node i is not up, it returns 0.
+* @see Graph#getNeighbours(int,int[])
+*/
+public int getNeighbours(int i, int[] buf) {
+
+	if( !Network.node[i].isUp() ) return 0;
+	Linkable lble=(Linkable)Network.node[i].getProtocol(protocolID);
+	final int deg = lble.degree();
+	int n = 0;
+	for(int j=0; j<deg; ++j)
+	{
+		final Node nb = lble.getNeighbor(j);
+		if(nb.isUp())
+		{
+			if( n < buf.length ) buf[n] = nb.getIndex();
+			++n;
+		}
+	}
+	return n;
+}
+
+// ---------------------------------------------------------------
+
 /** Returns <code>Network.node[i]</code> */
 public Object getNode(int i) { return Network.node[i]; }
 	
@@ -0,0 +1,470 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package peersim.edsim;
+
+import java.util.Properties;
+import java.util.Random;
+
+import peersim.core.Node;
+import peersim.core.CommonState;
+import peersim.config.Configuration;
+import peersim.config.IllegalParameterException;
+
+/**
+ * A {@link PriorityQ} with an O(1) fast path for events scheduled a small,
+ * fixed number of time units ahead, as in hop-by-hop protocols where every
+ * message is sent with <code>EDSimulator.add(1, ...)</code>.
+ * <p>
+ * Events are ordered exactly like in {@link Heap}: by time, then by a
+ * priority of {@value #PAR_PBITS} bits drawn from {@link CommonState#r}
+ * (the random generator is consulted exactly as often as in
+ * {@link Heap}). So the two implementations produce the same event order
+ * for a given random seed, except for events that share both time and
+ * priority: these are delivered in insertion order here, while their
+ * order is unspecified (but also deterministic) in {@link Heap}.
+ * <p>
+ * An event whose time is at most {@value #PAR_DELAY} units after the time
+ * of the last removed event is appended to a FIFO list, one for each
+ * time instant and priority value; a bitmap of the non-empty lists gives
+ * the first one in constant time. All the other events are kept in a
+ * {@link Heap}, and {@link #removeFirst} returns the smaller of the two
+ * candidates. Since there is one list per priority value, this queue
+ * supports at most 12 priority bits.
+ * <p>
+ * To use this queue, set <code>simulation.eventqueue</code> to
+ * <code>peersim.edsim.BucketQueue</code>.
+ *
+ * @see Heap
+ */
+public class BucketQueue implements PriorityQ {
+
+//--------------------------------------------------------------------------
+// Constants
+//--------------------------------------------------------------------------
+
+/**
+ * This parameter specifies how many
+ * bits are used to order events that occur at the same time. Defaults
+ * to 8. A value smaller than 8 or larger than 12 causes an
+ * IllegalParameterException.
+ * Its semantics is identical to that of the parameter with the same name
+ * in {@link Heap}.
+ * @config
+ */
+private static final String PAR_PBITS = "pbits";
+private static final String PAR_PBITS_LEGACY = "simulation.timebits";
+
+/**
+ * The largest delay (with respect to the last event removed) handled by
+ * the FIFO lists. Defaults to 1, must be smaller than 64.
+ * @config
+ */
+private static final String PAR_DELAY = "delay";
+
+/**
+ * Specifies the initial capacity of the event arrays. Defaults to 65536.
+ * The same value is used by the underlying {@link Heap}.
+ * @config
+ */
+private static final String PAR_SIZE = "size";
+
+/** Largest supported value of {@value #PAR_PBITS} */
+private static final int MAX_PBITS = 12;
+
+/** Marks the end of a linked list */
+private static final int NIL = -1;
+
+//--------------------------------------------------------------------------
+// Fields
+//--------------------------------------------------------------------------
+
+/** The events that are not in the lists */
+private final Heap heap;
+
+/** Event component of the slots */
+private Object[] events;
+
+/** Time component of the slots */
+private long[] times;
+
+/** Node component of the slots */
+private Node[] nodes;
+
+/** Pid component of the slots */
+private byte[] pids;
+
+/** Next slot in the same list, or in the free list */
+private int[] next;
+
+/** Head of the free slot list */
+private int free;
+
+/** First and last slot of the list of each time instant and priority.
+The list of time t and priority p is at <code>((t&amp;tmask)&lt;&lt;pbits)|p</code>. */
+private final int[] head, tail;
+
+/** For each time instant, one bit per priority whose list is non-empty */
+private final long[] bits;
+
+/** For each time instant, one bit per non-zero word of {@link #bits} */
+private final long[] words;
+
+/** One bit per time instant with a non-empty list */
+private long ticks;
+
+/** The number of time instants in the ring of lists, a power of two */
+private final int nticks;
+
+/** <code>nticks-1</code> */
+private final int tmask;
+
+/** The number of words of {@link #bits} per time instant */
+private final int nwords;
+
+/** The largest delay handled by the lists */
+private final int delay;
+
+/** Time of the last removed event; the lists hold only events in
+<code>[now, now+delay]</code> */
+private long now;
+
+/** Number of events in the lists */
+private int size;
+
+/** Singleton event object used to return (event, time, node, pid) tuples */
+private final Event ev = new Event();
+
+/** The number of bits reserved to order event with the same timestamp */
+private final int pbits;
+
+/** The mask to test whether the time value fits into the range we can
+represent */
+private final long overflowMask;
+
+//--------------------------------------------------------------------------
+// Contructor
+//--------------------------------------------------------------------------
+
+/**
+ * Initializes a new queue using defaults.
+ */
+public BucketQueue() {
+	this(""); // "" is not a valid prefix for a component
+}
+
+//--------------------------------------------------------------------------
+
+/**
+ * Initializes a new queue using the configuration.
+ */
+public BucketQueue(String prefix) {
+
+	heap = new Heap(prefix);
+	int size = Configuration.getInt(prefix+"."+PAR_SIZE,65536);
+
+	// same legacy handling as in Heap
+	if( !Configuration.contains(PAR_PBITS_LEGACY) )
+		pbits = Configuration.getInt(prefix+"."+PAR_PBITS,8);
+	else
+		pbits = Configuration.getInt(PAR_PBITS_LEGACY);
+	if (pbits > MAX_PBITS) {
+		throw new IllegalParameterException(prefix+"."+PAR_PBITS,
+		"This parameter should be <= "+MAX_PBITS+" for "+
+		getClass().getName());
+	}
+	overflowMask = ~maxTime();
+
+	delay = Configuration.getInt(prefix+"."+PAR_DELAY,1);
+	if (delay < 0 || delay >= 64) {
+		throw new IllegalParameterException(prefix+"."+PAR_DELAY,
+		"This parameter should be >= 0 and < 64");
+	}
+	int n = 1;
+	while (n <= delay) n <<= 1;
+	nticks = n;
+	tmask = n-1;
+	nwords = Math.max(1, (1 << pbits) >> 6);
+
+	head = new int[nticks << pbits];
+	tail = new int[nticks << pbits];
+	java.util.Arrays.fill(head, NIL);
+	bits = new long[nticks*nwords];
+	words = new long[nticks];
+
+	if (size < 1) size = 1;
+	events = new Object[size];
+	times = new long[size];
+	nodes = new Node[size];
+	pids = new byte[size];
+	next = new int[size];
+	for (int i = 0; i < size; ++i) next[i] = i+1;
+	next[size-1] = NIL;
+	free = 0;
+}
+
+//--------------------------------------------------------------------------
+// Methods
+//--------------------------------------------------------------------------
+
+/**
+ * Returns the current number of events in the system.
+ */
+public int size()
+{
+	return size + heap.size();
+}
+
+//--------------------------------------------------------------------------
+
+/**
+ * Add a new event, to be scheduled at the specified time.
+ *
+ * @param time the time at which this event should be scheduled
+ * @param event the object describing the event
+ * @param node the node at which the event has to be delivered
+ * @param pid the protocol that handles the event
+ */
+public void add(long time, Object event, Node node, byte pid)
+{
+	add(time,event,node,pid,CommonState.r.nextInt(1 << pbits));
+}
+
+//--------------------------------------------------------------------------
+
+/**
+ * Add a new event, to be scheduled at the specified time.
+ *
+ * @param time the time at which this event should be scheduled
+ * @param event the object describing the event
+ * @param node the node at which the event has to be delivered
+ * @param pid the protocol that handles the event
+ * @param priority the priority of the event, lower values first
+ */
+public void add(long time, Object event, Node node, byte pid, long priority)
+{
+	if( time < now || time - now > delay )
+	{
+		heap.add(time,event,node,pid,priority);
+		return;
+	}
+	if( (time&overflowMask) != 0 ) throw new
+		IllegalArgumentException("Time overflow: time="+time);
+
+	if (free == NIL) grow();
+	final int slot = free;
+	free = next[slot];
+	events[slot] = event;
+	times[slot] = time;
+	nodes[slot] = node;
+	pids[slot] = pid;
+	next[slot] = NIL;
+
+	final int t = (int) time & tmask;
+	final int p = (int) priority;
+	final int list = (t << pbits) | p;
+	if (head[list] == NIL)
+	{
+		head[list] = slot;
+		final int w = p >>> 6;
+		bits[t*nwords + w] |= 1L << p;
+		words[t] |= 1L << w;
+		ticks |= 1L << t;
+	}
+	else next[tail[list]] = slot;
+	tail[list] = slot;
+	size++;
+}
+
+//--------------------------------------------------------------------------
+
+/**
+ * Removes the first event in the queue and returns it.
+ * Note that, to avoid garbage collection, a singleton instance of
+ * the Event class is used. This means that data contained in the
+ * returned event are overwritten when a new invocation of this
+ * method is performed.
+ * @return first event or null if size is zero
+ */
+public Event removeFirst() {
+
+	final long hkey = heap.firstKey();
+	if (size == 0)
+	{
+		if (hkey == Long.MAX_VALUE) return null;
+		return fromHeap();
+	}
+
+	// first non-empty time instant of the ring, starting from now
+	final int s = (int) now & tmask;
+	long r = (ticks >>> s) | (ticks << (nticks-s));
+	if (nticks < 64) r &= (1L << nticks)-1;
+	final int off = Long.numberOfTrailingZeros(r);
+	final long time = now + off;
+	final int t = (s + off) & tmask;
+
+	// first non-empty priority of that instant
+	final int w = Long.numberOfTrailingZeros(words[t]);
+	final int p = (w << 6) +
+		Long.numberOfTrailingZeros(bits[t*nwords + w]);
+
+	// events with the same key: the ones in the heap were added first
+	if (hkey <= ((time << pbits) | p)) return fromHeap();
+
+	final int list = (t << pbits) | p;
+	final int slot = head[list];
+	head[list] = next[slot];
+	if (head[list] == NIL)
+	{
+		bits[t*nwords + w] &= ~(1L << p);
+		if (bits[t*nwords + w] == 0)
+		{
+			words[t] &= ~(1L << w);
+			if (words[t] == 0) ticks &= ~(1L << t);
+		}
+	}
+
+	ev.time = time;
+	ev.event = events[slot];
+	ev.node = nodes[slot];
+	ev.pid = pids[slot];
+	events[slot] = null;
+	nodes[slot] = null;
+	next[slot] = free;
+	free = slot;
+	size--;
+	now = time;
+	return ev;
+}
+
+//--------------------------------------------------------------------------
+
+public long maxTime() { return Long.MAX_VALUE >> pbits; }
+
+//--------------------------------------------------------------------------
+
+public long maxPriority() { return (1L << pbits)-1; }
+
+//--------------------------------------------------------------------------
+
+/**
+ * Prints the number of events in the lists and in the heap.
+ */
+public String toString()
+{
+	return "[Size: "+size()+" Lists: "+size+" Heap: "+heap+"]";
+}
+
+//--------------------------------------------------------------------------
+// Private methods
+//--------------------------------------------------------------------------
+
+/** Removes the first event of the heap, which is not empty */
+private Event fromHeap() {
+
+	final Event e = heap.removeFirst();
+	if (e.time > now) now = e.time;
+	return e;
+}
+
+//--------------------------------------------------------------------------
+
+/** Doubles the capacity of the slot arrays */
+private void grow() {
+
+	final int oldsize = events.length;
+	final int newsize = oldsize*2;
+	events = java.util.Arrays.copyOf(events, newsize);
+	times = java.util.Arrays.copyOf(times, newsize);
+	nodes = java.util.Arrays.copyOf(nodes, newsize);
+	pids = java.util.Arrays.copyOf(pids, newsize);
+	next = java.util.Arrays.copyOf(next, newsize);
+	for (int i = oldsize; i < newsize; ++i) next[i] = i+1;
+	next[newsize-1] = NIL;
+	free = oldsize;
+}
+
+//--------------------------------------------------------------------------
+// Testing
+//--------------------------------------------------------------------------
+
+/**
+ * Compares this queue with {@link Heap} in a hop-by-hop model: each
+ * removed event is replaced by one event one time unit later, and with
+ * probability 1/10 by one with a random delay. Checks that the
+ * sequence of (time, priority) keys is the same and prints the running
+ * times in milliseconds.
+ * @param args the number of pending events, possibly several values
+ */
+public static void main(String[] args) {
+
+	Configuration.setConfig(new Properties());
+	long[] sizes = {1000, 10000, 100000, 1000000};
+	if (args.length > 0)
+	{
+		sizes = new long[args.length];
+		for (int i = 0; i < args.length; ++i)
+			sizes[i] = Long.parseLong(args[i]);
+	}
+	System.out.println("# size heap_ms bucket_ms");
+	for (int i = 0; i < sizes.length; ++i)
+	{
+		final int n = (int) sizes[i];
+		final int rep = Math.max(10*n, 1000000);
+		CommonState.initializeRandom(1234567890L);
+		final long[] ch = new long[1];
+		final long th = hop(new Heap(), n, rep, ch);
+		CommonState.initializeRandom(1234567890L);
+		final long[] cb = new long[1];
+		final long tb = hop(new BucketQueue(), n, rep, cb);
+		if (ch[0] != cb[0])
+			throw new RuntimeException("Different event order");
+		System.out.println(n+" "+th+" "+tb);
+	}
+}
+
+//--------------------------------------------------------------------------
+
+private static long hop(PriorityQ q, int n, int rep, long[] check)
+{
+	final Random random = new Random(rep);
+	// the event object is the priority, so that the check does not depend
+	// on the order of events with the same time and priority
+	final Long[] prio = new Long[256];
+	for (int i = 0; i < prio.length; i++) prio[i] = Long.valueOf(i);
+	for (int i = 0; i < n; i++)
+	{
+		final int p = random.nextInt(256);
+		q.add(random.nextInt(10), prio[p], null, (byte) 1, p);
+	}
+	final long start = System.currentTimeMillis();
+	long c = 0;
+	for (int i = 0; i < rep; i++)
+	{
+		final Event e = q.removeFirst();
+		final long t = e.time;
+		c = c*31 + t*1000003 + ((Long) e.event);
+		final int d = random.nextInt(10) == 0 ? 1+random.nextInt(20) : 1;
+		final int p = random.nextInt(256);
+		q.add(t + d, prio[p], null, (byte) 1, p);
+	}
+	check[0] = c;
+	return System.currentTimeMillis()-start;
+}
+
+}
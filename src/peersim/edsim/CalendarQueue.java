@@ -0,0 +1,554 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package peersim.edsim;
+
+import java.util.Properties;
+import java.util.Random;
+
+import peersim.core.Node;
+import peersim.core.CommonState;
+import peersim.config.Configuration;
+import peersim.config.IllegalParameterException;
+
+/**
+ * A calendar queue (R. Brown, CACM 31(10), 1988) implementation of
+ * {@link PriorityQ} with O(1) amortized insertion and removal.
+ * <p>
+ * Events are ordered exactly like in {@link Heap}: the time of the event is
+ * shifted left by {@value #PAR_PBITS} bits and the lower bits are filled
+ * with the priority, which is drawn from {@link CommonState#r} if not
+ * given explicitly. The random generator is consulted exactly as often as
+ * in {@link Heap}, so the two implementations produce the same event
+ * order for a given random seed, except for events that share both
+ * time and priority: these are delivered in reverse insertion order here,
+ * while their order is unspecified (but also deterministic) in
+ * {@link Heap}.
+ * <p>
+ * The calendar is an array of buckets ("days") each covering an
+ * interval of the combined time and priority key; a bucket
+ * holds a sorted linked list of the events falling into its interval in
+ * any "year". Because the priority bits are part of the key, the many
+ * events scheduled for the same time instant (typical of hop-by-hop
+ * protocols) are spread over many buckets instead of piling up in one.
+ * The number of buckets is doubled or halved as the queue grows or
+ * shrinks, and the bucket width is recomputed from the separation of the
+ * events at the head of the queue.
+ * <p>
+ * Like {@link Heap}, the events are stored in parallel arrays (linked
+ * through an array of indices) to avoid allocating an object per event.
+ * To use this queue, set <code>simulation.eventqueue</code> to
+ * <code>peersim.edsim.CalendarQueue</code>.
+ *
+ * @see Heap
+ */
+public class CalendarQueue implements PriorityQ {
+
+//--------------------------------------------------------------------------
+// Constants
+//--------------------------------------------------------------------------
+
+/**
+ * This parameter specifies how many
+ * bits are used to order events that occur at the same time. Defaults
+ * to 8. A value smaller than 8 causes an IllegalParameterException.
+ * Higher values allow for a better discrimination, but reduce
+ * the maximal time steps that can be simulated.
+ * Its semantics is identical to that of the parameter with the same name
+ * in {@link Heap}.
+ * @config
+ */
+private static final String PAR_PBITS = "pbits";
+private static final String PAR_PBITS_LEGACY = "simulation.timebits";
+
+/**
+ * Specifies the initial capacity of the event arrays. Defaults to 65536.
+ * @config
+ */
+private static final String PAR_SIZE = "size";
+
+/** Minimal (and initial) number of buckets. Must be a power of two. */
+private static final int MIN_BUCKETS = 16;
+
+/** Number of events at the head of the queue used to compute the width */
+private static final int SAMPLE = 32;
+
+/** Marks the end of a linked list */
+private static final int NIL = -1;
+
+//--------------------------------------------------------------------------
+// Fields
+//--------------------------------------------------------------------------
+
+/** Event component of the slots */
+private Object[] events;
+
+/** Key (time and priority) component of the slots */
+private long[] keys;
+
+/** Node component of the slots */
+private Node[] nodes;
+
+/** Pid component of the slots */
+private byte[] pids;
+
+/** Next slot in the same bucket, or in the free list */
+private int[] next;
+
+/** Head of the free slot list */
+private int free;
+
+/** First slot of each bucket; each bucket is sorted by key */
+private int[] buckets;
+
+/** <code>buckets.length-1</code>, used to compute the bucket of a day */
+private int mask;
+
+/** Width of a bucket in key units */
+private long width;
+
+/** Index of the day containing the first event of the queue, if any. No
+event belongs to an earlier day. */
+private long day;
+
+/** Number of elements */
+private int size;
+
+/** Singleton event object used to return (event, time, node, pid) tuples */
+private final Event ev = new Event();
+
+/** The number of bits reserved to order event with the same timestamp */
+private final int pbits;
+
+/** The mask to test whether the time value fits into the range we can
+represent */
+private final long overflowMask;
+
+//--------------------------------------------------------------------------
+// Contructor
+//--------------------------------------------------------------------------
+
+/**
+ * Initializes a new calendar queue using defaults.
+ */
+public CalendarQueue() {
+	this(""); // "" is not a valid prefix for a component
+}
+
+//--------------------------------------------------------------------------
+
+/**
+ * Initializes a new calendar queue using the configuration.
+ */
+public CalendarQueue(String prefix) {
+
+	int size = Configuration.getInt(prefix+"."+PAR_SIZE,65536);
+
+	// same legacy handling as in Heap
+	if( !Configuration.contains(PAR_PBITS_LEGACY) )
+		pbits = Configuration.getInt(prefix+"."+PAR_PBITS,8);
+	else
+	{
+		pbits = Configuration.getInt(PAR_PBITS_LEGACY);
+		if( Configuration.contains(prefix+"."+PAR_PBITS) )
+			throw new IllegalParameterException(PAR_PBITS_LEGACY,
+				"Your configuration file contains both "+
+				prefix+"."+PAR_PBITS+ " and "+
+				PAR_PBITS_LEGACY+"; please remove "+
+				PAR_PBITS_LEGACY);
+	}
+
+	if (pbits < 8 || pbits >= 31) {
+		throw new IllegalParameterException(prefix+"."+PAR_PBITS,
+		"This parameter should be >= 8 or < 31");
+	}
+	overflowMask = ~maxTime();
+
+	if (size < 1) size = 1;
+	events = new Object[size];
+	keys = new long[size];
+	nodes = new Node[size];
+	pids = new byte[size];
+	next = new int[size];
+	for (int i = 0; i < size; ++i) next[i] = i+1;
+	next[size-1] = NIL;
+	free = 0;
+
+	buckets = new int[MIN_BUCKETS];
+	java.util.Arrays.fill(buckets, NIL);
+	mask = MIN_BUCKETS-1;
+	// one time unit per bucket until we know better
+	width = 1L << pbits;
+	day = 0;
+}
+
+//--------------------------------------------------------------------------
+// Methods
+//--------------------------------------------------------------------------
+
+/**
+ * Returns the current number of events in the system.
+ */
+public int size()
+{
+	return size;
+}
+
+//--------------------------------------------------------------------------
+
+/**
+ * Add a new event, to be scheduled at the specified time.
+ *
+ * @param time the time at which this event should be scheduled
+ * @param event the object describing the event
+ * @param node the node at which the event has to be delivered
+ * @param pid the protocol that handles the event
+ */
+public void add(long time, Object event, Node node, byte pid)
+{
+	add(time,event,node,pid,CommonState.r.nextInt(1 << pbits));
+}
+
+//--------------------------------------------------------------------------
+
+/**
+ * Add a new event, to be scheduled at the specified time.
+ *
+ * @param time the time at which this event should be scheduled
+ * @param event the object describing the event
+ * @param node the node at which the event has to be delivered
+ * @param pid the protocol that handles the event
+ * @param priority the priority of the event among events at the same time
+ */
+public void add(long time, Object event, Node node, byte pid, long priority)
+{
+	if( (time&overflowMask) != 0 ) throw new
+		IllegalArgumentException("Time overflow: time="+time);
+
+	final long key = (time << pbits) | priority;
+
+	if (free == NIL) doubleCapacity();
+	final int slot = free;
+	free = next[slot];
+	events[slot] = event;
+	keys[slot] = key;
+	nodes[slot] = node;
+	pids[slot] = pid;
+
+	// an event may precede the last one removed (same time, lower
+	// priority), in that case we step back in the calendar
+	final long d = key / width;
+	if (size == 0 || d < day) day = d;
+	link(slot, (int)(d & mask));
+	size++;
+
+	if (size > 2*buckets.length) resize(buckets.length << 1);
+}
+
+//--------------------------------------------------------------------------
+
+/**
+ * Removes the first event in the queue and returns it.
+ * Note that, to avoid garbage collection, a singleton instance of
+ * the Event class is used. This means that data contained in the
+ * returned event are overwritten when a new invocation of this
+ * method is performed.
+ * @return first event or null if size is zero
+ */
+public Event removeFirst() {
+
+	if (size == 0) return null;
+
+	int b = NIL;
+	// scan at most one year looking for an event of the current day
+	for (int i = 0; i <= mask; ++i, ++day)
+	{
+		final int h = buckets[(int)(day & mask)];
+		if (h != NIL && keys[h] / width == day)
+		{
+			b = (int)(day & mask);
+			break;
+		}
+	}
+
+	// the queue is sparse relative to the year: direct search
+	if (b == NIL)
+	{
+		long min = Long.MAX_VALUE;
+		for (int i = 0; i <= mask; ++i)
+		{
+			final int h = buckets[i];
+			if (h != NIL && keys[h] <= min)
+			{
+				min = keys[h];
+				b = i;
+			}
+		}
+		day = min / width;
+	}
+
+	final int slot = buckets[b];
+	buckets[b] = next[slot];
+	ev.time = keys[slot] >> pbits;
+	ev.event = events[slot];
+	ev.node = nodes[slot];
+	ev.pid = pids[slot];
+	events[slot] = null;
+	nodes[slot] = null;
+	next[slot] = free;
+	free = slot;
+	size--;
+
+	if (buckets.length > MIN_BUCKETS && size < buckets.length/2)
+		resize(buckets.length >> 1);
+	return ev;
+}
+
+//--------------------------------------------------------------------------
+
+public long maxTime() { return Long.MAX_VALUE >> pbits; }
+
+//--------------------------------------------------------------------------
+
+public long maxPriority() { return (1L << pbits)-1; }
+
+//--------------------------------------------------------------------------
+
+/**
+ *  Prints the size and the calendar parameters.
+ */
+public String toString()
+{
+	return "[Size: " + size + " Buckets: " + buckets.length +
+		" Width: " + width + " Day: " + day + "]";
+}
+
+//--------------------------------------------------------------------------
+// Private methods
+//--------------------------------------------------------------------------
+
+/**
+ * Inserts the slot in the given bucket, after all the slots with a smaller
+ * key and before the ones with an equal key, so that long runs of equal
+ * keys are not walked. Equal keys are thus delivered in reverse insertion
+ * order.
+ */
+private void link(int slot, int b)
+{
+	final long key = keys[slot];
+	int prev = NIL;
+	int cur = buckets[b];
+	while (cur != NIL && keys[cur] < key)
+	{
+		prev = cur;
+		cur = next[cur];
+	}
+	next[slot] = cur;
+	if (prev == NIL) buckets[b] = slot;
+	else next[prev] = slot;
+}
+
+//--------------------------------------------------------------------------
+
+/**
+ * Rebuilds the calendar with the given number of buckets. The width is
+ * set to three times the average separation of the events at the head of
+ * the queue, ignoring separations larger than twice the average, as
+ * suggested by Brown.
+ */
+private void resize(int nbuckets)
+{
+	// collect the SAMPLE smallest keys in a bounded max-heap
+	final long[] smallest = new long[Math.min(SAMPLE, size)];
+	int n = 0;
+	for (int i = 0; i <= mask; ++i)
+	{
+		for (int s = buckets[i]; s != NIL; s = next[s])
+		{
+			final long k = keys[s];
+			if (n < smallest.length)
+			{
+				int p = n++;
+				smallest[p] = k;
+				while (p > 0 && smallest[(p-1)/2] < smallest[p])
+				{
+					swap(smallest, p, (p-1)/2);
+					p = (p-1)/2;
+				}
+			}
+			else if (k < smallest[0])
+			{
+				smallest[0] = k;
+				siftDown(smallest, n);
+			}
+			// buckets are sorted: nothing else here can be smaller
+			else break;
+		}
+	}
+	java.util.Arrays.sort(smallest, 0, n);
+
+	if (n > 1)
+	{
+		final double avg = (smallest[n-1]-smallest[0]) / (double)(n-1);
+		double sum = 0;
+		int cnt = 0;
+		for (int i = 1; i < n; ++i)
+		{
+			final long sep = smallest[i]-smallest[i-1];
+			if (sep <= 2*avg) { sum += sep; cnt++; }
+		}
+		final double w = (cnt > 0 ? 3*sum/cnt : 3*avg);
+		width = Math.max(1L, (long) Math.min(w, (double)(Long.MAX_VALUE/4)));
+	}
+
+	// relink all the slots in the new calendar
+	final int[] old = buckets;
+	buckets = new int[nbuckets];
+	java.util.Arrays.fill(buckets, NIL);
+	mask = nbuckets-1;
+	day = (n > 0 ? smallest[0] / width : 0);
+	for (int i = 0; i < old.length; ++i)
+	{
+		int s = old[i];
+		while (s != NIL)
+		{
+			final int nx = next[s];
+			link(s, (int)((keys[s] / width) & mask));
+			s = nx;
+		}
+	}
+}
+
+//--------------------------------------------------------------------------
+
+private static void siftDown(long[] h, int n)
+{
+	int p = 0;
+	while (true)
+	{
+		final int l = 2*p+1;
+		if (l >= n) return;
+		int c = (l+1 < n && h[l+1] > h[l] ? l+1 : l);
+		if (h[c] <= h[p]) return;
+		swap(h, p, c);
+		p = c;
+	}
+}
+
+//--------------------------------------------------------------------------
+
+private static void swap(long[] h, int i, int j)
+{
+	final long t = h[i];
+	h[i] = h[j];
+	h[j] = t;
+}
+
+//--------------------------------------------------------------------------
+
+/**
+ * Doubles the slot arrays and puts the new slots in the free list.
+ */
+private void doubleCapacity() {
+	int oldsize = events.length;
+	int newsize = oldsize*2;
+	Object[] te = new Object[newsize];
+	System.arraycopy(events, 0, te, 0, oldsize);
+	events = te;
+	long[] tk = new long[newsize];
+	System.arraycopy(keys, 0, tk, 0, oldsize);
+	keys = tk;
+	Node[] tn = new Node[newsize];
+	System.arraycopy(nodes, 0, tn, 0, oldsize);
+	nodes = tn;
+	byte[] tp = new byte[newsize];
+	System.arraycopy(pids, 0, tp, 0, oldsize);
+	pids = tp;
+	int[] tx = new int[newsize];
+	System.arraycopy(next, 0, tx, 0, oldsize);
+	for (int i = oldsize; i < newsize; ++i) tx[i] = i+1;
+	tx[newsize-1] = free;
+	next = tx;
+	free = oldsize;
+}
+
+//--------------------------------------------------------------------------
+// Testing
+//--------------------------------------------------------------------------
+
+/**
+ * Compares this queue with {@link Heap} using the "hold" model: the queue is
+ * filled with the given number of events, then each removal is followed by
+ * the insertion of an event a random (small) delay after the removed one,
+ * which is how a running simulation uses the queue. Prints the time spent
+ * in milliseconds and checks that both queues return the same sequence of
+ * times: on a mismatch it reports the size and exits with status 1.
+ * The arguments are the queue sizes to test, by default
+ * 10^4, 10^5, 10^6 and 10^7 (10^8 needs a heap of several gigabytes).
+ */
+public static void main(String[] args) {
+
+	Configuration.setConfig(new Properties());
+	long[] sizes = {10000, 100000, 1000000, 10000000};
+	if (args.length > 0)
+	{
+		sizes = new long[args.length];
+		for (int i = 0; i < args.length; ++i)
+			sizes[i] = Long.parseLong(args[i]);
+	}
+	System.out.println("# size heap_ms calendar_ms");
+	for (int i = 0; i < sizes.length; ++i)
+	{
+		final int rep = (int) sizes[i];
+		CommonState.initializeRandom(1234567890L);
+		final long[] h = hold(new Heap(), rep);
+		CommonState.initializeRandom(1234567890L);
+		final long[] c = hold(new CalendarQueue(), rep);
+		System.out.println(rep+" "+h[0]+" "+c[0]);
+		if (h[1] != c[1])
+		{
+			System.err.println("size "+rep+": sequences differ, checksum "+
+				h[1]+" (heap) "+c[1]+" (calendar)");
+			System.exit(1);
+		}
+	}
+}
+
+//--------------------------------------------------------------------------
+
+/**
+ * Runs the hold model on the given queue and returns the time spent in
+ * milliseconds and a checksum of the sequence of removed times.
+ */
+private static long[] hold(PriorityQ q, int rep)
+{
+	final Random random = new Random(rep);
+	final long start = System.currentTimeMillis();
+	for (int i = 0; i < rep; i++)
+		q.add(random.nextInt(1000), null, null, (byte) 1);
+	long check = 0;
+	for (int i = 0; i < rep; i++)
+	{
+		final long t = q.removeFirst().time;
+		check = check*31 + t;
+		q.add(t + 1 + random.nextInt(10), null, null, (byte) 1);
+	}
+	return new long[] {System.currentTimeMillis()-start, check};
+}
+
+} // END CalendarQueue
@@ -110,11 +110,41 @@ private static final String PAR_LOGTIME = "simulation.logtime";
 /** 
  * This parameter specifies the event queue to be used. It must be an
  * implementation of interface {@link PriorityQ}. If it is not defined,
- * the internal implementation is used.
+ * the internal implementation is used. Available implementations are
+ * {@link Heap} (the default), {@link CalendarQueue}, which is
+ * faster when many events are pending, and {@link BucketQueue}, which
+ * is faster when most events are scheduled with the same small delay.
  * @config 
  */	
 private static final String PAR_PQ = "simulation.eventqueue";
 
+/**
+ * If this parameter is present, the events are executed by a
+ * conservative parallel engine that partitions the nodes into logical
+ * processes and executes them concurrently in windows of time no longer
+ * than the minimal message delay. The parameters of the engine are
+ * <code>simulation.parallel.threads</code>,
+ * <code>simulation.parallel.lps</code>,
+ * <code>simulation.parallel.lookahead</code> and
+ * <code>simulation.parallel.transport</code>.
+ * See the documentation of class <code>ParallelEngine</code>
+ * in this package for details and restrictions.
+ * @config
+ */
+private static final String PAR_PARALLEL = "simulation.parallel";
+
+/**
+ * If this parameter is present (and {@value #PAR_PARALLEL} is not), the
+ * events are executed sequentially, but with the random streams and the
+ * event order of the parallel engine: every node draws from its own
+ * stream while its events are delivered. The results are then exactly the
+ * same as those of the parallel engine for the same seed, whatever its
+ * number of threads and logical processes. {@value #PAR_PQ} is used for
+ * the controls only.
+ * @config
+ */
+private static final String PAR_PERNODE = "simulation.pernode";
+
 /**
  * This is the prefix for initializers.
  * These have to be of type
@@ -159,6 +189,9 @@ private static PriorityQ heap = null;
 
 private static long nextlog = 0;
 
+/** The parallel engine, or its sequential version, if used */
+private static ParallelEngine parallel = null;
+
 // =============== initialization ======================================
 // =====================================================================
 
@@ -262,14 +295,7 @@ private static boolean executeNext() {
 	}
 	
 	long time = ev.time;
-	if (time >= nextlog)
-	{
-		System.err.println("Current time: " + time);
-		// seemingly complicated: to prevent overflow
-		while( time-nextlog >= logtime ) nextlog+=logtime;
-		if( endtime-nextlog >= logtime ) nextlog+=logtime;
-		else nextlog=endtime;
-	}
+	logTime(time);
 	if (time >= endtime)
 	{
 		System.err.println("EDSimulator: reached end time, quitting,"+
@@ -279,7 +305,20 @@ private static boolean executeNext() {
 	
 	CommonState.setTime(time);
 	int pid = ev.pid;
-	if (ev.node == null)
+	if (ev.event instanceof MulticastEvent)
+	{
+		// put it back for the next receiver before delivering, as if
+		// the receivers had separate events
+		MulticastEvent m = (MulticastEvent) ev.event;
+		Node node = ev.node;
+		Object event = m.event;
+		if (m.advance())
+			heap.add(time, m, m.node(), (byte) pid, m.priority());
+		else
+			m.recycle();
+		deliver(node, pid, event);
+	}
+	else if (ev.node == null)
 	{
 		// might be control event; handled through a special method
 		ControlEvent ctrl = null;
@@ -292,31 +331,60 @@ private static boolean executeNext() {
 		}
 		return ctrl.execute();
 	}
-	else if (ev.node != Network.prototype && ev.node.isUp() )
+	else deliver(ev.node, pid, ev.event);
+	
+	return false;
+}
+
+//---------------------------------------------------------------------
+
+/**
+ * Logs the time on the standard error if the next logging time
+ * (see {@value #PAR_LOGTIME}) has been reached.
+ */
+static void logTime(long time)
+{
+	if (time >= nextlog)
+	{
+		System.err.println("Current time: " + time);
+		// seemingly complicated: to prevent overflow
+		while( time-nextlog >= logtime ) nextlog+=logtime;
+		if( endtime-nextlog >= logtime ) nextlog+=logtime;
+		else nextlog=endtime;
+	}
+}
+
+//---------------------------------------------------------------------
+
+/**
+ * Delivers a (non-control) event to the given protocol of the given node,
+ * if the node is up. The current time must already be set.
+ */
+static void deliver(Node node, int pid, Object event)
+{
+	if (node != Network.prototype && node.isUp() )
 	{
 		CommonState.setPid(pid);
-		CommonState.setNode(ev.node);
-		if( ev.event instanceof NextCycleEvent )
+		CommonState.setNode(node);
+		if( event instanceof NextCycleEvent )
 		{
-			NextCycleEvent nce = (NextCycleEvent) ev.event;
+			NextCycleEvent nce = (NextCycleEvent) event;
 			nce.execute();
 		}
 		else
 		{
 			EDProtocol prot = null;
 			try {
-				prot = (EDProtocol) ev.node.getProtocol(pid);
+				prot = (EDProtocol) node.getProtocol(pid);
 			} catch (ClassCastException e) {
 				e.printStackTrace();
 				throw new IllegalArgumentException("Protocol " +
 					Configuration.lookupPid(pid) + 
-					" does not implement EDProtocol; " + ev.event.getClass()  );
+					" does not implement EDProtocol; " + event.getClass()  );
 			}
-			prot.processEvent(ev.node, pid, ev.event);
+			prot.processEvent(node, pid, event);
 		}
 	}
-	
-	return false;
 }
 
 //---------------------------------------------------------------------
@@ -350,15 +418,31 @@ public static void nextExperiment()
 	ctrlSchedules = null;
 	nextlog = 0;
 	Network.reset();
+	if( Configuration.contains(PAR_PARALLEL) )
+		parallel = ParallelEngine.parallel(PAR_PARALLEL, endtime);
+	else if( Configuration.contains(PAR_PERNODE) )
+		parallel = ParallelEngine.sequential(endtime);
 	System.err.println("EDSimulator: running initializers");
 	runInitializers();
 	scheduleControls();
 
 	// Perform the actual simulation; executeNext() will tell when to
 	// stop.
-	boolean exit = false;
-	while (!exit) {
-		exit = executeNext();
+	if( parallel != null )
+	{
+		try {
+			parallel.run(heap);
+		} finally {
+			parallel.shutdown();
+			parallel = null;
+		}
+	}
+	else
+	{
+		boolean exit = false;
+		while (!exit) {
+			exit = executeNext();
+		}
 	}
 
 	// analysis after the simulation
@@ -400,7 +484,84 @@ public static void add(long delay, Object event, Node node, int pid)
 	
 	long time = CommonState.getTime();
 	if( endtime - time > delay ) // check like this to deal with overflow 
-		heap.add(time+delay, event, node, (byte) pid);
+	{
+		if( parallel != null )
+			parallel.add(time+delay, event, node, (byte) pid);
+		else
+			heap.add(time+delay, event, node, (byte) pid);
+	}
+}
+
+//---------------------------------------------------------------------
+
+/**
+ * Adds an event to be delivered to several nodes after the same delay.
+ * The result is the same as calling {@link #add} for each node in the
+ * given order (the same random numbers are drawn for the priorities, so
+ * the deliveries are ordered in the same way with respect to the other
+ * events), but only one entry is inserted in the event queue. The entry
+ * is expanded one receiver at a time as it is removed from the queue.
+ * With the parallel engine (or {@value #PAR_PERNODE}), the event is
+ * added once per node.
+ * 
+ * @param delay 
+ *   The number of time units before the event is scheduled.
+ *   Has to be non-negative.
+ * @param event 
+ *   The object delivered to each node; it is shared, so it should not
+ *   be modified by the receivers.
+ * @param nodes 
+ *   The receivers.
+ * @param pid 
+ *   The identifier of the protocol to which the event will be delivered
+ */
+public static void multicast(long delay, Object event, Node[] nodes, int pid)
+{
+	multicast(delay, event, nodes, nodes.length, pid);
+}
+
+//---------------------------------------------------------------------
+
+/**
+ * Same as {@link #multicast(long,Object,Node[],int)} for the first
+ * n elements of the given array. The receivers are copied into a
+ * recycled queue entry, so the caller can reuse the array as a scratch
+ * buffer and a multicast does not allocate once the simulation has
+ * reached its peak number of pending multicasts.
+ * 
+ * @param n 
+ *   The number of receivers, at the beginning of nodes.
+ */
+public static void multicast(long delay, Object event, Node[] nodes, int n,
+		int pid)
+{
+	if (n < 2 || parallel != null)
+	{
+		for (int i = 0; i < n; ++i)
+			add(delay, event, nodes[i], pid);
+		return;
+	}
+	if (delay < 0)
+		throw new IllegalArgumentException("Protocol "+
+			nodes[0].getProtocol(pid)+" is trying to add event "+
+			event+" with a negative delay: "+delay);
+	if (pid > Byte.MAX_VALUE) 
+		throw new IllegalArgumentException(
+				"This version does not support more than " 
+				+ Byte.MAX_VALUE + " protocols");
+	
+	long time = CommonState.getTime();
+	if( endtime - time > delay ) // check like this to deal with overflow 
+	{
+		// the same draws as PriorityQ.add(time,event,node,pid)
+		final int bound = (int) heap.maxPriority() + 1;
+		MulticastEvent m = MulticastEvent.obtain(event, nodes, n);
+		final int[] priorities = m.priorities();
+		for (int i = 0; i < n; ++i)
+			priorities[i] = CommonState.r.nextInt(bound);
+		m.sort();
+		heap.add(time+delay, m, m.node(), (byte) pid, m.priority());
+	}
 }
 
 }
@@ -212,6 +212,30 @@ public Event removeFirst() {
 
 //--------------------------------------------------------------------------
 
+/**
+ * Returns the key (time and priority) of the first event without
+ * removing it, or <code>Long.MAX_VALUE</code> if the heap is empty.
+ */
+long firstKey() {
+
+	if(size==0) return Long.MAX_VALUE;
+	return times[0];
+}
+
+//--------------------------------------------------------------------------
+
+/**
+ * Returns the time of the first event without removing it, or
+ * <code>Long.MAX_VALUE</code> if the heap is empty.
+ */
+long firstTime() {
+
+	if(size==0) return Long.MAX_VALUE;
+	return times[0] >> pbits;
+}
+
+//--------------------------------------------------------------------------
+
 public long maxTime() { return Long.MAX_VALUE >> pbits; }
 
 //--------------------------------------------------------------------------
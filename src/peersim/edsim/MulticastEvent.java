@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package peersim.edsim;
+
+import peersim.core.Node;
+
+/**
+ * A single queue entry standing for the delivery of the same event to
+ * several nodes at the same time (see
+ * {@link EDSimulator#multicast(long,Object,Node[],int)}).
+ * <p>
+ * Every receiver gets its own random priority, drawn when the multicast
+ * is sent exactly as if the event had been added once per receiver.
+ * The receivers are sorted by priority and the entry is always in the
+ * queue with the key of the first receiver not yet served; when it is
+ * removed, it is put back with the key of the next receiver and the event
+ * is delivered to the current one. So the deliveries are interleaved with
+ * the other events just like separate events would be, while the queue
+ * holds a single entry instead of one per receiver. Entries are recycled
+ * once their last receiver has been served.
+ */
+final class MulticastEvent {
+
+// ========================= fields ===================================
+// ====================================================================
+
+/** Initial capacity of the receiver arrays, they grow as needed */
+private static final int INITIAL = 16;
+
+/**
+ * Entries whose receivers have all been served, linked through
+ * {@link #nextFree}. Multicasts are only used by the sequential engine,
+ * so the list is not synchronized.
+ */
+private static MulticastEvent free = null;
+
+/** The event delivered to every receiver */
+Object event;
+
+/** The receivers, sorted by priority */
+private Node[] nodes = new Node[INITIAL];
+
+/** The priorities of the receivers, in increasing order */
+private int[] priorities = new int[INITIAL];
+
+/** The number of receivers */
+private int size;
+
+/** The index of the next receiver */
+private int next;
+
+/** The next entry of the free list */
+private MulticastEvent nextFree;
+
+
+// ====================== initialization ==============================
+// ====================================================================
+
+
+private MulticastEvent() {}
+
+// --------------------------------------------------------------------
+
+/**
+ * Returns an entry for the given event and the first n receivers of
+ * the given array, taken from the free list if possible. The receivers
+ * are copied, so the caller keeps ownership of the array. The priorities
+ * are filled in by the caller through {@link #priorities()} and then
+ * sorted with {@link #sort()}.
+ */
+static MulticastEvent obtain(Object event, Node[] nodes, int n) {
+
+	MulticastEvent m = free;
+	if (m != null)
+	{
+		free = m.nextFree;
+		m.nextFree = null;
+	}
+	else m = new MulticastEvent();
+	if (m.nodes.length < n)
+	{
+		final int cap = Math.max(n, m.nodes.length*2);
+		m.nodes = new Node[cap];
+		m.priorities = new int[cap];
+	}
+	System.arraycopy(nodes, 0, m.nodes, 0, n);
+	m.event = event;
+	m.size = n;
+	m.next = 0;
+	return m;
+}
+
+
+// ========================= methods ==================================
+// ====================================================================
+
+
+/**
+ * The array of priorities, to be filled in for the first {@link #size}
+ * receivers before calling {@link #sort()}.
+ */
+int[] priorities() { return priorities; }
+
+// --------------------------------------------------------------------
+
+/**
+ * Sorts the receivers by priority, in place. Receivers with the same
+ * priority keep their order. This is a binary insertion sort: the number
+ * of receivers is a fan-out, usually small, and the moves are done by
+ * {@link System#arraycopy}.
+ */
+void sort() {
+
+	for (int i = 1; i < size; ++i)
+	{
+		final int p = priorities[i];
+		if (priorities[i-1] <= p) continue;
+		// first position with a larger priority
+		int lo = 0, hi = i-1;
+		while (lo < hi)
+		{
+			final int mid = (lo+hi) >>> 1;
+			if (priorities[mid] <= p) lo = mid+1;
+			else hi = mid;
+		}
+		final Node nd = nodes[i];
+		System.arraycopy(priorities, lo, priorities, lo+1, i-lo);
+		System.arraycopy(nodes, lo, nodes, lo+1, i-lo);
+		priorities[lo] = p;
+		nodes[lo] = nd;
+	}
+}
+
+// --------------------------------------------------------------------
+
+/** The first receiver not yet served. */
+Node node() { return nodes[next]; }
+
+// --------------------------------------------------------------------
+
+/** The priority of the first receiver not yet served. */
+int priority() { return priorities[next]; }
+
+// --------------------------------------------------------------------
+
+/**
+ * Moves to the next receiver. Returns false if all of them have been
+ * served.
+ */
+boolean advance() {
+
+	nodes[next] = null;
+	return ++next < size;
+}
+
+// --------------------------------------------------------------------
+
+/**
+ * Puts this entry back in the free list. To be called once all the
+ * receivers have been served and the event has been taken.
+ */
+void recycle() {
+
+	event = null;
+	nextFree = free;
+	free = this;
+}
+
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package peersim.edsim;
+
+/**
+ * The random streams of the nodes, used by {@link ParallelEngine}. The
+ * stream of a node is a SplitMix64 generator whose start depends only on a
+ * base seed and on the ID of the node, so the numbers a node draws do not
+ * depend on the other nodes. Every node also counts the events it has
+ * queued, which orders the events that have the same time and priority.
+ * <p>
+ * The state is kept in chunks of {@value #CHUNK} nodes, indexed by ID, and
+ * created when a node of the chunk is first used. A node is only used by
+ * the thread executing its LP, and creating a chunk does not move the
+ * existing ones, so the state needs no locking.
+ */
+final class NodeStreams
+{
+
+//---------------------------------------------------------------------
+//Fields
+//---------------------------------------------------------------------
+
+private static final int SHIFT = 12;
+
+private static final int CHUNK = 1 << SHIFT;
+
+private static final long GAMMA = 0x9E3779B97F4A7C15L;
+
+/** The seed the streams are derived from */
+private final long base;
+
+/**
+ * Chunks of state: the stream of a node at <code>2*i</code>, its event
+ * counter at <code>2*i+1</code>. Replaced by a copy when a chunk is
+ * added, so that a thread that sees a chunk also sees its content.
+ */
+private volatile long[][] chunks = new long[0][];
+
+/** Number of events queued outside the nodes (controls, initializers) */
+private long queued = 0;
+
+//---------------------------------------------------------------------
+//Initialization
+//---------------------------------------------------------------------
+
+NodeStreams(long base)
+{
+	this.base = base;
+}
+
+//---------------------------------------------------------------------
+//Methods
+//---------------------------------------------------------------------
+
+/** Returns the next 64 random bits of the stream of the given node. */
+long nextLong(long id)
+{
+	final long[] c = chunk(id);
+	final int i = 2 * (int) (id & (CHUNK - 1));
+	return mix(c[i] += GAMMA);
+}
+
+//---------------------------------------------------------------------
+
+/**
+ * Returns the number of events queued so far by the given node, and
+ * increments it. An ID of -1 stands for the main thread.
+ */
+long nextSeq(long id)
+{
+	if (id < 0) return queued++;
+	final long[] c = chunk(id);
+	return c[2 * (int) (id & (CHUNK - 1)) + 1]++;
+}
+
+//---------------------------------------------------------------------
+//Private methods
+//---------------------------------------------------------------------
+
+private long[] chunk(long id)
+{
+	final long[][] cs = chunks;
+	final int k = (int) (id >>> SHIFT);
+	if (k < cs.length && cs[k] != null) return cs[k];
+	return create(k);
+}
+
+//---------------------------------------------------------------------
+
+private synchronized long[] create(int k)
+{
+	long[][] cs = chunks;
+	if (k < cs.length && cs[k] != null) return cs[k];
+	final long[] c = new long[2 * CHUNK];
+	final long first = (long) k << SHIFT;
+	for (int i = 0; i < CHUNK; ++i)
+		c[2 * i] = mix(base + (first + i) * GAMMA);
+	cs = java.util.Arrays.copyOf(cs, Math.max(cs.length, k + 1));
+	cs[k] = c;
+	chunks = cs;
+	return c;
+}
+
+//---------------------------------------------------------------------
+
+/** The SplitMix64 finalizer */
+private static long mix(long z)
+{
+	z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+	z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+	return z ^ (z >>> 31);
+}
+
+}
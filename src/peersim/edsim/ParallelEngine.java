@@ -0,0 +1,679 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package peersim.edsim;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import peersim.config.*;
+import peersim.core.*;
+import peersim.transport.RandomDelayTransport;
+import peersim.transport.UniformRandomTransport;
+import peersim.util.ExtendedRandom;
+
+/**
+* Conservative parallel execution of the event driven simulation, used by
+* {@link EDSimulator} when configuration parameter
+* <code>simulation.parallel</code> is present.
+* <p>
+* The nodes are partitioned into logical processes (LPs) according to their
+* ID. Every LP has its own event queue.
+* The simulation advances in windows: if <code>t</code> is the time of the
+* first pending event, all the events before <code>t+lookahead</code>
+* (and before the next control event) are executed, the LPs being processed
+* concurrently by a pool of worker threads. Since every message between
+* different LPs is delayed by at least the lookahead, no LP can receive an
+* event that belongs to the current window from another LP.
+* These messages are buffered and inserted in the queue of the destination
+* at the end of the window.
+* Controls are executed by the main thread between windows, before the
+* events of the same time.
+* <p>
+* Every node has its own random stream, derived from the seed and the ID
+* of the node (see {@link NodeStreams}). While an event is delivered to a
+* node, {@link CommonState#r} draws from the stream of that node; outside
+* events (controls, initializers) it draws from the original generator.
+* {@link CommonState#getTime}, {@link CommonState#getNode} and
+* {@link CommonState#getPid} are per-thread.
+* The events of a node are executed in the order of a key made of their
+* time, a random priority drawn from the stream of the sender, the ID of
+* the sender and the number of events the sender queued before. This
+* order does not depend on how the nodes are partitioned, so the outcome
+* of an experiment depends only on the random seed, not on {@value #PAR_LPS}
+* or {@value #PAR_THREADS}. {@link EDSimulator} can also execute the events
+* sequentially in the same way (parameter <code>simulation.pernode</code>),
+* which gives exactly the same results as this engine.
+* This holds as long as protocols do not share mutable state between
+* nodes other than through messages (state that is only accumulated, like
+* counters, is fine); otherwise the result is not defined.
+* <p>
+* An event sent to a node in another LP with a delay that would make it
+* fall inside the current window violates the lookahead and causes an
+* {@link IllegalStateException}. Events sent within the same LP may have
+* any non-negative delay.
+*/
+class ParallelEngine
+{
+
+//---------------------------------------------------------------------
+//Parameters
+//---------------------------------------------------------------------
+
+/**
+ * The number of worker threads. Defaults to the number of available
+ * processors.
+ * @config
+ */
+private static final String PAR_THREADS = "threads";
+
+/**
+ * The number of logical processes the nodes are partitioned into.
+ * Node with ID <code>i</code> belongs to LP <code>i%lps</code>.
+ * Defaults to 16.
+ * @config
+ */
+private static final String PAR_LPS = "lps";
+
+/**
+ * The minimal delay of any message sent between nodes.
+ * If not given, it is taken from the {@link UniformRandomTransport}
+ * or {@link RandomDelayTransport} named by {@value #PAR_TRANSPORT}, and if
+ * that is not given either, it defaults to 1.
+ * @config
+ */
+private static final String PAR_LOOKAHEAD = "lookahead";
+
+/**
+ * The protocol name of a {@link UniformRandomTransport} or
+ * {@link RandomDelayTransport} whose minimum delay is used as lookahead.
+ * @config
+ */
+private static final String PAR_TRANSPORT = "transport";
+
+//---------------------------------------------------------------------
+//Fields
+//---------------------------------------------------------------------
+
+/** The LP executed by the current thread, null in the main thread */
+private static final ThreadLocal<LP> current = new ThreadLocal<LP>();
+
+/** The logical processes */
+private final LP[] lps;
+
+/** Minimal delay of messages between LPs */
+private final long lookahead;
+
+/** End time of the simulation */
+private final long endtime;
+
+/** Worker threads, null if only one thread is used */
+private final ExecutorService pool;
+
+/** The generator that was in {@link CommonState#r} before we started */
+private final ExtendedRandom master;
+
+/** The random streams of the nodes */
+private final NodeStreams streams;
+
+/** Next control event, taken from the control queue */
+private ControlEvent ctrl = null;
+
+/** Time of {@link #ctrl} */
+private long ctrlTime = Long.MAX_VALUE;
+
+//---------------------------------------------------------------------
+//Initialization
+//---------------------------------------------------------------------
+
+/**
+ * Reads the configuration of the parallel engine. Must be called after
+ * the network prototype has been created.
+ */
+static ParallelEngine parallel(String prefix, long endtime)
+{
+	final int threads = Configuration.getInt(prefix+"."+PAR_THREADS,
+		Runtime.getRuntime().availableProcessors());
+	if (threads < 1)
+		throw new IllegalParameterException(prefix+"."+PAR_THREADS,
+		"At least one thread is needed");
+	final int n = Configuration.getInt(prefix+"."+PAR_LPS, 16);
+	if (n < 1)
+		throw new IllegalParameterException(prefix+"."+PAR_LPS,
+		"At least one logical process is needed");
+
+	final long lookahead;
+	if (Configuration.contains(prefix+"."+PAR_LOOKAHEAD))
+	{
+		lookahead = Configuration.getLong(prefix+"."+PAR_LOOKAHEAD);
+	}
+	else if (Configuration.contains(prefix+"."+PAR_TRANSPORT))
+	{
+		int tpid = Configuration.getPid(prefix+"."+PAR_TRANSPORT);
+		Object t = Network.prototype.getProtocol(tpid);
+		if (t instanceof UniformRandomTransport)
+			lookahead = ((UniformRandomTransport) t).getMinLatency();
+		else if (t instanceof RandomDelayTransport)
+			lookahead = ((RandomDelayTransport) t).getMinLatency();
+		else
+			throw new IllegalParameterException(prefix+"."+PAR_TRANSPORT,
+			"Lookahead can be derived only from UniformRandomTransport "+
+			"and RandomDelayTransport");
+	}
+	else lookahead = 1;
+	if (lookahead < 1)
+		throw new IllegalParameterException(prefix+"."+PAR_LOOKAHEAD,
+		"Lookahead must be positive");
+
+	System.err.println("EDSimulator: parallel engine with "+n+" LPs, "+
+		threads+" threads, lookahead "+lookahead);
+	return new ParallelEngine(endtime, threads, n, lookahead);
+}
+
+//---------------------------------------------------------------------
+
+/**
+ * Returns an engine that executes the events in the main thread, in the
+ * same order and with the same random streams as the parallel engine.
+ */
+static ParallelEngine sequential(long endtime)
+{
+	System.err.println("EDSimulator: per-node random streams");
+	return new ParallelEngine(endtime, 1, 1, Long.MAX_VALUE);
+}
+
+//---------------------------------------------------------------------
+
+/**
+ * Switches {@link CommonState} to per-node random streams, and to
+ * per-thread operation if more than one thread is used.
+ */
+private ParallelEngine(long endtime, int threads, int n, long lookahead)
+{
+	this.endtime = endtime;
+	this.lookahead = lookahead;
+	master = CommonState.r;
+	streams = new NodeStreams(master.nextLong());
+	lps = new LP[n];
+	for (int i = 0; i < n; ++i) lps[i] = new LP();
+
+	pool = (threads == 1 ? null :
+		Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "EDSimulator worker");
+				t.setDaemon(true);
+				return t;
+			}
+		}));
+
+	CommonState.r = new SharedRandom(master, streams);
+	if (pool != null) CommonState.setThreadLocal(true);
+}
+
+//---------------------------------------------------------------------
+//Methods
+//---------------------------------------------------------------------
+
+/**
+ * Adds an event to the queue of the LP of the destination node. Called by
+ * {@link EDSimulator#add} while this engine is active.
+ */
+void add(long time, Object event, Node node, byte pid)
+{
+	final LP dest = lps[(int)(node.getID() % lps.length)];
+	final LP src = current.get();
+
+	// the key of the event, from the stream of the sender
+	final long sender = (src == null ? -1 : src.node);
+	final int prio = (int) (sender < 0 ? master.nextLong() :
+		streams.nextLong(sender));
+	final long seq = streams.nextSeq(sender);
+
+	// the main thread (controls) and the LP itself can insert directly
+	if (src == null || src == dest)
+	{
+		dest.queue.add(time, prio, sender, seq, event, node, pid);
+		return;
+	}
+
+	if (time < src.end)
+		throw new IllegalStateException("Lookahead violation: event "+
+			event+" for node "+node.getID()+" at time "+time+
+			" is before the end of the current window ("+src.end+")");
+	src.send(time, prio, seq, event, node, pid, dest);
+}
+
+//---------------------------------------------------------------------
+
+/**
+ * Runs the simulation until the end time, until the queues become empty,
+ * or until a control asks to stop.
+ * @param controls the queue holding the control events
+ */
+void run(PriorityQ controls)
+{
+	nextControl(controls);
+	while (true)
+	{
+		long t = Long.MAX_VALUE;
+		for (int i = 0; i < lps.length; ++i)
+			t = Math.min(t, lps[i].queue.firstTime());
+
+		if (ctrl != null && ctrlTime <= t)
+		{
+			EDSimulator.logTime(ctrlTime);
+			CommonState.setTime(ctrlTime);
+			final ControlEvent c = ctrl;
+			nextControl(null);
+			final boolean stop = c.execute();
+			nextControl(controls);
+			if (stop) break;
+			continue;
+		}
+
+		if (t == Long.MAX_VALUE)
+		{
+			System.err.println("EDSimulator: queue is empty, quitting"+
+			" at time "+CommonState.getTime());
+			break;
+		}
+		EDSimulator.logTime(t);
+		if (t >= endtime)
+		{
+			System.err.println("EDSimulator: reached end time, quitting,"+
+			" leaving "+size()+" unprocessed events in the queue");
+			break;
+		}
+
+		// written like this to avoid overflow
+		long end = (endtime - t > lookahead ? t + lookahead : endtime);
+		if (ctrlTime < end) end = ctrlTime;
+		window(end);
+	}
+}
+
+//---------------------------------------------------------------------
+
+/**
+ * Stops the worker threads and switches {@link CommonState} back to
+ * global operation.
+ */
+void shutdown()
+{
+	if (pool != null) pool.shutdown();
+	CommonState.setThreadLocal(false);
+	CommonState.r = master;
+}
+
+//---------------------------------------------------------------------
+//Private methods
+//---------------------------------------------------------------------
+
+/**
+ * Takes the next control event from the given queue, or forgets the
+ * current one if the queue is null.
+ */
+private void nextControl(PriorityQ controls)
+{
+	ctrl = null;
+	ctrlTime = Long.MAX_VALUE;
+	if (controls == null) return;
+	PriorityQ.Event ev = controls.removeFirst();
+	if (ev == null) return;
+	ctrl = (ControlEvent) ev.event;
+	ctrlTime = ev.time;
+}
+
+//---------------------------------------------------------------------
+
+/**
+ * Executes all the events before the given time, then delivers the
+ * messages exchanged between LPs.
+ */
+private void window(long end)
+{
+	final List<LP> active = new ArrayList<LP>();
+	for (int i = 0; i < lps.length; ++i)
+	{
+		if (lps[i].queue.firstTime() < end)
+		{
+			lps[i].end = end;
+			active.add(lps[i]);
+		}
+	}
+
+	if (pool == null || active.size() == 1)
+	{
+		for (LP lp : active) lp.call();
+	}
+	else
+	{
+		try {
+			for (Future<Object> f : pool.invokeAll(active)) f.get();
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw new RuntimeException(e.getCause());
+		}
+	}
+
+	for (LP lp : active) lp.flush();
+}
+
+//---------------------------------------------------------------------
+
+/** Returns the total number of pending node events. */
+private int size()
+{
+	int s = 0;
+	for (int i = 0; i < lps.length; ++i) s += lps[i].queue.size();
+	return s;
+}
+
+//=====================================================================
+
+/**
+ * A logical process: the queue of the events of a subset of nodes, the
+ * node being executed and the messages sent to other LPs in the current
+ * window.
+ */
+private static final class LP implements Callable<Object>
+{
+	final EventQueue queue = new EventQueue();
+
+	/** End of the current window, exclusive */
+	long end;
+
+	/** ID of the node of the event being delivered, -1 if none */
+	long node = -1;
+
+	/** Messages to other LPs, in the order they were sent */
+	private long[] otimes = new long[16];
+	private int[] oprios = new int[16];
+	private long[] osrcs = new long[16];
+	private long[] oseqs = new long[16];
+	private Object[] oevents = new Object[16];
+	private Node[] onodes = new Node[16];
+	private byte[] opids = new byte[16];
+	private LP[] odests = new LP[16];
+	private int osize = 0;
+
+	public Object call()
+	{
+		current.set(this);
+		try {
+			while (queue.firstTime() < end)
+			{
+				final EventQueue.Event ev = queue.removeFirst();
+				CommonState.setTime(ev.time);
+				node = ev.node.getID();
+				EDSimulator.deliver(ev.node, ev.pid, ev.event);
+				node = -1;
+			}
+		} finally {
+			node = -1;
+			current.remove();
+		}
+		return null;
+	}
+
+	/**
+	 * Buffers a message to another LP, with the key computed by the
+	 * sender.
+	 */
+	void send(long time, int prio, long seq, Object event, Node node,
+		byte pid, LP dest)
+	{
+		if (osize == otimes.length)
+		{
+			final int n = osize*2;
+			otimes = Arrays.copyOf(otimes, n);
+			oprios = Arrays.copyOf(oprios, n);
+			osrcs = Arrays.copyOf(osrcs, n);
+			oseqs = Arrays.copyOf(oseqs, n);
+			oevents = Arrays.copyOf(oevents, n);
+			onodes = Arrays.copyOf(onodes, n);
+			opids = Arrays.copyOf(opids, n);
+			odests = Arrays.copyOf(odests, n);
+		}
+		otimes[osize] = time;
+		oprios[osize] = prio;
+		osrcs[osize] = this.node;
+		oseqs[osize] = seq;
+		oevents[osize] = event;
+		onodes[osize] = node;
+		opids[osize] = pid;
+		odests[osize] = dest;
+		osize++;
+	}
+
+	/** Moves the buffered messages into the queues of their LPs. */
+	void flush()
+	{
+		for (int i = 0; i < osize; ++i)
+		{
+			odests[i].queue.add(otimes[i], oprios[i], osrcs[i], oseqs[i],
+				oevents[i], onodes[i], opids[i]);
+			oevents[i] = null;
+			onodes[i] = null;
+			odests[i] = null;
+		}
+		osize = 0;
+	}
+}
+
+//=====================================================================
+
+/**
+ * The event queue of an LP: a binary heap ordered by time, priority,
+ * sender ID and sender sequence number. Every event has a different key,
+ * so the order of the events does not depend on the order they were
+ * added in.
+ */
+private static final class EventQueue
+{
+	/** Returned by {@link #removeFirst}, overwritten by the next call */
+	static final class Event
+	{
+		long time;
+		Object event;
+		Node node;
+		byte pid;
+	}
+
+	private long[] times = new long[64];
+	private int[] prios = new int[64];
+	private long[] srcs = new long[64];
+	private long[] seqs = new long[64];
+	private Object[] events = new Object[64];
+	private Node[] nodes = new Node[64];
+	private byte[] pids = new byte[64];
+	private int size = 0;
+	private final Event ev = new Event();
+
+	int size() { return size; }
+
+	long firstTime() { return size == 0 ? Long.MAX_VALUE : times[0]; }
+
+	void add(long time, int prio, long src, long seq, Object event,
+		Node node, byte pid)
+	{
+		if (size == times.length)
+		{
+			final int n = size*2;
+			times = Arrays.copyOf(times, n);
+			prios = Arrays.copyOf(prios, n);
+			srcs = Arrays.copyOf(srcs, n);
+			seqs = Arrays.copyOf(seqs, n);
+			events = Arrays.copyOf(events, n);
+			nodes = Arrays.copyOf(nodes, n);
+			pids = Arrays.copyOf(pids, n);
+		}
+		int i = size++;
+		while (i > 0)
+		{
+			final int p = (i-1) >>> 1;
+			if (!less(time, prio, src, seq, p)) break;
+			move(p, i);
+			i = p;
+		}
+		set(i, time, prio, src, seq, event, node, pid);
+	}
+
+	Event removeFirst()
+	{
+		if (size == 0) return null;
+		ev.time = times[0];
+		ev.event = events[0];
+		ev.node = nodes[0];
+		ev.pid = pids[0];
+		final int last = --size;
+		final long t = times[last];
+		final int pr = prios[last];
+		final long sr = srcs[last], sq = seqs[last];
+		final Object e = events[last];
+		final Node nd = nodes[last];
+		final byte pd = pids[last];
+		events[last] = null;
+		nodes[last] = null;
+		int i = 0;
+		while (true)
+		{
+			int c = 2*i+1;
+			if (c >= last) break;
+			if (c+1 < last && lessAt(c+1, c)) c++;
+			if (!lessThan(c, t, pr, sr, sq)) break;
+			move(c, i);
+			i = c;
+		}
+		if (last > 0) set(i, t, pr, sr, sq, e, nd, pd);
+		return ev;
+	}
+
+	/** Whether the given key is smaller than the key at position i */
+	private boolean less(long time, int prio, long src, long seq, int i)
+	{
+		if (time != times[i]) return time < times[i];
+		if (prio != prios[i]) return prio < prios[i];
+		if (src != srcs[i]) return src < srcs[i];
+		return seq < seqs[i];
+	}
+
+	/** Whether the key at position i is smaller than the given key */
+	private boolean lessThan(int i, long time, int prio, long src, long seq)
+	{
+		if (times[i] != time) return times[i] < time;
+		if (prios[i] != prio) return prios[i] < prio;
+		if (srcs[i] != src) return srcs[i] < src;
+		return seqs[i] < seq;
+	}
+
+	private boolean lessAt(int i, int j)
+	{
+		return lessThan(i, times[j], prios[j], srcs[j], seqs[j]);
+	}
+
+	private void move(int from, int to)
+	{
+		set(to, times[from], prios[from], srcs[from], seqs[from],
+			events[from], nodes[from], pids[from]);
+	}
+
+	private void set(int i, long time, int prio, long src, long seq,
+		Object event, Node node, byte pid)
+	{
+		times[i] = time;
+		prios[i] = prio;
+		srcs[i] = src;
+		seqs[i] = seq;
+		events[i] = event;
+		nodes[i] = node;
+		pids[i] = pid;
+	}
+}
+
+//=====================================================================
+
+/**
+ * Installed as {@link CommonState#r} while the engine runs: draws from the
+ * stream of the node whose event is being delivered by the current
+ * thread, or from the original generator otherwise.
+ */
+private static final class SharedRandom extends ExtendedRandom
+{
+	private final ExtendedRandom master;
+
+	private final NodeStreams streams;
+
+	SharedRandom(ExtendedRandom master, NodeStreams streams)
+	{
+		super(master.getLastSeed());
+		this.master = master;
+		this.streams = streams;
+	}
+
+	/** The node whose stream is used, -1 for the original generator */
+	private static long node()
+	{
+		final LP lp = current.get();
+		return (lp == null ? -1 : lp.node);
+	}
+
+	/**
+	 * The top <code>bits</code> bits of the next value of the stream.
+	 * For the original generator this is exactly what its own
+	 * <code>next(bits)</code> would return.
+	 */
+	protected int next(int bits)
+	{
+		final long n = node();
+		if (n < 0) return master.nextInt() >>> (32 - bits);
+		return (int) (streams.nextLong(n) >>> (64 - bits));
+	}
+
+	/**
+	 * For a node, the polar method without keeping the second value, so
+	 * that nothing is shared between the streams.
+	 */
+	public double nextGaussian()
+	{
+		if (node() < 0) return master.nextGaussian();
+		double v1, v2, s;
+		do {
+			v1 = 2 * nextDouble() - 1;
+			v2 = 2 * nextDouble() - 1;
+			s = v1 * v1 + v2 * v2;
+		} while (s >= 1 || s == 0);
+		return v1 * StrictMath.sqrt(-2 * StrictMath.log(s) / s);
+	}
+
+	/** Sets the seed of the original generator. */
+	public void setSeed(long seed)
+	{
+		super.setSeed(seed);
+		if (master == null) return; // called by the constructor
+		if (node() >= 0)
+			throw new UnsupportedOperationException(
+			"The random stream of a node cannot be seeded");
+		master.setSeed(seed);
+	}
+}
+
+}
@@ -75,14 +75,15 @@ public boolean isEdge(int i, int j) {
 
 // ---------------------------------------------------------------
 
+/** The neighbours are returned in increasing order. */
 public Collection<Integer> getNeighbours(int i) {
 	
-	Set<Integer> result = new HashSet<Integer>();
 	BitSet neighb = sets.get(i);
+	List<Integer> result = new ArrayList<Integer>(neighb.cardinality());
 	final int max = size();
-	for(int j=0; j<max; ++j)
+	for(int j=neighb.nextSetBit(0); j>=0 && j<max; j=neighb.nextSetBit(j+1))
 	{
-		if( neighb.get(j) ) result.add(j);
+		result.add(j);
 	}
 
 	return Collections.unmodifiableCollection(result);
@@ -90,6 +91,21 @@ public Collection<Integer> getNeighbours(int i) {
 
 // ---------------------------------------------------------------
 
+public int getNeighbours(int i, int[] buf) {
+
+	BitSet neighb = sets.get(i);
+	final int max = size();
+	int n=0;
+	for(int j=neighb.nextSetBit(0); j>=0 && j<max; j=neighb.nextSetBit(j+1))
+	{
+		if( n < buf.length ) buf[n]=j;
+		++n;
+	}
+	return n;
+}
+
+// ---------------------------------------------------------------
+
 /** Returns null always */
 public Object getNode(int i) { return null; }
 	
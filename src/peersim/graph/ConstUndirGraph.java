@@ -110,6 +110,18 @@ public Collection<Integer> getNeighbours(int i) {
 
 // ---------------------------------------------------------------
 
+public int getNeighbours(int i, int[] buf) {
+
+	int n = g.getNeighbours(i,buf);
+	if( in == null ) return n;
+	final List<Integer> ini = in[i];
+	if( n + ini.size() > buf.length ) return n+ini.size();
+	for(int k=0; k<ini.size(); ++k) buf[n++]=ini.get(k);
+	return n;
+}
+
+// ---------------------------------------------------------------
+
 /** Returns the node from the underlying graph */
 public Object getNode(int i) { return g.getNode(i); }
 	
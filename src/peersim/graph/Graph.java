@@ -46,6 +46,29 @@ public interface Graph {
 	*/
 	Collection<Integer> getNeighbours(int i);
 
+	/**
+	* Copies the outgoing edges from i into the given array, in the
+	* order of {@link #getNeighbours(int)}, and returns their number.
+	* If the returned value is larger than <code>buf.length</code> then the
+	* content of buf is unspecified and the call has to be repeated
+	* with an array of at least the returned length. Implementations
+	* that filter the edges of another graph may return the unfiltered
+	* number in this case.
+	* This is the primitive counterpart of {@link #getNeighbours(int)}:
+	* it is meant to be called in loops with a buffer that is
+	* reused, so that traversals do not allocate or box.
+	* The default implementation copies the collection.
+	*/
+	public default int getNeighbours(int i, int[] buf) {
+
+		Collection<Integer> c = getNeighbours(i);
+		final int n = c.size();
+		if( n > buf.length ) return n;
+		int k=0;
+		for(int j:c) buf[k++]=j;
+		return n;
+	}
+
 	/**
 	* Returns the node object associated with the index. Optional
 	* operation.
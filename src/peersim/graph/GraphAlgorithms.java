@@ -24,6 +24,9 @@ import java.util.*;
 * Implements graph algorithms. The current implementation is NOT thread
 * safe. Some algorithms are not static, many times the result of an
 * algorithm can be read from non-static fields.
+* The algorithms read the graphs through {@link Graph#getNeighbours(int,int[])}
+* into buffers that are kept between calls, so repeated runs on graphs of the
+* same size do not allocate, except for the returned maps.
 */
 public class GraphAlgorithms {
 
@@ -32,7 +35,6 @@ public class GraphAlgorithms {
 
 /** output of some algorithms is passed here */
 public int[] root = null;
-private Stack<Integer> stack = new Stack<Integer>();
 private int counter=0;
 
 private Graph g=null;
@@ -50,10 +52,79 @@ public Set<Integer> cluster = null;
 /** output of some algorithms is passed here */
 public int[] d = null;
 
+// =================== private fields =================================
+// ====================================================================
+
+/** Neighbours of the node currently visited by {@link #bfs} */
+private int[] nb = new int[16];
+
+/**
+* The neighbours of the nodes on the path of the depth-first searches
+* ({@link #dfs} and {@link #tarjanVisit}), each node uses the part from
+* {@link #top} on, and frees it when it is done.
+*/
+private int[] adj = new int[64];
+
+private int top = 0;
+
+/** Queue of {@link #bfs}, and sizes of clusters in
+* {@link #weaklyConnectedClusters} */
+private int[] queue = null;
+
+/** Stack of the Tarjan algorithm */
+private int[] stack = null;
+
+private int sp = 0;
+
+/**
+* Frames of the depth-first search of the Tarjan algorithm: the node,
+* the start of its neighbours in {@link #adj} and the next one to visit
+*/
+private int[] callNode = null;
+
+private int[] callBase = null;
+
+private int[] callPos = null;
+
+/** Merged cluster indexes in {@link #weaklyConnectedClusters} */
+private int[] alias = null;
+
 // =================== private methods ================================
 // ====================================================================
 
 
+/**
+* Reads the neighbours of u into {@link #nb}, growing it if needed, and
+* returns their number.
+*/
+private int neighbours( int u ) {
+
+	int n = g.getNeighbours(u,nb);
+	if( n > nb.length )
+	{
+		nb = new int[Math.max(n,2*nb.length)];
+		n = g.getNeighbours(u,nb);
+	}
+	return n;
+}
+
+// --------------------------------------------------------------------
+
+/**
+* Appends the neighbours of u to {@link #adj} from {@link #top} on and
+* returns the new top.
+*/
+private int pushNeighbours( int u ) {
+
+	final int n = neighbours(u);
+	if( top+n > adj.length )
+		adj = Arrays.copyOf(adj,Math.max(top+n,2*adj.length));
+	System.arraycopy(nb,0,adj,top,n);
+	return top += n;
+}
+
+// --------------------------------------------------------------------
+
 /**
 * Collects nodes accessible from node "from" using depth-first search.
 * Works on the array {@link #color} which must be of the same length as
@@ -72,8 +143,11 @@ private void dfs( int from ) {
 
 	color[from]=GREY;
 
-	for(int j:g.getNeighbours(from))
+	final int base = top;
+	final int end = pushNeighbours(from);
+	for(int k=base; k<end; ++k)
 	{
+		final int j = adj[k];
 		if( color[j]==WHITE )
 		{
 			dfs(j);
@@ -83,6 +157,7 @@ private void dfs( int from ) {
 			if( color[j]<0 ) cluster.add(color[j]);
 		}
 	}
+	top = base;
 
 	color[from]=BLACK;
 }
@@ -101,28 +176,34 @@ private void dfs( int from ) {
 */
 private void bfs( int from ) {
 
-	List<Integer> q = new LinkedList<Integer>();
-	int u, du;
+	if( queue==null || queue.length<=g.size() ) queue = new int[g.size()+1];
+	// the queue holds each node once, nodes of distance du are in
+	// queue[head..levelEnd)
+	int head=0, tail=0, levelEnd=1, du=0;
 	
-	q.add(from);
-	q.add(0);
+	queue[tail++]=from;
 	if( d != null ) d[from] = 0;
 
 	color[from]=GREY;
 
-	while( ! q.isEmpty() )
+	while( head < tail )
 	{
-		u = q.remove(0).intValue();
-		du = q.remove(0).intValue();
+		if( head == levelEnd )
+		{
+			++du;
+			levelEnd = tail;
+		}
+		final int u = queue[head++];
+		final int n = neighbours(u);
 		
-		for(int j:g.getNeighbours(u))
+		for(int k=0; k<n; ++k)
 		{
+			final int j = nb[k];
 			if( color[j]==WHITE )
 			{
 				color[j]=GREY;
 				
-				q.add(j);
-				q.add(du+1);
+				queue[tail++]=j;
 				if( d != null ) d[j] = du+1;
 			}
 			else
@@ -137,39 +218,118 @@ private void bfs( int from ) {
 
 // --------------------------------------------------------------------
 
-/** The recursive part of the Tarjan algorithm. */
-private void tarjanVisit(int i) {
+/**
+* Colors the nodes accessible from node "from" through WHITE nodes
+* with c, using breadth-first search. If a node of another
+* cluster (negative color) is met, that cluster is merged into c in
+* {@link #alias}.
+*/
+private void bfsCluster( int from, int c ) {
 
-	color[i]=counter++;
-	root[i]=i;
-	stack.push(i);
+	int head=0, tail=0;
 	
-	for(int j:g.getNeighbours(i))
+	queue[tail++]=from;
+	color[from]=c;
+
+	while( head < tail )
 	{
-		if( color[j]==WHITE )
-		{
-			tarjanVisit(j);
-		}
-		if( color[j]>0 && color[root[j]]<color[root[i]] )
-		// inComponent is false and have to update root
+		final int n = neighbours(queue[head++]);
+		for(int k=0; k<n; ++k)
 		{
-			root[i]=root[j];
+			final int j = nb[k];
+			if( color[j]==WHITE )
+			{
+				color[j]=c;
+				queue[tail++]=j;
+			}
+			else if( color[j]!=c )
+			{
+				final int other = find(-color[j]);
+				if( other != -c ) alias[other] = -c;
+			}
 		}
 	}
+}
 
-	int j;
-	if(root[i]==i) //this node is the root of its cluster
+// --------------------------------------------------------------------
+
+/** Returns the cluster index that cluster index i was merged into. */
+private int find( int i ) {
+
+	while( alias[i] != i )
+	{
+		alias[i] = alias[alias[i]];
+		i = alias[i];
+	}
+	return i;
+}
+
+// --------------------------------------------------------------------
+
+/**
+* The depth-first part of the Tarjan algorithm. The recursion is
+* replaced by the frames in {@link #callNode}, {@link #callBase} and
+* {@link #callPos}; the neighbours of the frames are in {@link #adj}.
+*/
+private void tarjanVisit( int from ) {
+
+	int depth = 0;
+	tarjanEnter(from,depth++);
+	while( depth > 0 )
 	{
-		do
+		// the top frame, its neighbours are adj[callBase[f]..top)
+		final int f = depth-1;
+		final int i = callNode[f];
+		final int k = callPos[f];
+		if( k < top )
 		{
-			j=stack.pop();
-			color[j]=-color[j];
-			root[j]=i;
+			final int j = adj[k];
+			if( color[j]==WHITE )
+			{
+				// we get back to the same edge when j is done
+				tarjanEnter(j,depth++);
+				continue;
+			}
+			if( color[j]>0 && color[root[j]]<color[root[i]] )
+			// inComponent is false and have to update root
+			{
+				root[i]=root[j];
+			}
+			callPos[f] = k+1;
+		}
+		else
+		{
+			top = callBase[f];
+			--depth;
+			int j;
+			if(root[i]==i) //this node is the root of its cluster
+			{
+				do
+				{
+					j=stack[--sp];
+					color[j]=-color[j];
+					root[j]=i;
+				}
+				while(j!=i);
+			}
 		}
-		while(j!=i);
 	}
 }
 
+// --------------------------------------------------------------------
+
+/** Visits node i in the Tarjan algorithm, with frame f. */
+private void tarjanEnter( int i, int f ) {
+
+	color[i]=counter++;
+	root[i]=i;
+	stack[sp++]=i;
+	callNode[f]=i;
+	callBase[f]=top;
+	callPos[f]=top;
+	pushNeighbours(i);
+}
+
 // =================== public methods ================================
 // ====================================================================
 
@@ -181,34 +341,44 @@ private void tarjanVisit(int i) {
 public Map weaklyConnectedClusters( Graph g ) {
 
 	this.g=g;
-	if( cluster == null ) cluster = new HashSet<Integer>();
-	if( color==null || color.length<g.size() ) color = new int[g.size()];
-
-	// cluster numbers are negative integers
+	final int size = g.size();
+	if( color==null || color.length<size ) color = new int[size];
+	if( queue==null || queue.length<=size ) queue = new int[size+1];
+	if( alias==null || alias.length<=size ) alias = new int[size+1];
+
+	// cluster numbers are negative integers. A search that reaches an
+	// earlier cluster takes it over: the earlier index is mapped to the
+	// new one in alias and the nodes are relabeled once at the end.
 	int i, j, actCluster=0;
-	for(i=0; i<g.size(); ++i) color[i]=WHITE;
-	for(i=0; i<g.size(); ++i)
+	for(i=0; i<size; ++i) color[i]=WHITE;
+	for(i=0; i<size; ++i)
 	{
 		if( color[i]==WHITE )
 		{
-			cluster.clear();
-			bfs(i); // dfs is recursive, for large graphs not ok
 			--actCluster;
-			for(j=0; j<g.size(); ++j)
-			{
-				if( color[j] == BLACK ||
-						cluster.contains(color[j]) )
-					color[j] = actCluster;
-			}
+			alias[-actCluster] = -actCluster;
+			bfsCluster(i,actCluster); // dfs is recursive, for large graphs not ok
 		}
 	}
 
+	for(j=1; j<=-actCluster; ++j) queue[j]=0;
+	for(j=0; j<size; ++j)
+	{
+		final int c = find(-color[j]);
+		color[j] = -c;
+		queue[c]++;
+	}
+
+	// clusters are put in the order of their first nodes
 	Hashtable<Integer,Integer> ht = new Hashtable<Integer,Integer>();
-	for(j=0; j<g.size(); ++j)
+	for(j=0; j<size; ++j)
 	{
-		Integer num = ht.get(color[j]);
-		if( num == null ) ht.put(color[j],Integer.valueOf(1));
-		else ht.put(color[j],num+1);
+		final int c = -color[j];
+		if( queue[c] > 0 )
+		{
+			ht.put(color[j],queue[c]);
+			queue[c] = 0;
+		}
 	}
 	
 	return ht;
@@ -251,17 +421,23 @@ public static double clustering( Graph g, int i ) {
 	if( g.directed() ) throw new IllegalArgumentException(
 		"graph is directed");
 		
-	Object[] n = g.getNeighbours(i).toArray();
+	int[] n = new int[g.degree(i)];
+	int len = g.getNeighbours(i,n);
+	if( len > n.length )
+	{
+		n = new int[len];
+		len = g.getNeighbours(i,n);
+	}
 	
-	if( n.length==1 ) return 1.0;
+	if( len==1 ) return 1.0;
 	
 	int edges = 0;
 	
-	for(int j=0; j<n.length; ++j)
-	for(int k=j+1; k<n.length; ++k)
-		if( g.isEdge((Integer)n[j],(Integer)n[k]) ) ++edges;
+	for(int j=0; j<len; ++j)
+	for(int k=j+1; k<len; ++k)
+		if( g.isEdge(n[j],n[k]) ) ++edges;
 
-	return ((edges*2.0)/n.length)/(n.length-1);
+	return ((edges*2.0)/len)/(len-1);
 }
 
 // --------------------------------------------------------------------
@@ -282,19 +458,21 @@ public static void multicast( Graph g, int[] b, Random r ) {
 	int c2[] = new int[g.size()];
 	for(int i=0; i<c1.length; ++i) c2[i]=c1[i]=WHITE;
 	c2[0]=c1[0]=BLACK;
-	Collection<Integer> neighbours=null;
+	int[] neighbours=new int[16];
 	int black=1;
 	
 	int k=0;
-	for(; k<b.length || black<g.size(); ++k)
+	for(; k<b.length && black<g.size(); ++k)
 	{
 		for(int i=0; i<c2.length; ++i)
 		{
-			neighbours=g.getNeighbours(i);
-			Iterator<Integer> it=neighbours.iterator();
-			for(int j=r.nextInt(neighbours.size()); j>0; --j)
-				it.next();
-			int randn = it.next();
+			int n=g.getNeighbours(i,neighbours);
+			if( n > neighbours.length )
+			{
+				neighbours=new int[n];
+				n=g.getNeighbours(i,neighbours);
+			}
+			int randn = neighbours[r.nextInt(n)];
 			
 			// push pull exchane with random neighbour
 			if( c1[i]==BLACK ) //c2[i] is black too
@@ -329,7 +507,7 @@ public void flooding( Graph g, int[] b, int k ) {
 	dist(g, k);
 
 	for(int i=0; i<b.length; ++i) b[i]=0;
-	for(int i=0; i<d.length; ++i)
+	for(int i=0; i<g.size(); ++i)
 	{
 		if( d[i] >= 0 && d[i] < b.length ) b[d[i]]++;
 	}
@@ -340,15 +518,24 @@ public void flooding( Graph g, int[] b, int k ) {
 /** Returns the strongly connected cluster roots with size as a value.
 * Cluster membership can be seen from the content of the array {@link #root};
 * each node has the root of the strongly connected cluster it belongs to.
-* A word of caution: for large graphs that have a large diameter and that
-* are strongly connected (such as large rings) you can get stack overflow
-* because of the large depth of recursion.
+* The root of a cluster is its smallest node index, as in
+* {@link StrongComponents}, so the two return equal maps.
+* The depth-first search does not recurse, so it works on graphs of any
+* diameter.
+* @see StrongComponents
 */
-//XXX implement a non-recursive version ASAP!!!
 public Map tarjan( Graph g ) {
 	
 	this.g=g;
-	stack.clear();
+	top = 0;
+	sp = 0;
+	if( stack==null || stack.length<g.size() )
+	{
+		stack = new int[g.size()];
+		callNode = new int[g.size()];
+		callBase = new int[g.size()];
+		callPos = new int[g.size()];
+	}
 	if( root==null || root.length<g.size() ) root = new int[g.size()];
 	if( color==null || color.length<g.size() ) color = new int[g.size()];
 	for( int i=0; i<g.size(); ++i) color[i]=WHITE;
@@ -361,6 +548,13 @@ public Map tarjan( Graph g ) {
 	{
 		if( color[i]==WHITE ) tarjanVisit(i);
 	}
+	// relabel by the smallest index: the first member met is the smallest
+	for( int i=0; i<g.size(); ++i) color[i]=-1;
+	for( int i=0; i<g.size(); ++i)
+	{
+		if( color[root[i]]<0 ) color[root[i]]=i;
+		root[i]=color[root[i]];
+	}
 	for( int i=0; i<g.size(); ++i) color[i]=0;
 	for( int i=0; i<g.size(); ++i) color[root[i]]++;
 	Hashtable<Integer,Integer> ht = new Hashtable<Integer,Integer>();
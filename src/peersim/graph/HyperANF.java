@@ -0,0 +1,341 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+
+package peersim.graph;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+* Estimates the neighbourhood function of a graph, that is, the number of
+* pairs of nodes (x,y) such that y can be reached from x in at most t steps,
+* for t=0,1,2,..., with the HyperANF algorithm.
+* Every node has a HyperLogLog counter, which estimates the number of
+* distinct elements added to it using 2<sup>log2m</sup> small registers.
+* At first the counter of each node contains only the node itself; in
+* step t the counter of each node becomes the union of its own counter and
+* the counters of its out-neighbours, so after step t it holds the ball of
+* radius t around the node. The union of two counters is the maximum of
+* their registers. The estimate of each ball has a relative standard
+* error of about 1.04/sqrt(2<sup>log2m</sup>), and it is less in the sums.
+* <p>
+* Registers take one byte each and are packed eight in a long, and the
+* union takes the maxima of eight registers with a few word operations.
+* Only nodes with an out-neighbour whose counter changed in the previous
+* step are updated, and a counter is updated one word at a time from all
+* these neighbours, so that the reads of the neighbours, which are mostly
+* cache misses, can overlap. The memory used is about 2<sup>log2m+1</sup> bytes per
+* node, plus the copy of the graph. With a fork-join pool each step is
+* split among the threads; the result does not depend on the number of
+* threads.
+*/
+public class HyperANF {
+
+
+// ====================== constants =============================
+// ==============================================================
+
+
+/** Steps over fewer nodes than this are not split among threads */
+private static final int CHUNK = 1 << 12;
+
+/** The high bit of each byte */
+private static final long HIGH = 0x8080808080808080L;
+
+/**
+* Longs before the first counter. Large arrays usually start at an
+* aligned address (16 bytes before their first element), so with this
+* padding counters do not straddle cache lines.
+*/
+private static final int PAD = 6;
+
+/** 2<sup>-r</sup> for each register value r */
+private static final double[] INV = new double[256];
+static {
+	for(int r=0; r<INV.length; ++r) INV[r] = Math.scalb(1.0,-r);
+}
+
+
+// ====================== fields ================================
+// ==============================================================
+
+
+private final ParallelBFS c;
+
+private final int size;
+
+/** Number of registers of a counter */
+private final int m;
+
+/** Number of longs of a counter */
+private final int words;
+
+/** The bias correction constant of the estimates */
+private final double alpha;
+
+/** Counters of the last step, and of the current step */
+private long[] cur, next;
+
+/** Estimated size of the counter of each node */
+private final double[] est;
+
+/** Nodes whose counter changed in the last step, and in this step */
+private long[] changed, changing;
+
+
+// ====================== public constructors ===================
+// ==============================================================
+
+
+/**
+* Works on an existing copy of a graph.
+* @param copy the graph
+* @param log2m the base 2 logarithm of the number of registers of a
+* counter, from 4 to 12
+* @param seed the seed of the hash function that picks the registers
+*/
+public HyperANF( ParallelBFS copy, int log2m, long seed ) {
+
+	if( log2m < 4 || log2m > 12 )
+		throw new IllegalArgumentException("log2m must be in 4..12: "+log2m);
+	c = copy;
+	size = copy.size();
+	m = 1 << log2m;
+	words = m >>> 3;
+	if( (long)size*words+PAD > Integer.MAX_VALUE )
+		throw new IllegalArgumentException(
+			"Too many registers, log2m should be smaller");
+	alpha = ( m == 16 ? 0.673 : m == 32 ? 0.697 : m == 64 ? 0.709 :
+		0.7213/(1+1.079/m) );
+	cur = new long[size*words+PAD];
+	next = new long[size*words+PAD];
+	est = new double[size];
+	changed = new long[(size+63)>>>6];
+	changing = new long[changed.length];
+	for(int v=0; v<size; ++v)
+	{
+		final long h = mix(v+seed*0x9E3779B97F4A7C15L);
+		final int j = (int)(h >>> (64-log2m));
+		final int r = Long.numberOfLeadingZeros(
+			(h << log2m) | (1L << (log2m-1)) ) + 1;
+		cur[PAD+v*words+(j>>>3)] |= ((long)r) << ((j&7)<<3);
+	}
+}
+
+
+// ======================= public methods =======================
+// ==============================================================
+
+
+/**
+* Returns the estimated neighbourhood function: element t is the number of
+* pairs (x,y), including x=y, such that y is reachable from x in at most t
+* steps. It stops when no counter changes anymore (the last element is then
+* about the number of reachable pairs, and the length minus one is about
+* the diameter), or after maxd steps.
+* It can be called only once.
+* @param maxd the maximal number of steps
+* @param pool the steps are split among the threads of this pool; if
+* null, the calling thread does all the work
+*/
+public double[] run( int maxd, ForkJoinPool pool ) {
+
+	double total = 0;
+	for(int v=0; v<size; ++v) total += est[v] = estimate(cur,v);
+	Arrays.fill(changed,-1L);
+	final ArrayList<Double> nf = new ArrayList<Double>();
+	nf.add(total);
+	final int parts = Math.max(1,(size+CHUNK-1)/CHUNK);
+	final List<Step> tasks = new ArrayList<Step>(parts);
+	for(int t=0; t<maxd; ++t)
+	{
+		tasks.clear();
+		for(int p=0; p<parts; ++p)
+			tasks.add(new Step(p*CHUNK,Math.min(size,(p+1)*CHUNK)));
+		if( pool == null || parts == 1 )
+		{
+			for(Step s : tasks) s.step();
+		}
+		else
+		{
+			pool.invoke(new RecursiveAction() {
+				protected void compute() { invokeAll(tasks); }
+			});
+		}
+		boolean any = false;
+		// the parts are added in a fixed order, for the same result
+		for(Step s : tasks)
+		{
+			total += s.delta;
+			any |= s.any;
+		}
+		if( !any ) break;
+		nf.add(total);
+		long[] x = cur; cur = next; next = x;
+		x = changed; changed = changing; changing = x;
+	}
+	
+	final double[] res = new double[nf.size()];
+	for(int t=0; t<res.length; ++t) res[t] = nf.get(t);
+	return res;
+}
+
+// --------------------------------------------------------------
+
+/**
+* Returns the average distance between the pairs of different nodes
+* that are reachable from one another, given the neighbourhood function.
+*/
+public static double averageDistance( double[] nf ) {
+
+	double sum = 0;
+	for(int t=1; t<nf.length; ++t) sum += t*(nf[t]-nf[t-1]);
+	return sum/(nf[nf.length-1]-nf[0]);
+}
+
+// --------------------------------------------------------------
+
+/**
+* Returns the effective diameter, the smallest distance within which at
+* least the given fraction of the reachable pairs of nodes are,
+* interpolated linearly between integer distances.
+*/
+public static double effectiveDiameter( double[] nf, double fraction ) {
+
+	final double target = fraction*nf[nf.length-1];
+	int t = 0;
+	while( t < nf.length-1 && nf[t] < target ) ++t;
+	if( t == 0 ) return 0;
+	return t-1 + (target-nf[t-1])/(nf[t]-nf[t-1]);
+}
+
+
+// ======================= private methods ======================
+// ==============================================================
+
+
+/** The 64 bit finalizer of MurmurHash3 */
+private static long mix( long z ) {
+
+	z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+	z = (z ^ (z >>> 33)) * 0xc4ceb93fe1a85ec9L;
+	return z ^ (z >>> 33);
+}
+
+// --------------------------------------------------------------
+
+/** The HyperLogLog estimate of the counter of node v in a */
+private double estimate( long[] a, int v ) {
+
+	double sum = 0;
+	int zeros = 0;
+	for(int k=PAD+v*words; k<PAD+(v+1)*words; ++k)
+	{
+		long w = a[k];
+		for(int b=0; b<8; ++b, w >>>= 8)
+		{
+			final int r = (int)(w & 0xff);
+			sum += INV[r];
+			if( r == 0 ) ++zeros;
+		}
+	}
+	final double e = alpha*m*m/sum;
+	// small range correction
+	if( e <= 2.5*m && zeros > 0 ) return m*Math.log((double)m/zeros);
+	return e;
+}
+
+
+// ======================= tasks ================================
+// ==============================================================
+
+
+/** A step over the nodes from..to-1 */
+private final class Step extends RecursiveAction {
+
+	final int from, to;
+	double delta = 0;
+	boolean any = false;
+	/** Start of the counters of the neighbours of a node */
+	int[] nb = new int[16];
+
+	Step( int from, int to ) {
+		
+		this.from = from;
+		this.to = to;
+	}
+
+	protected void compute() { step(); }
+
+	void step() {
+
+		final int[] off = c.offsets, tg = c.targets;
+		final long[] cur = HyperANF.this.cur, next = HyperANF.this.next;
+		System.arraycopy(cur,PAD+from*words,next,PAD+from*words,(to-from)*words);
+		for(int v=from; v<to; ++v)
+		{
+			// the changed out-neighbours, as unchanged counters are
+			// already contained
+			int n = 0;
+			for(int e=off[v]; e<off[v+1]; ++e)
+			{
+				final int u = tg[e];
+				if( (changed[u>>>6] & (1L<<u)) != 0 && u != v )
+				{
+					if( n == nb.length ) nb = Arrays.copyOf(nb,2*n);
+					nb[n++] = PAD+u*words;
+				}
+			}
+			long diff = 0;
+			final int base = PAD+v*words;
+			// word by word, so that the reads of the neighbours
+			// do not wait for each other
+			for(int k=0; n>0 && k<words; ++k)
+			{
+				final long x = next[base+k];
+				long max = x;
+				for(int j=0; j<n; ++j)
+				{
+					final long y = cur[nb[j]+k];
+					// bytes of 0xff where max >= y, registers are
+					// less than 128
+					final long ge =
+						((((max|HIGH)-(y&~HIGH))&HIGH)>>>7)*0xff;
+					max = (max & ge) | (y & ~ge);
+				}
+				diff |= max ^ x;
+				next[base+k] = max;
+			}
+			final boolean changes = ( diff != 0 );
+			// CHUNK is a multiple of 64, parts own whole words
+			if( changes )
+			{
+				changing[v>>>6] |= 1L<<v;
+				final double e = estimate(next,v);
+				delta += e-est[v];
+				est[v] = e;
+				any = true;
+			}
+			else changing[v>>>6] &= ~(1L<<v);
+		}
+	}
+}
+
+}
+
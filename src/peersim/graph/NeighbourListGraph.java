@@ -144,6 +144,18 @@ public Collection<Integer> getNeighbours(int i) {
 
 // ---------------------------------------------------------------
 
+public int getNeighbours(int i, int[] buf) {
+
+	final Set<Integer> s = neighbors.get(i);
+	final int n = s.size();
+	if( n > buf.length ) return n;
+	int k=0;
+	for(int j:s) buf[k++]=j;
+	return n;
+}
+
+// ---------------------------------------------------------------
+
 /** If the graph was gradually grown using {@link #addNode}, returns the
 * object associated with the node, otherwise null */
 public Object getNode(int i) { return (nodes==null?null:nodes.get(i)); }
@@ -0,0 +1,530 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+
+package peersim.graph;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+* Breadth-first search over a compact copy of a {@link Graph}, meant for
+* observers that need the distances from many nodes of a large graph.
+* At construction time the edges are copied into int arrays (and, if the
+* graph is directed, the reverse edges too), so the copy does not follow
+* later changes of the graph.
+* <p>
+* Each search is direction optimizing: while the frontier is small, it
+* expands the frontier along the outgoing edges (top-down); when the edges
+* leaving the frontier exceed a fraction of the unexplored edges, every
+* unvisited node looks for a parent in the frontier along its incoming edges
+* instead (bottom-up), and it switches back when the frontier gets small
+* again. Top-down frontiers are int queues, bottom-up frontiers are bitsets.
+* <p>
+* With a fork-join pool the searches from different sources run
+* concurrently, and large levels of a search are split among the threads
+* as well. Distances do not depend on the order in which nodes are found,
+* so the results are the same with any number of threads.
+* The object is thread safe.
+*/
+public class ParallelBFS {
+
+
+// ====================== constants =============================
+// ==============================================================
+
+
+/**
+* Top-down steps switch to bottom-up when the edges leaving the frontier
+* are more than the unexplored edges divided by this.
+*/
+private static final int ALPHA = 14;
+
+/**
+* Bottom-up steps switch back to top-down when the frontier is shrinking
+* and it is smaller than the number of nodes divided by this.
+*/
+private static final int BETA = 24;
+
+/** Steps over fewer nodes than this are not split among threads */
+private static final int CHUNK = 1 << 14;
+
+
+// ====================== private fields ========================
+// ==============================================================
+
+
+private final int size;
+
+/**
+* The outgoing edges of node i are targets[offsets[i]..offsets[i+1]).
+* Also read by {@link StrongComponents} and {@link UnionFind}.
+*/
+final int[] offsets;
+
+final int[] targets;
+
+/** The incoming edges, the same arrays if the graph is undirected */
+final int[] inOffsets;
+
+final int[] inTargets;
+
+/** Search states that are not in use */
+private final ConcurrentLinkedQueue<State> free =
+	new ConcurrentLinkedQueue<State>();
+
+
+// ====================== public constructors ===================
+// ==============================================================
+
+
+/**
+* Copies the edges of the given graph.
+* @throws IllegalArgumentException if the graph has more than about
+* 2^31 edges
+*/
+public ParallelBFS( Graph g ) {
+
+	size = g.size();
+	offsets = new int[size+1];
+	int[] t = new int[Math.max(16,size)];
+	int[] buf = new int[16];
+	int m = 0;
+	for(int i=0; i<size; ++i)
+	{
+		int n = g.getNeighbours(i,buf);
+		if( n > buf.length )
+		{
+			buf = new int[Math.max(n,2*buf.length)];
+			n = g.getNeighbours(i,buf);
+		}
+		if( (long)m+n > Integer.MAX_VALUE-8 )
+			throw new IllegalArgumentException(
+			"graph has more than "+(Integer.MAX_VALUE-8)+" edges");
+		if( m+n > t.length )
+			t = Arrays.copyOf(t,(int)Math.min(Integer.MAX_VALUE-8,
+				Math.max((long)m+n,2L*t.length)));
+		System.arraycopy(buf,0,t,m,n);
+		m += n;
+		offsets[i+1] = m;
+	}
+	targets = ( m == t.length ? t : Arrays.copyOf(t,m) );
+
+	if( !g.directed() )
+	{
+		inOffsets = offsets;
+		inTargets = targets;
+	}
+	else
+	{
+		inOffsets = new int[size+1];
+		for(int e=0; e<m; ++e) inOffsets[targets[e]+1]++;
+		for(int i=0; i<size; ++i) inOffsets[i+1] += inOffsets[i];
+		inTargets = new int[m];
+		final int[] pos = Arrays.copyOf(inOffsets,size);
+		for(int i=0; i<size; ++i)
+		for(int e=offsets[i]; e<offsets[i+1]; ++e)
+			inTargets[pos[targets[e]]++] = i;
+	}
+}
+
+
+// ======================= public methods =======================
+// ==============================================================
+
+
+/** The number of nodes */
+public int size() { return size; }
+
+// --------------------------------------------------------------
+
+/** The number of edges */
+public int edges() { return targets.length; }
+
+// --------------------------------------------------------------
+
+/**
+* Runs a search from each of the given nodes. Element i of the result
+* belongs to <code>sources[i]</code>; its element j is the number of nodes
+* at distance exactly j from the source (so element 0 is 1), up to the
+* largest distance. Nodes that are not reachable are not counted.
+* @param pool the searches are run on this pool; if null, they are run
+* one after the other by the calling thread
+*/
+public int[][] levels( int[] sources, ForkJoinPool pool ) {
+
+	final int[][] res = new int[sources.length][];
+	if( pool == null || pool.getParallelism() == 1 )
+	{
+		for(int i=0; i<sources.length; ++i)
+			res[i] = run(sources[i],null,false);
+		return res;
+	}
+
+	final List<Source> tasks = new ArrayList<Source>(sources.length);
+	for(int i=0; i<sources.length; ++i) tasks.add(new Source(sources[i]));
+	pool.invoke(new RecursiveAction() {
+		protected void compute() { invokeAll(tasks); }
+	});
+	for(int i=0; i<sources.length; ++i) res[i] = tasks.get(i).getRawResult();
+	return res;
+}
+
+// --------------------------------------------------------------
+
+/**
+* Fills d with the distances from node <code>from</code>, as
+* {@link GraphAlgorithms#dist}: <code>d[j]</code> is the length of the
+* shortest path from <code>from</code> to j, or -1 if j is not reachable.
+* @param d array of at least {@link #size()} elements
+* @param pool large levels are split among the threads of this pool; if
+* null, the calling thread does all the work
+*/
+public void dist( int from, int[] d, ForkJoinPool pool ) {
+
+	if( pool == null || pool.getParallelism() == 1 )
+	{
+		run(from,d,false);
+	}
+	else
+	{
+		pool.invoke(new RecursiveAction() {
+			protected void compute() { run(from,d,true); }
+		});
+	}
+}
+
+
+// ======================= private methods ======================
+// ==============================================================
+
+
+/**
+* The search from node from. Returns the number of nodes at each
+* distance, and if d is not null, fills it with the distances.
+* If parallel is true, it must be called in a fork-join pool.
+*/
+private int[] run( int from, int[] d, boolean parallel ) {
+
+	State s = free.poll();
+	if( s == null ) s = new State();
+	try
+	{
+		s.run(from,parallel);
+		if( d != null ) System.arraycopy(s.d,0,d,0,size);
+		return Arrays.copyOf(s.levels,s.nlevels);
+	}
+	finally
+	{
+		free.add(s);
+	}
+}
+
+// --------------------------------------------------------------
+
+private int outDegree( int i ) { return offsets[i+1]-offsets[i]; }
+
+
+// ======================= search state =========================
+// ==============================================================
+
+
+/** The arrays of one search, reused by later searches */
+private final class State {
+
+	/** Distances, -1 if not visited */
+	final int[] d = new int[size];
+
+	/**
+	* Top-down frontiers; the current one is queue[head..tail) and the
+	* next one is appended after it.
+	*/
+	final int[] queue = new int[size];
+
+	int head, tail;
+
+	/** Bitsets of the visited nodes and of the bottom-up frontiers */
+	final long[] visited = new long[(size+63)>>>6];
+
+	long[] front = new long[visited.length];
+
+	long[] next = new long[visited.length];
+
+	/** Number of nodes at each distance */
+	int[] levels = new int[16];
+
+	int nlevels;
+
+	/** Size and outgoing edges of the frontier found by the last step */
+	int nf;
+
+	long mf;
+
+// --------------------------------------------------------------
+
+void run( int from, boolean parallel ) {
+
+	Arrays.fill(d,-1);
+	Arrays.fill(visited,0L);
+	d[from] = 0;
+	visited[from>>>6] |= 1L<<from;
+	queue[0] = from;
+	head = 0;
+	tail = 1;
+	levels[0] = 1;
+	nlevels = 1;
+	nf = 1;
+	mf = outDegree(from);
+	long mu = targets.length - mf; // edges of the unexplored nodes
+	boolean bottomUp = false;
+	int last = 0; // size of the previous frontier
+
+	for(int l=0; nf > 0; ++l)
+	{
+		final int current = nf;
+		if( !bottomUp && mf > mu/ALPHA )
+		{
+			// queue to bitset
+			Arrays.fill(front,0L);
+			for(int k=head; k<tail; ++k) front[queue[k]>>>6] |= 1L<<queue[k];
+			bottomUp = true;
+		}
+		else if( bottomUp && nf < size/BETA && nf < last )
+		{
+			// bitset to queue
+			head = tail = 0;
+			for(int w=0; w<front.length; ++w)
+			for(long x=front[w]; x!=0; x&=x-1)
+				queue[tail++] = (w<<6)+Long.numberOfTrailingZeros(x);
+			bottomUp = false;
+		}
+
+		if( bottomUp ) bottomUp(l,parallel);
+		else topDown(l,parallel);
+
+		mu -= mf;
+		last = current;
+		if( nf > 0 )
+		{
+			if( nlevels == levels.length )
+				levels = Arrays.copyOf(levels,2*nlevels);
+			levels[nlevels++] = nf;
+		}
+	}
+}
+
+// --------------------------------------------------------------
+
+/** Expands queue[head..tail) along the outgoing edges. */
+private void topDown( int l, boolean parallel ) {
+
+	final int n = tail-head;
+	int t = tail;
+	long m = 0;
+	if( !parallel || n < CHUNK )
+	{
+		for(int k=head; k<tail; ++k)
+		{
+			final int u = queue[k];
+			for(int e=offsets[u]; e<offsets[u+1]; ++e)
+			{
+				final int v = targets[e];
+				if( d[v] < 0 )
+				{
+					d[v] = l+1;
+					visited[v>>>6] |= 1L<<v;
+					queue[t++] = v;
+					m += outDegree(v);
+				}
+			}
+		}
+	}
+	else
+	{
+		final int parts = (n+CHUNK-1)/CHUNK;
+		final List<TopDownPart> tasks = new ArrayList<TopDownPart>(parts);
+		for(int p=0; p<parts; ++p)
+			tasks.add(new TopDownPart(this,
+				head+(int)((long)n*p/parts),
+				head+(int)((long)n*(p+1)/parts),l+1));
+		ForkJoinTask.invokeAll(tasks);
+		// a node can be found by more than one part
+		for(TopDownPart p : tasks)
+		for(int k=0; k<p.count; ++k)
+		{
+			final int v = p.found[k];
+			if( (visited[v>>>6] & (1L<<v)) == 0 )
+			{
+				visited[v>>>6] |= 1L<<v;
+				queue[t++] = v;
+				m += outDegree(v);
+			}
+		}
+	}
+	head = tail;
+	tail = t;
+	nf = t-head;
+	mf = m;
+}
+
+// --------------------------------------------------------------
+
+/**
+* Looks for a parent in the frontier bitset for every unvisited node,
+* then the next frontier becomes the current one.
+*/
+private void bottomUp( int l, boolean parallel ) {
+
+	final int words = visited.length;
+	if( !parallel || size < 2*CHUNK )
+	{
+		final BottomUpPart p = new BottomUpPart(this,0,words,l+1);
+		p.compute();
+		nf = p.nf;
+		mf = p.mf;
+	}
+	else
+	{
+		final int parts = (size+CHUNK-1)/CHUNK;
+		final List<BottomUpPart> tasks = new ArrayList<BottomUpPart>(parts);
+		for(int p=0; p<parts; ++p)
+			tasks.add(new BottomUpPart(this,
+				(int)((long)words*p/parts),
+				(int)((long)words*(p+1)/parts),l+1));
+		ForkJoinTask.invokeAll(tasks);
+		nf = 0;
+		mf = 0;
+		for(BottomUpPart p : tasks)
+		{
+			nf += p.nf;
+			mf += p.mf;
+		}
+	}
+	final long[] x = front;
+	front = next;
+	next = x;
+}
+
+}
+
+// --------------------------------------------------------------
+
+/** Part of a parallel top-down step. */
+private final class TopDownPart extends RecursiveAction {
+
+	final State s;
+	final int from, to, dist;
+	int[] found = new int[64];
+	int count = 0;
+
+	TopDownPart( State s, int from, int to, int dist ) {
+		
+		this.s = s;
+		this.from = from;
+		this.to = to;
+		this.dist = dist;
+	}
+
+	protected void compute() {
+
+		final int[] d = s.d;
+		for(int k=from; k<to; ++k)
+		{
+			final int u = s.queue[k];
+			for(int e=offsets[u]; e<offsets[u+1]; ++e)
+			{
+				final int v = targets[e];
+				// several threads may write the same value here
+				if( d[v] < 0 )
+				{
+					d[v] = dist;
+					if( count == found.length )
+						found = Arrays.copyOf(found,2*count);
+					found[count++] = v;
+				}
+			}
+		}
+	}
+}
+
+// --------------------------------------------------------------
+
+/**
+* The bottom-up step over the nodes of some bitset words, which are written
+* by this part only.
+*/
+private final class BottomUpPart extends RecursiveAction {
+
+	final State s;
+	final int from, to, dist;
+	int nf;
+	long mf;
+
+	BottomUpPart( State s, int from, int to, int dist ) {
+		
+		this.s = s;
+		this.from = from;
+		this.to = to;
+		this.dist = dist;
+	}
+
+	protected void compute() {
+
+		final int[] d = s.d;
+		final long[] visited = s.visited, front = s.front, next = s.next;
+		for(int w=from; w<to; ++w)
+		{
+			long found = 0;
+			long x = ~visited[w];
+			if( w == visited.length-1 && (size & 63) != 0 )
+				x &= (1L<<(size & 63))-1;
+			for(; x!=0; x&=x-1)
+			{
+				final int v = (w<<6)+Long.numberOfTrailingZeros(x);
+				for(int e=inOffsets[v]; e<inOffsets[v+1]; ++e)
+				{
+					final int u = inTargets[e];
+					if( (front[u>>>6] & (1L<<u)) != 0 )
+					{
+						d[v] = dist;
+						found |= 1L<<v;
+						++nf;
+						mf += outDegree(v);
+						break;
+					}
+				}
+			}
+			next[w] = found;
+			visited[w] |= found;
+		}
+	}
+}
+
+// --------------------------------------------------------------
+
+/** The search from one node. */
+private final class Source extends RecursiveTask<int[]> {
+
+	final int from;
+
+	Source( int from ) { this.from = from; }
+
+	protected int[] compute() { return run(from,null,true); }
+}
+
+}
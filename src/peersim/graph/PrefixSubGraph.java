@@ -85,6 +85,22 @@ public Collection<Integer> getNeighbours(int i) {
 
 // ---------------------------------------------------------------
 
+public int getNeighbours(int i, int[] buf) {
+
+	if( i<0 || i>=prefSize ) throw new IndexOutOfBoundsException();
+	
+	final int n = g.getNeighbours(i,buf);
+	if( n > buf.length ) return n;
+	int k=0;
+	for(int j=0; j<n; ++j)
+	{
+		if( buf[j] < prefSize ) buf[k++]=buf[j];
+	}
+	return k;
+}
+
+// ---------------------------------------------------------------
+
 public Object getNode(int i) {
 
 	if( i<0 || i>=prefSize ) throw new IndexOutOfBoundsException();
@@ -0,0 +1,413 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+
+package peersim.graph;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+* Strongly connected clusters of the copy of a graph made by
+* {@link ParallelBFS}. As in {@link GraphAlgorithms#tarjan}, each cluster
+* is identified by its smallest node index, so the result does not depend on
+* the order of the search, and it can be computed in parallel.
+* <p>
+* Without a pool, it runs the Tarjan algorithm with an explicit stack.
+* With a fork-join pool, it first removes the nodes that have no incoming
+* or no outgoing edges within the unassigned nodes (they are clusters by
+* themselves), then finds the large clusters one by one as the nodes that
+* are both reachable from and can reach a pivot node of high degree, using
+* parallel searches, and the rest goes to the Tarjan algorithm.
+* Overlays typically have one giant cluster, which this way is found in
+* parallel. The two ways give the same result.
+*/
+public class StrongComponents {
+
+
+// ====================== constants =============================
+// ==============================================================
+
+
+/** Steps over fewer nodes than this are not split among threads */
+private static final int CHUNK = 1 << 14;
+
+
+// ====================== fields ================================
+// ==============================================================
+
+
+private final ParallelBFS c;
+
+private final int size;
+
+/**
+* Output of {@link #run}: the smallest node index of the strongly
+* connected cluster of each node.
+*/
+public final int[] root;
+
+
+// ====================== public constructors ===================
+// ==============================================================
+
+
+/** Copies the given graph. */
+public StrongComponents( Graph g ) { this(new ParallelBFS(g)); }
+
+// --------------------------------------------------------------
+
+/** Works on an existing copy of a graph. */
+public StrongComponents( ParallelBFS copy ) {
+
+	c = copy;
+	size = copy.size();
+	root = new int[size];
+}
+
+
+// ======================= public methods =======================
+// ==============================================================
+
+
+/**
+* Returns the strongly connected clusters, the smallest node index of each
+* cluster mapped to the size of the cluster. Cluster membership can be seen
+* from the content of {@link #root}.
+* @param pool the clusters are found in parallel on this pool; if null, the
+* calling thread runs the Tarjan algorithm
+*/
+public Map<Integer,Integer> run( ForkJoinPool pool ) {
+
+	Arrays.fill(root,-1);
+	if( pool == null || pool.getParallelism() == 1 )
+	{
+		tarjan();
+	}
+	else
+	{
+		pool.invoke(new RecursiveAction() {
+			protected void compute() { parallel(); }
+		});
+	}
+
+	final int[] count = new int[size];
+	for(int i=0; i<size; ++i) count[root[i]]++;
+	Hashtable<Integer,Integer> ht = new Hashtable<Integer,Integer>();
+	for(int i=0; i<size; ++i)
+	{
+		if( root[i]==i ) ht.put(i,count[i]);
+	}
+	return ht;
+}
+
+
+// ======================= private methods ======================
+// ==============================================================
+
+
+/**
+* The Tarjan algorithm over the nodes that are not assigned to a
+* cluster yet (root is -1); edges to assigned nodes are ignored, as those
+* nodes are in other clusters.
+*/
+private void tarjan() {
+
+	final int[] off = c.offsets, tg = c.targets;
+	// visit number (0 if not visited) and lowlink of node v at 2v and
+	// 2v+1; both are MAX_VALUE for assigned nodes, so they are never
+	// visited and do not lower the lowlink of others
+	final int[] nl = new int[2*size];
+	for(int v=0; v<size; ++v)
+		if( root[v] >= 0 ) nl[2*v] = nl[2*v+1] = Integer.MAX_VALUE;
+	final int[] stack = new int[size];
+	// frames of the depth-first search: node and next edge
+	final int[] callNode = new int[size];
+	final int[] callEdge = new int[size];
+	int counter = 1, sp = 0;
+
+	for(int s=0; s<size; ++s)
+	{
+		if( nl[2*s] != 0 ) continue;
+		nl[2*s] = nl[2*s+1] = counter++;
+		stack[sp++] = s;
+		callNode[0] = s;
+		callEdge[0] = off[s];
+		int depth = 1;
+		outer:
+		while( depth > 0 )
+		{
+			final int v = callNode[depth-1];
+			final int end = off[v+1];
+			int low = nl[2*v+1];
+			for(int e=callEdge[depth-1]; e<end; ++e)
+			{
+				final int w = tg[e];
+				if( nl[2*w] == 0 )
+				{
+					// we get back to the same edge when w is done
+					nl[2*v+1] = low;
+					callEdge[depth-1] = e;
+					nl[2*w] = nl[2*w+1] = counter++;
+					stack[sp++] = w;
+					callNode[depth] = w;
+					callEdge[depth] = off[w];
+					++depth;
+					continue outer;
+				}
+				// w is on the stack, or assigned
+				if( nl[2*w+1] < low ) low = nl[2*w+1];
+			}
+			nl[2*v+1] = low;
+			--depth;
+			if( low == nl[2*v] )
+			{
+				// v and the nodes above it form a cluster
+				int p = sp, min = v;
+				do
+				{
+					if( stack[--p] < min ) min = stack[p];
+				}
+				while( stack[p] != v );
+				for(int k=p; k<sp; ++k)
+				{
+					final int w = stack[k];
+					root[w] = min;
+					nl[2*w] = nl[2*w+1] = Integer.MAX_VALUE;
+				}
+				sp = p;
+			}
+		}
+	}
+}
+
+// --------------------------------------------------------------
+
+/** The parallel algorithm, it must run in a fork-join pool. */
+private void parallel() {
+
+	int alive = size - trim();
+	final byte[] mark = new byte[size];
+	final int[] queue = new int[size];
+	final long[] queued = new long[(size+63)>>>6];
+	while( alive >= 2*CHUNK )
+	{
+		// pivot: the unassigned node with most in and out edges
+		int pivot = -1;
+		long best = -1;
+		for(int i=0; i<size; ++i)
+		{
+			if( root[i] >= 0 ) continue;
+			final long d = (long)(c.offsets[i+1]-c.offsets[i])*
+				(c.inOffsets[i+1]-c.inOffsets[i]);
+			if( d > best )
+			{
+				best = d;
+				pivot = i;
+			}
+		}
+
+		// forward reach, then backward reach within it
+		reach(pivot,c.offsets,c.targets,mark,queue,queued,(byte)0,(byte)1);
+		final int n = reach(pivot,c.inOffsets,c.inTargets,mark,queue,
+			queued,(byte)1,(byte)2);
+		int min = size;
+		for(int k=0; k<n; ++k) if( queue[k] < min ) min = queue[k];
+		for(int k=0; k<n; ++k) root[queue[k]] = min;
+		Arrays.fill(mark,(byte)0);
+		alive -= n;
+		// small clusters are left to the Tarjan algorithm
+		if( n < CHUNK ) break;
+		alive -= trim();
+	}
+	tarjan();
+}
+
+// --------------------------------------------------------------
+
+/**
+* Assigns the unassigned nodes that have no unassigned
+* in-neighbour or out-neighbour (other than themselves) to a cluster of
+* their own, and returns their number. A node assigned while the
+* others are checked may be seen as unassigned; it is then removed
+* later.
+*/
+private int trim() {
+
+	final int parts = Math.max(1,size/CHUNK);
+	final List<Trim> tasks = new ArrayList<Trim>(parts);
+	for(int p=0; p<parts; ++p)
+		tasks.add(new Trim((int)((long)size*p/parts),
+			(int)((long)size*(p+1)/parts)));
+	ForkJoinTask.invokeAll(tasks);
+	int n = 0;
+	for(Trim t : tasks) n += t.trimmed;
+	return n;
+}
+
+// --------------------------------------------------------------
+
+/**
+* Marks with <code>to</code> the nodes that can be reached from node
+* <code>from</code> through unassigned nodes marked with <code>was</code>,
+* along the given edges, using a level-synchronous parallel search.
+* On return they are in <code>queue[0..n)</code>, where n is the returned
+* value. queued must be all zero, and so it is on return.
+*/
+private int reach( int from, int[] off, int[] tg, byte[] mark, int[] queue,
+	long[] queued, byte was, byte to ) {
+
+	mark[from] = to;
+	queue[0] = from;
+	int head = 0, tail = 1;
+	while( head < tail )
+	{
+		int t = tail;
+		final int n = tail-head;
+		if( n < CHUNK )
+		{
+			for(int k=head; k<tail; ++k)
+			{
+				final int u = queue[k];
+				for(int e=off[u]; e<off[u+1]; ++e)
+				{
+					final int v = tg[e];
+					if( mark[v] == was && root[v] < 0 )
+					{
+						mark[v] = to;
+						queue[t++] = v;
+					}
+				}
+			}
+		}
+		else
+		{
+			final int parts = (n+CHUNK-1)/CHUNK;
+			final List<Reach> tasks = new ArrayList<Reach>(parts);
+			for(int p=0; p<parts; ++p)
+				tasks.add(new Reach(off,tg,mark,queue,
+					head+(int)((long)n*p/parts),
+					head+(int)((long)n*(p+1)/parts),was,to));
+			ForkJoinTask.invokeAll(tasks);
+			// a node can be found by more than one part
+			for(Reach r : tasks)
+			for(int k=0; k<r.count; ++k)
+			{
+				final int v = r.found[k];
+				if( (queued[v>>>6] & (1L<<v)) == 0 )
+				{
+					queued[v>>>6] |= 1L<<v;
+					queue[t++] = v;
+				}
+			}
+		}
+		head = tail;
+		tail = t;
+	}
+	for(int k=0; k<tail; ++k) queued[queue[k]>>>6] = 0;
+	return tail;
+}
+
+
+// ======================= tasks ================================
+// ==============================================================
+
+
+/** Part of {@link #trim}, over the nodes from..to-1 */
+private final class Trim extends RecursiveAction {
+
+	final int from, to;
+	int trimmed = 0;
+
+	Trim( int from, int to ) {
+		
+		this.from = from;
+		this.to = to;
+	}
+
+	protected void compute() {
+
+		for(int v=from; v<to; ++v)
+		{
+			if( root[v] >= 0 ) continue;
+			if( !linked(v,c.offsets,c.targets) ||
+			    !linked(v,c.inOffsets,c.inTargets) )
+			{
+				root[v] = v;
+				++trimmed;
+			}
+		}
+	}
+
+	private boolean linked( int v, int[] off, int[] tg ) {
+
+		for(int e=off[v]; e<off[v+1]; ++e)
+		{
+			if( tg[e] != v && root[tg[e]] < 0 ) return true;
+		}
+		return false;
+	}
+}
+
+// --------------------------------------------------------------
+
+/** Part of a level of {@link #reach}, over queue[from..to) */
+private final class Reach extends RecursiveAction {
+
+	final int[] off, tg, queue;
+	final byte[] mark;
+	final int from, to;
+	final byte was, is;
+	int[] found = new int[64];
+	int count = 0;
+
+	Reach( int[] off, int[] tg, byte[] mark, int[] queue, int from, int to,
+		byte was, byte is ) {
+		
+		this.off = off;
+		this.tg = tg;
+		this.mark = mark;
+		this.queue = queue;
+		this.from = from;
+		this.to = to;
+		this.was = was;
+		this.is = is;
+	}
+
+	protected void compute() {
+
+		for(int k=from; k<to; ++k)
+		{
+			final int u = queue[k];
+			for(int e=off[u]; e<off[u+1]; ++e)
+			{
+				final int v = tg[e];
+				// several threads may mark the same node here
+				if( mark[v] == was && root[v] < 0 )
+				{
+					mark[v] = is;
+					if( count == found.length )
+						found = Arrays.copyOf(found,2*count);
+					found[count++] = v;
+				}
+			}
+		}
+	}
+}
+
+}
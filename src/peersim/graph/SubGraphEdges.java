@@ -84,6 +84,21 @@ public Collection<Integer> getNeighbours(int i) {
 
 // ---------------------------------------------------------------
 
+public int getNeighbours(int i, int[] buf) {
+
+	if( !nodes.get(i) ) return 0;
+	final int n = g.getNeighbours(i,buf);
+	if( n > buf.length ) return n;
+	int k=0;
+	for(int j=0; j<n; ++j)
+	{
+		if( nodes.get(buf[j]) ) buf[k++]=buf[j];
+	}
+	return k;
+}
+
+// ---------------------------------------------------------------
+
 public Object getNode(int i) { return g.getNode(i); }
 	
 // ---------------------------------------------------------------
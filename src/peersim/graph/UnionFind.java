@@ -0,0 +1,221 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+
+package peersim.graph;
+
+import java.util.*;
+
+/**
+* Disjoint sets over the integers 0,...,size()-1, for following the weakly
+* connected clusters of a graph whose edges are only added. Each set is a
+* tree; union links the root of the smaller tree under the larger one and
+* find halves the path it walks, so both take nearly constant time.
+* Elements can be added one at a time; a cluster is identified by its
+* smallest element, as in {@link StrongComponents}.
+*/
+public class UnionFind {
+
+
+// ====================== fields ================================
+// ==============================================================
+
+
+/** Parent of each element; roots are their own parent */
+private int[] parent;
+
+/** Number of elements of the tree, valid at roots */
+private int[] weight;
+
+/** Smallest element of the tree, valid at roots */
+private int[] min;
+
+/** Number of elements */
+private int size = 0;
+
+/** Number of sets */
+private int count = 0;
+
+/** Size of the largest set */
+private int max = 0;
+
+
+// ====================== public constructors ===================
+// ==============================================================
+
+
+/**
+* Creates the given number of singleton sets.
+*/
+public UnionFind( int size ) {
+
+	parent = new int[Math.max(size,16)];
+	weight = new int[parent.length];
+	min = new int[parent.length];
+	reset(size);
+}
+
+
+// ======================= public methods =======================
+// ==============================================================
+
+
+/**
+* Drops all unions and sets the number of elements, each forming a set
+* by itself. The arrays are reused if they are large enough.
+*/
+public void reset( int size ) {
+
+	if( size > parent.length )
+	{
+		parent = new int[size];
+		weight = new int[size];
+		min = new int[size];
+	}
+	for(int i=0; i<size; ++i)
+	{
+		parent[i] = min[i] = i;
+		weight[i] = 1;
+	}
+	this.size = count = size;
+	max = (size > 0 ? 1 : 0);
+}
+
+// --------------------------------------------------------------
+
+/** Adds a new element in a set by itself and returns its index. */
+public int add() {
+
+	if( size == parent.length )
+	{
+		final int cap = 3*size/2+1;
+		parent = Arrays.copyOf(parent,cap);
+		weight = Arrays.copyOf(weight,cap);
+		min = Arrays.copyOf(min,cap);
+	}
+	parent[size] = min[size] = size;
+	weight[size] = 1;
+	++count;
+	if( max == 0 ) max = 1;
+	return size++;
+}
+
+// --------------------------------------------------------------
+
+/**
+* Adds the nodes size(),...,to-1 of the given copy of a graph, and merges
+* them with the nodes already added that they are linked to, in either
+* direction. Starting from an empty structure and adding the nodes
+* prefix by prefix gives the weakly connected clusters of each
+* {@link PrefixSubGraph} of the graph in turn.
+*/
+public void addPrefix( ParallelBFS c, int to ) {
+
+	for(int v=size; v<to; ++v)
+	{
+		add();
+		for(int e=c.offsets[v]; e<c.offsets[v+1]; ++e)
+			if( c.targets[e] < v ) union(v,c.targets[e]);
+		if( c.inTargets == c.targets ) continue;
+		for(int e=c.inOffsets[v]; e<c.inOffsets[v+1]; ++e)
+			if( c.inTargets[e] < v ) union(v,c.inTargets[e]);
+	}
+}
+
+// --------------------------------------------------------------
+
+/** Returns the root of the tree of element i. */
+public int find( int i ) {
+
+	while( parent[i] != i )
+	{
+		parent[i] = parent[parent[i]];
+		i = parent[i];
+	}
+	return i;
+}
+
+// --------------------------------------------------------------
+
+/**
+* Merges the sets of elements i and j. Returns true if they were
+* different sets.
+*/
+public boolean union( int i, int j ) {
+
+	i = find(i);
+	j = find(j);
+	if( i == j ) return false;
+	if( weight[i] < weight[j] )
+	{
+		final int t = i;
+		i = j;
+		j = t;
+	}
+	parent[j] = i;
+	weight[i] += weight[j];
+	if( min[j] < min[i] ) min[i] = min[j];
+	if( weight[i] > max ) max = weight[i];
+	--count;
+	return true;
+}
+
+// --------------------------------------------------------------
+
+/** The number of elements. */
+public int size() { return size; }
+
+// --------------------------------------------------------------
+
+/** The number of sets. */
+public int count() { return count; }
+
+// --------------------------------------------------------------
+
+/** The number of elements of the largest set, 0 if there are none. */
+public int maxSize() { return max; }
+
+// --------------------------------------------------------------
+
+/** The number of elements in the set of element i. */
+public int clusterSize( int i ) { return weight[find(i)]; }
+
+// --------------------------------------------------------------
+
+/** The smallest element in the set of element i. */
+public int cluster( int i ) { return min[find(i)]; }
+
+// --------------------------------------------------------------
+
+/**
+* Returns the sets, the smallest element of each set mapped to the size
+* of the set, in the same form as
+* {@link GraphAlgorithms#weaklyConnectedClusters}.
+*/
+public Map<Integer,Integer> clusters() {
+
+	Hashtable<Integer,Integer> ht = new Hashtable<Integer,Integer>();
+	for(int i=0; i<size; ++i)
+	{
+		if( parent[i] == i ) ht.put(min[i],weight[i]);
+	}
+	return ht;
+}
+
+}
+
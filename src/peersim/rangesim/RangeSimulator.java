@@ -20,6 +20,7 @@ package peersim.rangesim;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 import peersim.*;
 import peersim.config.*;
@@ -81,6 +82,21 @@ java peersim.rangesim.RangeSimulator config.file jvm.options=-Xmx256m
  * The new JVM inherits the same classpath as the JVM running the
  * RangeSimulator. The {@value #PAR_JVM} parameter can be used to
  * specify additional classpath specification.
+ * <p>
+ * By default the experiments are run one after the other. The
+ * {@value #PAR_THREADS} parameter sets the number of JVMs that may run
+ * at the same time. The seeds are drawn before any experiment is started,
+ * and the output of each experiment is printed as a block in the
+ * same order as in a sequential run (the output of the oldest running
+ * experiment is printed as it is produced, that of the others is buffered
+ * until they become the oldest); so the output does not depend on the
+ * number of threads. Experiments are always run in separate JVMs, as the
+ * simulator state (e.g. {@link CommonState}, {@link Configuration}) is
+ * static.
+ * <p>
+ * When an experiment is over, its wall time and the peak memory of its JVM
+ * (heap, and resident set size where the operating system provides it)
+ * are printed on standard error.
  * 
  * @author Alberto Montresor
  * @version $Revision: 1.11 $
@@ -107,6 +123,13 @@ private static final String PAR_RANGE = "range";
  */
 public static final String PAR_JVM = "jvm.options";
 
+/**
+ * The number of experiments that are run in parallel, each in its
+ * own JVM. Defaults to 1.
+ * @config
+ */
+public static final String PAR_THREADS = "rangesim.threads";
+
 
 // --------------------------------------------------------------------------
 // Static variables
@@ -124,8 +147,17 @@ private String[] jvmoptions;
 /** Command line arguments */
 private String[] args;
 
-/** The current process that is executed */
-private Process p;
+/** The number of experiments run in parallel */
+private int threads;
+
+/** The processes that are executing; they are killed on shutdown */
+private final Set<Process> running = new HashSet<Process>();
+
+/** The experiments, in the order in which their output is printed */
+private List<Point> points;
+
+/** The index of the first experiment whose output is not complete */
+private int next;
 
 
 // --------------------------------------------------------------------------
@@ -169,6 +201,11 @@ public RangeSimulator(String[] args)
 	else
 		jvmoptions = opt.split(" ");
 
+	threads = Configuration.getInt(PAR_THREADS, 1);
+	if (threads < 1)
+		throw new IllegalParameterException(PAR_THREADS,
+				"should be at least 1");
+
 	// Parse range parameters
 	parseRanges();
 
@@ -306,7 +343,9 @@ private void doExperiments(String[] args)
 	for (int i=0; i < values.length; i++)
 		list.add("");
 		
-	// Execute with different values
+	// Prepare all the command lines first, so that the seeds are drawn
+	// in the same order whatever the number of threads
+	points = new ArrayList<Point>();
 	int[] idx = new int[values.length]; // Initialized to 0
 	while (idx[0] < values[0].length) {
 
@@ -330,28 +369,58 @@ private void doExperiments(String[] args)
 		long seed = CommonState.r.nextLong();
 		list.set(startseed, CommonState.PAR_SEED+"="+seed);
 
-		System.err.println("Experiment: " + log);
-		
-		executeProcess(list);
+		points.add(new Point(points.size(), log.toString(),
+				new ArrayList<String>(list)));
 
 		// Increment values
 		nextValues(idx, values);
 	
 	}
+
+	// Execute with different values
+	long time = System.currentTimeMillis();
+	next = 0;
+	if (threads == 1) {
+		for (Point pt : points)
+			executeProcess(pt);
+	} else {
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		for (final Point pt : points) {
+			pool.execute(new Runnable() {
+				public void run() { executeProcess(pt); }
+			});
+		}
+		pool.shutdown();
+		try {
+			while (!pool.awaitTermination(1, TimeUnit.MINUTES));
+		} catch (InterruptedException e) {
+			pool.shutdownNow();
+			doStop();
+			return;
+		}
+	}
+	System.err.println("RangeSimulator: " + points.size() +
+			" experiments in " + (System.currentTimeMillis() - time) +
+			" ms using " + threads + " thread(s)");
 }
 
 //--------------------------------------------------------------------
 
 /**
- * Execute the "command line" represented by this String list.
+ * Execute the "command line" of the specified experiment.
  * The first argument is the process to be executed. We try
  * to run the same JVM as the current one. If not possible,
  * we use the first java command found in the path.
  */
-private void executeProcess(List<String> list)
+private void executeProcess(Point pt)
 {
+	print(pt, "Experiment: " + pt.log, false);
+	long time = System.currentTimeMillis();
+
 	// Prepare the argument array for process forking
+	List<String> list = pt.cmd;
 	String[] newargs = new String[list.size()];
+	Process p = null;
 
 	// Execute a new JVM
 	try {
@@ -369,22 +438,28 @@ private void executeProcess(List<String> list)
 			System.exit(1);
 		}
 	}
+	synchronized (running) {
+		running.add(p);
+	}
 
 	// Read the output from the process and redirect it to System.out
 	// and System.err.
 	BufferedReader toprint = new BufferedReader(new InputStreamReader(p
 			.getInputStream()));
 	String line;
+	String memory = "";
 	while ((line = getLine(toprint)) != null) {
 		if (line.length() == 0) {
-			System.out.println();
+			print(pt, line, true);
 		} else {
 			int last = line.charAt(line.length()-1);
-			if (last != TaggedOutputStream.TAG) {
-				System.err.println(line);
+			if (last == TaggedOutputStream.MEMORY) {
+				memory = line.substring(0, line.length()-1);
+			} else if (last != TaggedOutputStream.TAG) {
+				print(pt, line, false);
 			} else {
 				line = line.substring(0, line.length()-1);
-				System.out.println(line);
+				print(pt, line, true);
 			}
 		}
 	}
@@ -402,12 +477,60 @@ private void executeProcess(List<String> list)
 		e.printStackTrace();
 	}
 
-	// The static variable p (used also by ShutdownThread) is back to
-	// null - no process must be killed on shutdown.
-	p = null;
-	
-	
+	// The process must not be killed on shutdown anymore
+	synchronized (running) {
+		running.remove(p);
+	}
 
+	print(pt, "Experiment: " + pt.log + "done in " +
+			(System.currentTimeMillis() - time) + " ms" + memory, false);
+	finish(pt);
+}
+
+//--------------------------------------------------------------------
+
+/**
+ * Prints a line of the output of the specified experiment, if it is
+ * the oldest one which is running; otherwise the line is buffered.
+ * @param out true for standard output, false for standard error
+ */
+private void print(Point pt, String line, boolean out)
+{
+	synchronized (points) {
+		if (pt.index == next) {
+			if (out) System.out.println(line);
+			else System.err.println(line);
+		} else {
+			pt.lines.add(line);
+			pt.out.add(out);
+		}
+	}
+}
+
+//--------------------------------------------------------------------
+
+/**
+ * Marks the specified experiment as completed, and prints the buffered
+ * output of the experiments that follow it, up to the first one which
+ * is still running.
+ */
+private void finish(Point pt)
+{
+	synchronized (points) {
+		pt.done = true;
+		while (next < points.size() && points.get(next).done) {
+			next++;
+			if (next < points.size()) {
+				Point head = points.get(next);
+				for (int i = 0; i < head.lines.size(); i++) {
+					if (head.out.get(i)) System.out.println(head.lines.get(i));
+					else System.err.println(head.lines.get(i));
+				}
+				head.lines = null;
+				head.out = null;
+			}
+		}
+	}
 }
 
 //--------------------------------------------------------------------
@@ -441,21 +564,62 @@ RangeSimulator()
 }
 
 /**
- * Stop the process executing the external java virtual machine.
+ * Stop the processes executing the external java virtual machines.
  */
 public void doStop()
 {
-	if (p != null)
-		p.destroy();
+	synchronized (running) {
+		for (Process p : running)
+			p.destroy();
+	}
 }
 
 /**
- * Wait until the java virtual machine has terminated; it won't be
+ * Wait until the java virtual machines have terminated; it won't be
  * used in this class, but you never know.
  */
 public void join() throws InterruptedException
 {
-	p.waitFor();
+	Process[] ps;
+	synchronized (running) {
+		ps = running.toArray(new Process[running.size()]);
+	}
+	for (Process p : ps)
+		p.waitFor();
+}
+
+//--------------------------------------------------------------------
+
+/**
+ * An experiment, i.e. a combination of values of the range parameters,
+ * together with its buffered output.
+ */
+private static class Point
+{
+	/** The position of the experiment in the sequential order */
+	final int index;
+	
+	/** The values of the range parameters */
+	final String log;
+
+	/** The command line */
+	final List<String> cmd;
+
+	/** Output lines buffered while an older experiment is running */
+	List<String> lines = new ArrayList<String>();
+
+	/** For each buffered line, true if it goes to standard output */
+	List<Boolean> out = new ArrayList<Boolean>();
+
+	/** True when the process is over and all its output has been read */
+	boolean done;
+
+	Point(int index, String log, List<String> cmd)
+	{
+		this.index = index;
+		this.log = log;
+		this.cmd = cmd;
+	}
 }
 
 }
@@ -19,6 +19,7 @@
 package peersim.rangesim;
 
 import java.io.*;
+import java.lang.management.*;
 import java.util.*;
 
 import peersim.config.*;
@@ -31,6 +32,9 @@ import peersim.core.*;
  * among standard error and standard output. This 
  * feature is needed for launching new JVMs; it should
  * not be used for other purposes. 
+ * <p>
+ * When the JVM terminates, a last line is printed with the peak memory
+ * usage, terminated by {@link #MEMORY} instead of {@link #TAG}.
  * 
  * @author Alberto Montresor
  * @version $Revision: 1.5 $
@@ -47,6 +51,12 @@ public class TaggedOutputStream extends PrintStream
  */
 public static final int TAG = 1;
 
+/** 
+ * This character is appended at the end of the line reporting the
+ * peak memory usage of the JVM.
+ */
+public static final int MEMORY = 2;
+
 //--------------------------------------------------------------------------
 //Parameters
 //--------------------------------------------------------------------------
@@ -110,6 +120,14 @@ public TaggedOutputStream(String prefix)
 	ranges = Configuration.getString(prefix + "." + PAR_RANGES, "");
 	stdout = System.out;
 	size = 0;
+
+	final PrintStream out = stdout;
+	Runtime.getRuntime().addShutdownHook(new Thread() {
+		public void run() {
+			out.println(memoryUsage() + (char) MEMORY);
+			out.flush();
+		}
+	});
 }
 
 //--------------------------------------------------------------------------
@@ -155,6 +173,44 @@ public synchronized void write(int b)
 	}
 }
 
+/**
+ * Returns the peak heap usage of this JVM and, if it can be read from
+ * <code>/proc</code>, its peak resident set size.
+ */
+static String memoryUsage()
+{
+	long heap = 0;
+	for (MemoryPoolMXBean b : ManagementFactory.getMemoryPoolMXBeans()) {
+		if (b.getType() == MemoryType.HEAP)
+			heap += b.getPeakUsage().getUsed();
+	}
+	String s = ", peak heap " + (heap >> 20) + " MB";
+
+	// Linux only
+	BufferedReader r = null;
+	try {
+		r = new BufferedReader(new FileReader("/proc/self/status"));
+		String line;
+		while ((line = r.readLine()) != null) {
+			if (line.startsWith("VmHWM:")) {
+				long kb = Long.parseLong(line.substring(6).trim().split("\\s+")[0]);
+				s += ", peak RSS " + (kb >> 10) + " MB";
+				break;
+			}
+		}
+	} catch (Exception e) {
+		// not available
+	} finally {
+		try {
+			if (r != null) r.close();
+		} catch (IOException e) {
+		}
+	}
+	return s;
+}
+
+//--------------------------------------------------------------------------
+
 /** 
  * Actually prints a line, inserting ranges and time
  * when needed.
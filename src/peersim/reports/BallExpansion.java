@@ -71,9 +71,6 @@ private final int n;
 
 private final boolean stats;
 
-/** working variable */
-private final int[] b;
-
 private final RandPermutation rp = new RandPermutation(CommonState.r);
 
 // ===================== initialization ================================
@@ -90,7 +87,6 @@ public BallExpansion(String name)
 	maxd = Configuration.getInt(name + "." + PAR_MAXD, Network.size());
 	n = Configuration.getInt(name + "." + PAR_N, 1000);
 	stats = Configuration.contains(name + "." + PAR_STATS);
-	b = new int[maxd];
 }
 
 // ====================== methods ======================================
@@ -121,34 +117,36 @@ public boolean execute() {
 	updateGraph();
 	System.out.print(name + ": ");
 	rp.reset(g.size());
+	final int[] sources = new int[Math.min(n, g.size())];
+	for (int i = 0; i < sources.length; ++i) sources[i] = rp.next();
+	final int[][] levels = bfs().levels(sources, pool());
 	if (stats)
 	{
 		IncrementalStats is = new IncrementalStats();
-		for (int i = 0; i < n && i < g.size(); ++i)
+		for (int[] l : levels)
 		{
-			ga.dist(g, rp.next());
-			for (int j=0; j<g.size(); j++)
+			// distance 0 is deliberately left out, as we don't
+			// want to count trivial distance to oneself.
+			int reached = 1;
+			for (int j = 1; j < l.length; j++)
 			{
-				if (ga.d[j] > 0)
-					is.add(ga.d[j]);
-				else if (ga.d[j] == -1)
-					is.add(Double.POSITIVE_INFINITY);
-				// deliberately left ga.d[j]==0 out, as we don't
-				// want to count trivial distance to oneself.
+				is.add(j, l[j]);
+				reached += l[j];
 			}
+			if (reached < g.size())
+				is.add(Double.POSITIVE_INFINITY, g.size() - reached);
 		}
 		System.out.println(is);
 	}
 	else
 	{
 		System.out.println();
-		for (int i = 0; i < n && i < g.size(); ++i)
+		for (int[] l : levels)
 		{
-			ga.flooding(g, b, rp.next());
 			int j = 0;
-			while (j < b.length && b[j] > 0)
+			while (j < maxd && j < l.length)
 			{
-				System.out.print(b[j++] + " ");
+				System.out.print(l[j++] + " ");
 			}
 			System.out.println();
 		}
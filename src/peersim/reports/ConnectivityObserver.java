@@ -21,6 +21,9 @@ package peersim.reports;
 import java.util.Iterator;
 import java.util.Map;
 import peersim.config.Configuration;
+import peersim.config.IllegalParameterException;
+import peersim.core.ClusterTracker;
+import peersim.graph.StrongComponents;
 import peersim.util.IncrementalStats;
 
 /**
@@ -53,6 +56,19 @@ private static final String PAR_STATS = "stats";
  */
 private static final String PAR_TYPE = "type";
 
+/**
+ * If defined, weakly connected clusters are followed by a
+ * {@link ClusterTracker} from one observation to the next, instead of being
+ * found again on the whole graph. This is much faster when the overlay
+ * changes little between observations, but it is correct only for
+ * protocols that do not drop links, such as
+ * {@link peersim.core.IdleProtocol}.
+ * Cluster IDs are then the smallest node index of the cluster.
+ * Only with type "wcc". Not set by default.
+ * @config
+ */
+private static final String PAR_INCREMENTAL = "incremental";
+
 //--------------------------------------------------------------------------
 //Fields
 //--------------------------------------------------------------------------
@@ -63,6 +79,9 @@ private final boolean sizestats;
 /** {@link #PAR_TYPE} */
 private final String type;
 
+/** Set if {@value #PAR_INCREMENTAL} is defined */
+private final ClusterTracker tracker;
+
 //--------------------------------------------------------------------------
 //Initialization
 //--------------------------------------------------------------------------
@@ -77,6 +96,14 @@ public ConnectivityObserver(String name)
 	super(name);
 	sizestats = Configuration.contains(name + "." + PAR_STATS);
 	type = Configuration.getString(name + "." + PAR_TYPE,"wcc");
+	if( Configuration.contains(name + "." + PAR_INCREMENTAL) )
+	{
+		if( !type.equals("wcc") )
+			throw new IllegalParameterException(name + "." +
+			PAR_INCREMENTAL, "Only clusters of type 'wcc' are tracked");
+		tracker = new ClusterTracker(pid);
+	}
+	else tracker = null;
 }
 
 //--------------------------------------------------------------------------
@@ -92,19 +119,32 @@ public ConnectivityObserver(String name)
 * a map, that holds cluster IDs mapped to cluster sizes.
 * The meaning of the cluster IDs is not specified, but is printed for
 * debugging purposes.
+* Strongly connected clusters are found on the "threads"
+* threads of the observer and are identified by their smallest node index,
+* so the output does not depend on the number of threads.
 * @return always false
-* @see peersim.graph.GraphAlgorithms#tarjan
+* @see peersim.graph.StrongComponents
 * @see peersim.graph.GraphAlgorithms#weaklyConnectedClusters
+* @see ClusterTracker
 */
 public boolean execute()
 {
 	Map clst;
-	updateGraph();
-	
-	if(type.equals("wcc"))
+	if( tracker != null )
+	{
+		// the overlay is read directly, the graph is not needed
+		clst=tracker.update().clusters();
+	}
+	else if(type.equals("wcc"))
+	{
+		updateGraph();
 		clst=ga.weaklyConnectedClusters(g);
+	}
 	else if(type.equals("scc"))
-		clst=ga.tarjan(g);
+	{
+		updateGraph();
+		clst=new StrongComponents(bfs()).run(pool());
+	}
 	else
 		throw new RuntimeException(
 		"Unsupported connted cluster type '"+type+"'");
@@ -18,8 +18,10 @@
 		
 package peersim.reports;
 
+import java.util.concurrent.ForkJoinPool;
+
 import peersim.core.*;
-import peersim.config.Configuration;
+import peersim.config.*;
 import peersim.graph.*;
 import peersim.cdsim.CDState;
 
@@ -65,6 +67,14 @@ private static final String PAR_UNDIR_ALT = "undirected";
  */
 private static final String PAR_FAST = "graphobserver.fast";
 
+/**
+ * The number of threads used by observers that compute distances
+ * (see {@link #bfs}). The results do not depend on it. Defaults to the
+ * number of available processors.
+ * @config
+ */
+private static final String PAR_THREADS = "threads";
+
 /** The name of this observer in the configuration */
 protected final String name;
 
@@ -76,6 +86,11 @@ protected final GraphAlgorithms ga = new GraphAlgorithms();
 
 protected Graph g;
 
+private final int threads;
+
+/** Runs the searches of {@link #bfs}, null if only one thread is used */
+private ForkJoinPool pool = null;
+
 // ---------------------------------------------------------------------
 
 private static int lastpid = -1234;
@@ -90,6 +105,11 @@ private static Graph dirg;
 
 private static Graph undirg;
 
+/** Copies of dirg and undirg made by {@link #bfs}, null until needed */
+private static ParallelBFS dirbfs;
+
+private static ParallelBFS undirbfs;
+
 private static boolean fast;
 
 /** If any instance of some extending class defines undir we need to
@@ -114,6 +134,11 @@ protected GraphObserver(String name) {
 		Configuration.contains(name + "." + PAR_UNDIR_ALT));
 	GraphObserver.fast = Configuration.contains(PAR_FAST);
 	GraphObserver.needUndir = (GraphObserver.needUndir || undir);
+	threads = Configuration.getInt(name+"."+PAR_THREADS,
+		Runtime.getRuntime().availableProcessors());
+	if (threads < 1)
+		throw new IllegalParameterException(name+"."+PAR_THREADS,
+		"At least one thread is needed");
 }
 
 
@@ -149,6 +174,8 @@ protected void updateGraph() {
 		GraphObserver.phase = CommonState.getPhase();
 
 		GraphObserver.dirg = new OverlayGraph(pid);
+		GraphObserver.dirbfs = null;
+		GraphObserver.undirbfs = null;
 		if( GraphObserver.needUndir )
 		{
 			if( fast )
@@ -164,7 +191,36 @@ protected void updateGraph() {
 	else g = GraphObserver.dirg;
 }
 
+// ---------------------------------------------------------------------
+
+/**
+* Returns a {@link ParallelBFS} copy of {@link #g}, for computing
+* distances. Like the graph, the copy is shared by the observers
+* until the simulation advances. {@link #updateGraph} must be called first.
+*/
+protected ParallelBFS bfs() {
+
+	if( undir )
+	{
+		if( GraphObserver.undirbfs == null )
+			GraphObserver.undirbfs = new ParallelBFS(g);
+		return GraphObserver.undirbfs;
+	}
+	if( GraphObserver.dirbfs == null )
+		GraphObserver.dirbfs = new ParallelBFS(g);
+	return GraphObserver.dirbfs;
 }
 
+// ---------------------------------------------------------------------
 
+/**
+* Returns the pool of {@value #PAR_THREADS} threads for running the
+* searches of {@link #bfs}, or null if only one thread is used.
+*/
+protected ForkJoinPool pool() {
 
+	if( pool == null && threads > 1 ) pool = new ForkJoinPool(threads);
+	return pool;
+}
+
+}
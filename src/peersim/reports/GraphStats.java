@@ -62,6 +62,9 @@ private static final String PAR_NL = "nl";
 */
 private static final String PAR_NC = "nc";
 
+/** Number of path length searches run together */
+private static final int BATCH = 256;
+
 private final int nc;
 
 private final int nl;
@@ -122,21 +125,26 @@ public boolean execute() {
 	if( nl != 0 )
 	{
 		stats.reset();
-		final int n = ( nl<0 ? g.size() : nl );
+		final int n = Math.min( nl<0 ? g.size() : nl, g.size() );
+		// in batches, as we stop at the first unreachable node
 		outerloop:
-		for(int i=0; i<n && i<g.size(); ++i)
+		for(int i=0; i<n; i+=BATCH)
 		{
-			ga.dist(g,i);
-			for(int j=0; j<g.size(); ++j)
+			final int[] sources = new int[Math.min(BATCH,n-i)];
+			for(int k=0; k<sources.length; ++k) sources[k]=i+k;
+			for(int[] l : bfs().levels(sources,pool()))
 			{
-				if( j==i ) continue;
-				if (ga.d[j] == -1)
+				int reached = 1;
+				for(int j=1; j<l.length; ++j)
+				{
+					stats.add(j,l[j]);
+					reached += l[j];
+				}
+				if( reached < g.size() )
 				{
 					stats.add(Double.POSITIVE_INFINITY);
 					break outerloop;
 				}
-				else
-					stats.add(ga.d[j]); 
 			}
 		}
 		System.out.print(stats.getAverage());
@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+
+package peersim.reports;
+
+import peersim.config.*;
+import peersim.core.*;
+import peersim.graph.HyperANF;
+
+/**
+ * Control to observe the distances in the whole graph, estimated with
+ * the HyperANF algorithm: the average distance, the effective diameter
+ * and the ball sizes.
+ * Unlike {@link GraphStats} and {@link BallExpansion} it does not sample
+ * nodes; it takes a few passes over the graph, as many as the diameter,
+ * and uses a fixed amount of memory per node (see {@value #PAR_LOG2M}).
+ * The values are approximate.
+ * @see HyperANF
+ */
+public class NeighbourhoodFunction extends GraphObserver
+{
+
+// ===================== fields =======================================
+// ====================================================================
+
+/**
+ * The base 2 logarithm of the number of registers of the counter of each
+ * node, from 4 to 12. The relative standard error of the estimate of
+ * each ball size is about 1.04/sqrt(2^log2m); the memory used is
+ * 2^(log2m+1) bytes per node. Defaults to 6.
+ * @config
+ */
+private static final String PAR_LOG2M = "log2m";
+
+/**
+ * This parameter defines the maximal distance we care about.
+ * Defaults to the network size, that is, the search goes on until
+ * the balls stop growing.
+ * @config
+ */
+private static final String PAR_MAXD = "maxd";
+
+/**
+ * The fraction of the pairs of reachable nodes for the effective
+ * diameter. Defaults to 0.9.
+ * @config
+ */
+private static final String PAR_FRACTION = "fraction";
+
+/**
+ * If defined, the average ball sizes are printed as well. Not defined by
+ * default.
+ * @config
+ */
+private static final String PAR_BALLS = "balls";
+
+private final int log2m;
+
+private final int maxd;
+
+private final double fraction;
+
+private final boolean balls;
+
+// ===================== initialization ================================
+// =====================================================================
+
+/**
+ * Standard constructor that reads the configuration parameters.
+ * Invoked by the simulation engine.
+ * @param name the configuration prefix for this class
+ */
+public NeighbourhoodFunction(String name)
+{
+	super(name);
+	log2m = Configuration.getInt(name + "." + PAR_LOG2M, 6);
+	if (log2m < 4 || log2m > 12)
+		throw new IllegalParameterException(name + "." + PAR_LOG2M,
+		"Must be between 4 and 12");
+	maxd = Configuration.getInt(name + "." + PAR_MAXD, Integer.MAX_VALUE);
+	fraction = Configuration.getDouble(name + "." + PAR_FRACTION, 0.9);
+	if (fraction <= 0 || fraction > 1)
+		throw new IllegalParameterException(name + "." + PAR_FRACTION,
+		"Must be in (0,1]");
+	balls = Configuration.contains(name + "." + PAR_BALLS);
+}
+
+// ====================== methods ======================================
+// =====================================================================
+
+/**
+* Prints the estimated average distance between the pairs of different
+* nodes that are reachable from one another, the effective diameter
+* (the distance within which {@value #PAR_FRACTION} of these pairs are,
+* interpolated), the number of steps until the balls stopped growing
+* (about the diameter), and the estimated number of reachable
+* pairs including the pairs of a node with itself, in one line separated
+* by spaces. If {@value #PAR_MAXD} steps were not enough, the values
+* are over the pairs within that distance only.
+* If {@value #PAR_BALLS} is defined, a second line contains the
+* estimated average number of nodes
+* accessible from a node in at most 0, 1, 2, etc steps.
+* The hash functions of the counters are seeded from
+* {@link CommonState#r}.
+* @return always false
+*/
+public boolean execute() {
+
+	updateGraph();
+	System.out.print(name + ": ");
+	final double[] nf = new HyperANF(bfs(), log2m,
+		CommonState.r.nextLong()).run(maxd, pool());
+	System.out.println(HyperANF.averageDistance(nf) + " " +
+		HyperANF.effectiveDiameter(nf, fraction) + " " +
+		(nf.length - 1) + " " + nf[nf.length - 1]);
+	if (balls)
+	{
+		for (int t = 0; t < nf.length; ++t)
+			System.out.print(nf[t] / g.size() + " ");
+		System.out.println();
+	}
+	return false;
+}
+
+}
+
@@ -22,8 +22,6 @@ import peersim.core.*;
 import peersim.config.Configuration;
 import peersim.graph.*;
 import peersim.util.IncrementalStats;
-import java.util.Map;
-import java.util.Iterator;
 
 /**
  * It tests the network for robustness to random node removal.
@@ -79,12 +77,12 @@ public RandRemoval(String name)
 * percentage values a line is printed that contains the respective averages,
 * first the average maximal cluster size, followed by the average number
 * of clusters.
+* Parameter "undir" has no effect.
 * @return always false
 */
 public boolean execute()
 {
 	if( n < 1 ) return false;
-	updateGraph();
 	
 	System.out.println(name + ":");
 	
@@ -96,19 +94,24 @@ public boolean execute()
 		maxClust[i] = new IncrementalStats();
 		clustNum[i] = new IncrementalStats();
 	}
+	final IncrementalStats empty = new IncrementalStats();
+	final UnionFind uf = new UnionFind(0);
 	for (int j = 0; j < n; ++j) {
-		PrefixSubGraph sg = new PrefixSubGraph(g);
-		IncrementalStats stats = new IncrementalStats();
-		for (int i = 0; i < steps; i++) {
-			sg.setSize(size / 2 - i * (size / 100));
-			Map clst = ga.weaklyConnectedClusters(sg);
-			stats.reset();
-			Iterator it = clst.values().iterator();
-			while (it.hasNext()) {
-				stats.add(((Integer) it.next()).intValue());
-			}
-			maxClust[i].add(stats.getMax());
-			clustNum[i].add(clst.size());
+		// removing the nodes from the end of the list is the same as
+		// adding them in the opposite order, so the clusters of all the
+		// prefixes are found by one pass that merges the clusters of
+		// each new node and its neighbors that are already there
+		// the overlay is copied after each shuffle; edge directions do
+		// not matter for weakly connected clusters, and a shared
+		// undirected graph would not follow the shuffle
+		final ParallelBFS c = new ParallelBFS(new OverlayGraph(pid));
+		uf.reset(0);
+		for (int i = steps - 1; i >= 0; --i) {
+			final int prefix = size / 2 - i * (size / 100);
+			uf.addPrefix(c, prefix);
+			// the statistics of no clusters if the prefix is empty
+			maxClust[i].add(prefix > 0 ? uf.maxSize() : empty.getMax());
+			clustNum[i].add(uf.count());
 		}
 		if( j+1 < n ) Network.shuffle();
 	}
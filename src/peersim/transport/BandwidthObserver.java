@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+
+package peersim.transport;
+
+import peersim.config.*;
+import peersim.core.*;
+import peersim.util.IncrementalStats;
+
+/**
+ * Prints the load of the links of {@link BandwidthTransport}. For the
+ * uplinks and then the downlinks it prints one line with the average
+ * and maximal utilisation since the start of the simulation, the average
+ * and maximal current queue length and the longest queue seen so far,
+ * over all the nodes.
+ */
+public class BandwidthObserver implements Control
+{
+
+// ---------------------------------------------------------------------
+// Parameters
+// ---------------------------------------------------------------------
+
+/**
+ * The {@link BandwidthTransport} protocol to observe.
+ * @config
+ */
+private static final String PAR_PROT = "protocol";
+
+// ---------------------------------------------------------------------
+// Fields
+// ---------------------------------------------------------------------
+
+/** Protocol identifier */
+private final int pid;
+
+/** Prefix for reading parameters */
+private final String prefix;
+
+// ---------------------------------------------------------------------
+// Initialization
+// ---------------------------------------------------------------------
+
+/**
+ * Read the configuration parameters.
+ */
+public BandwidthObserver(String prefix)
+{
+	this.prefix = prefix;
+	pid = Configuration.getPid(prefix + "." + PAR_PROT);
+}
+
+// ---------------------------------------------------------------------
+// Methods
+// ---------------------------------------------------------------------
+
+/**
+ * Prints the statistics of the uplinks and of the downlinks.
+ * @return always false
+ */
+public boolean execute()
+{
+	final IncrementalStats upu = new IncrementalStats(),
+		upq = new IncrementalStats(), downu = new IncrementalStats(),
+		downq = new IncrementalStats();
+	int upmax = 0, downmax = 0;
+	for (int i = 0; i < Network.size(); ++i) {
+		final BandwidthTransport t =
+			(BandwidthTransport) Network.get(i).getProtocol(pid);
+		upu.add(t.getUplinkUtilisation());
+		upq.add(t.getUplinkQueue());
+		upmax = Math.max(upmax, t.getMaxUplinkQueue());
+		downu.add(t.getDownlinkUtilisation());
+		downq.add(t.getDownlinkQueue());
+		downmax = Math.max(downmax, t.getMaxDownlinkQueue());
+	}
+	System.out.println(prefix + ": uplink utilisation " + upu.getAverage() +
+		" " + upu.getMax() + " queue " + upq.getAverage() + " " +
+		upq.getMax() + " " + upmax);
+	System.out.println(prefix + ": downlink utilisation " +
+		downu.getAverage() + " " + downu.getMax() + " queue " +
+		downq.getAverage() + " " + downq.getMax() + " " + downmax);
+	return false;
+}
+
+}
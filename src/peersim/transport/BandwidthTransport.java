@@ -0,0 +1,378 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+
+package peersim.transport;
+
+import peersim.config.*;
+import peersim.core.*;
+import peersim.edsim.*;
+
+
+/**
+ * This transport protocol adds the capacity of the access links of the
+ * nodes to the latency of another transport protocol. Each node has an
+ * uplink and a downlink of given capacity (in bytes per time unit), and
+ * each link transmits one message at a time, in FIFO order: a message
+ * leaves the sender after the messages queued before it and its own
+ * transmission time (its size divided by the capacity), it travels
+ * through the underlying transport, and then it waits for the downlink of
+ * the receiver in the same way. Sizes are taken from
+ * {@link SizedMessage}, or from parameter {@value #PAR_SIZE}.
+ * <p>
+ * Messages are sent with the {@link Transport#send} method of the
+ * underlying transport, so a message dropped by it (for example by
+ * {@link UnreliableTransport}) still takes its time on the uplink of the
+ * sender but never reaches the receiver. When the message has to wait for
+ * the uplink, it is sent right away and held back by that time when it
+ * arrives, which gives the same delivery time.
+ * <p>
+ * The queues are not stored as messages but as the times at which the
+ * queued messages are done, so they cost little memory. Each node reports
+ * its current queue lengths, the longest queues seen and the utilisation
+ * of its links; see {@link BandwidthObserver}. The capacities can be
+ * changed per node through {@link #setUplink} and {@link #setDownlink}, for
+ * example by the initializers of package {@link peersim.vector}.
+ * <p>
+ * This protocol is also an {@link EDProtocol}: the messages are delivered
+ * to it when they reach the receiver (unless they did not wait for the
+ * uplink and the capacity of the downlink is unlimited), and it delivers
+ * them to the destination protocol when they have been received.
+ * The delay between nodes is at least the latency of the underlying
+ * transport, so the lookahead of the parallel engine can be the minimal
+ * latency of that.
+ */
+public class BandwidthTransport implements Transport, EDProtocol
+{
+
+//---------------------------------------------------------------------
+//Parameters
+//---------------------------------------------------------------------
+
+/**
+ * The name of the underlying transport protocol, which gives the
+ * propagation latency. Messages are sent through it, so its drops apply.
+ * @config
+ */
+private static final String PAR_TRANSPORT = "transport";
+
+/**
+ * The capacity of the uplink of each node, in bytes per time unit.
+ * Defaults to 0, which means unlimited.
+ * @config
+ */
+private static final String PAR_UPLINK = "uplink";
+
+/**
+ * The capacity of the downlink of each node, in bytes per time unit.
+ * Defaults to 0, which means unlimited.
+ * @config
+ */
+private static final String PAR_DOWNLINK = "downlink";
+
+/**
+ * The size in bytes of the messages that do not implement
+ * {@link SizedMessage}. Defaults to 1024.
+ * @config
+ */
+private static final String PAR_SIZE = "size";
+
+//---------------------------------------------------------------------
+//Static fields
+//---------------------------------------------------------------------
+
+/** Identifier of this transport protocol */
+private static int tid;
+
+/** Protocol identifier of the underlying transport protocol */
+private static int transport;
+
+/** Size of the messages that do not know their size */
+private static int size;
+
+//---------------------------------------------------------------------
+//Fields
+//---------------------------------------------------------------------
+
+/** The uplink of the node */
+private Link up;
+
+/** The downlink of the node */
+private Link down;
+
+//---------------------------------------------------------------------
+//Initialization
+//---------------------------------------------------------------------
+
+/**
+ * Reads configuration parameters.
+ */
+public BandwidthTransport(String prefix)
+{
+	tid = CommonState.getPid();
+	transport = Configuration.getPid(prefix + "." + PAR_TRANSPORT);
+	size = Configuration.getInt(prefix + "." + PAR_SIZE, 1024);
+	up = new Link(Configuration.getDouble(prefix + "." + PAR_UPLINK, 0));
+	down = new Link(Configuration.getDouble(prefix + "." + PAR_DOWNLINK, 0));
+}
+
+//---------------------------------------------------------------------
+
+/**
+ * Clones the object, with empty queues.
+ */
+public Object clone()
+{
+	BandwidthTransport bt=null;
+	try { bt=(BandwidthTransport)super.clone(); }
+	catch( CloneNotSupportedException e ) {} // never happens
+	bt.up = new Link(up.rate);
+	bt.down = new Link(down.rate);
+	return bt;
+}
+
+//---------------------------------------------------------------------
+//Methods inherited by Transport
+//---------------------------------------------------------------------
+
+/**
+ * Queues the message on the uplink of the sender, and sends it to the
+ * receiver through the underlying transport.
+ */
+public void send(Node src, Node dest, Object msg, int pid)
+{
+	final long now = CommonState.getTime();
+	final int bytes = (msg instanceof SizedMessage) ?
+		((SizedMessage) msg).getSize() : size;
+	final BandwidthTransport sender =
+		(BandwidthTransport) src.getProtocol(tid);
+	final BandwidthTransport receiver =
+		(BandwidthTransport) dest.getProtocol(tid);
+	final long wait = ceil(sender.up.enqueue(now, bytes)) - now;
+	final Transport t = (Transport) src.getProtocol(transport);
+	if (wait > 0 || receiver.down.rate > 0)
+		t.send(src, dest, new Arrival(msg, pid, bytes, wait), tid);
+	else
+		t.send(src, dest, msg, pid);
+}
+
+//---------------------------------------------------------------------
+
+/**
+ * Returns the latency of the underlying transport plus the time needed
+ * to transmit a message of the default size over the uplink of the sender
+ * and the downlink of the receiver, without queueing.
+ */
+public long getLatency(Node src, Node dest)
+{
+	final BandwidthTransport sender =
+		(BandwidthTransport) src.getProtocol(tid);
+	final BandwidthTransport receiver =
+		(BandwidthTransport) dest.getProtocol(tid);
+	return ((Transport) src.getProtocol(transport)).getLatency(src, dest) +
+		ceil(sender.up.time(size)) + ceil(receiver.down.time(size));
+}
+
+//---------------------------------------------------------------------
+//Methods inherited by EDProtocol
+//---------------------------------------------------------------------
+
+/**
+ * Holds back a message that arrived by the time it waited for the uplink
+ * of the sender, then queues it on the downlink of this node and delivers
+ * it when it has been received.
+ */
+public void processEvent(Node node, int pid, Object event)
+{
+	final Arrival a = (Arrival) event;
+	if (a.wait > 0)
+	{
+		final long wait = a.wait;
+		a.wait = 0;
+		if (down.rate > 0) EDSimulator.add(wait, a, node, tid);
+		else EDSimulator.add(wait, a.msg, node, a.pid);
+		return;
+	}
+	final long now = CommonState.getTime();
+	EDSimulator.add(ceil(down.enqueue(now, a.size)) - now, a.msg, node,
+		a.pid);
+}
+
+//---------------------------------------------------------------------
+//Methods
+//---------------------------------------------------------------------
+
+/** Sets the capacity of the uplink in bytes per time unit, 0 if unlimited */
+public void setUplink(double rate) { up.rate = rate; }
+
+/** Returns the capacity of the uplink in bytes per time unit */
+public double getUplink() { return up.rate; }
+
+/** Sets the capacity of the downlink in bytes per time unit, 0 if unlimited */
+public void setDownlink(double rate) { down.rate = rate; }
+
+/** Returns the capacity of the downlink in bytes per time unit */
+public double getDownlink() { return down.rate; }
+
+//---------------------------------------------------------------------
+
+/**
+ * Returns the number of messages being sent or waiting on the uplink.
+ */
+public int getUplinkQueue() { return up.queue(CommonState.getTime()); }
+
+/**
+ * Returns the number of messages being received or waiting on the
+ * downlink.
+ */
+public int getDownlinkQueue() { return down.queue(CommonState.getTime()); }
+
+/** Returns the longest uplink queue seen so far */
+public int getMaxUplinkQueue() { return up.max; }
+
+/** Returns the longest downlink queue seen so far */
+public int getMaxDownlinkQueue() { return down.max; }
+
+/**
+ * Returns the fraction of the time since the start of the simulation in
+ * which the uplink was busy, 0 if its capacity is unlimited.
+ */
+public double getUplinkUtilisation()
+{
+	return up.utilisation(CommonState.getTime());
+}
+
+/**
+ * Returns the fraction of the time since the start of the simulation in
+ * which the downlink was busy, 0 if its capacity is unlimited.
+ */
+public double getDownlinkUtilisation()
+{
+	return down.utilisation(CommonState.getTime());
+}
+
+/** Returns the bytes queued on the uplink so far */
+public long getBytesSent() { return up.bytes; }
+
+/** Returns the bytes queued on the downlink so far */
+public long getBytesReceived() { return down.bytes; }
+
+//---------------------------------------------------------------------
+
+/** Rounds a time up to the time unit */
+private static long ceil(double t)
+{
+	return (long) Math.ceil(t);
+}
+
+//---------------------------------------------------------------------
+//Inner classes
+//---------------------------------------------------------------------
+
+/** A FIFO link with a capacity */
+private static final class Link
+{
+	/** Bytes per time unit, 0 if unlimited */
+	double rate;
+
+	/** The time the last queued message is done */
+	double free = 0;
+
+	/** The total transmission time of the messages queued so far */
+	double busy = 0;
+
+	long bytes = 0;
+
+	/** The longest queue seen */
+	int max = 0;
+
+	/** The times the queued messages are done, in a ring buffer */
+	double[] done = null;
+
+	int head = 0, count = 0;
+
+	Link(double rate) { this.rate = rate; }
+
+	double time(int size) { return rate > 0 ? size / rate : 0; }
+
+	/**
+	 * Queues a message of the given size at time now, and returns the
+	 * time it is done.
+	 */
+	double enqueue(long now, int size)
+	{
+		bytes += size;
+		if (rate <= 0) return now;
+		final double t = size / rate;
+		free = Math.max(free, now) + t;
+		busy += t;
+		queue(now);
+		if (done == null) done = new double[4];
+		else if (count == done.length) {
+			final double[] d = new double[2 * count];
+			for (int i = 0; i < count; ++i)
+				d[i] = done[(head + i) & (count - 1)];
+			done = d;
+			head = 0;
+		}
+		done[(head + count++) & (done.length - 1)] = free;
+		if (count > max) max = count;
+		return free;
+	}
+
+	/** Removes the messages done by time now, and returns the rest */
+	int queue(long now)
+	{
+		while (count > 0 && done[head] <= now) {
+			head = (head + 1) & (done.length - 1);
+			--count;
+		}
+		return count;
+	}
+
+	double utilisation(long now)
+	{
+		if (rate <= 0 || now <= 0) return 0;
+		return (busy - Math.max(0, free - now)) / now;
+	}
+}
+
+//---------------------------------------------------------------------
+
+/** A message on its way to the downlink of its receiver */
+private static final class Arrival
+{
+	final Object msg;
+
+	final int pid;
+
+	final int size;
+
+	/** The time still to wait for the uplink of the sender */
+	long wait;
+
+	Arrival(Object msg, int pid, int size, long wait)
+	{
+		this.msg = msg;
+		this.pid = pid;
+		this.size = size;
+		this.wait = wait;
+	}
+}
+
+}
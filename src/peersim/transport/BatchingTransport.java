@@ -0,0 +1,237 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+
+package peersim.transport;
+
+import java.util.*;
+import peersim.config.*;
+import peersim.core.*;
+import peersim.edsim.*;
+import peersim.util.MetricsRegistry;
+
+
+/**
+ * This transport protocol coalesces the messages that a node sends to the
+ * same receiver in the same time unit: the first one is sent through the
+ * underlying transport as a batch, which becomes a single event, and the
+ * following ones are added to that batch. When the batch arrives, the
+ * messages are delivered in the order they were sent. Since the batch is a
+ * single message for the underlying transport, all its messages have the
+ * same latency, and they are dropped together by {@link UnreliableTransport}.
+ * <p>
+ * This protocol is also an {@link EDProtocol}, since the batches are
+ * delivered to it. The number of messages and of batches sent
+ * are counted in the {@link MetricsRegistry} of the experiment
+ * (<code>transport.batch.messages</code> and
+ * <code>transport.batch.events</code>, and the largest batch in gauge
+ * <code>transport.batch.max</code>), and they are printed on the standard
+ * error at the end of each experiment.
+ */
+public class BatchingTransport implements Transport, EDProtocol
+{
+
+//---------------------------------------------------------------------
+//Parameters
+//---------------------------------------------------------------------
+
+/**
+ * The name of the underlying transport protocol.
+ * @config
+ */
+private static final String PAR_TRANSPORT = "transport";
+
+//---------------------------------------------------------------------
+//Static fields
+//---------------------------------------------------------------------
+
+/** Name of the counter of the messages sent */
+public static final String MESSAGES = "transport.batch.messages";
+
+/** Name of the counter of the batches sent */
+public static final String EVENTS = "transport.batch.events";
+
+/** Name of the gauge of the largest batch */
+public static final String MAX = "transport.batch.max";
+
+/** Identifier of this transport protocol */
+private static int tid;
+
+/** Protocol identifier of the underlying transport protocol */
+private static int transport;
+
+private static MetricsRegistry.Counter messages, events;
+
+private static MetricsRegistry.Gauge max;
+
+static {
+	bind(MetricsRegistry.current());
+	MetricsRegistry.addListener(new MetricsRegistry.Listener() {
+		public void experimentStarted(MetricsRegistry registry)
+		{
+			bind(registry);
+		}
+		public void experimentEnded(MetricsRegistry registry)
+		{
+			if (messages.get() > 0)
+				System.err.println("BatchingTransport: " + messages.get() +
+					" messages in " + events.get() + " events, largest " +
+					max.get());
+		}
+	});
+}
+
+//---------------------------------------------------------------------
+//Fields
+//---------------------------------------------------------------------
+
+/** The time of the open batches */
+private long time = -1;
+
+/** The batches sent by this node at {@link #time}, by receiver */
+private HashMap<Node,Batch> open = null;
+
+//---------------------------------------------------------------------
+//Initialization
+//---------------------------------------------------------------------
+
+/**
+ * Reads configuration parameters.
+ */
+public BatchingTransport(String prefix)
+{
+	tid = CommonState.getPid();
+	transport = Configuration.getPid(prefix + "." + PAR_TRANSPORT);
+}
+
+//---------------------------------------------------------------------
+
+/**
+ * Clones the object, with no open batches.
+ */
+public Object clone()
+{
+	BatchingTransport bt=null;
+	try { bt=(BatchingTransport)super.clone(); }
+	catch( CloneNotSupportedException e ) {} // never happens
+	bt.time = -1;
+	bt.open = null;
+	return bt;
+}
+
+//---------------------------------------------------------------------
+
+private static void bind(MetricsRegistry registry)
+{
+	messages = registry.counter(MESSAGES);
+	events = registry.counter(EVENTS);
+	max = registry.gauge(MAX);
+}
+
+//---------------------------------------------------------------------
+//Methods inherited by Transport
+//---------------------------------------------------------------------
+
+/**
+ * Adds the message to the batch this node sent to the receiver in the
+ * current time unit, if it has not been delivered yet, otherwise sends a
+ * new batch through the underlying transport.
+ */
+public void send(Node src, Node dest, Object msg, int pid)
+{
+	final BatchingTransport sender = (BatchingTransport) src.getProtocol(tid);
+	final long now = CommonState.getTime();
+	if (sender.time != now) {
+		sender.time = now;
+		if (sender.open == null) sender.open = new HashMap<Node,Batch>();
+		else sender.open.clear();
+	}
+	messages.increment();
+	Batch b = sender.open.get(dest);
+	if (b != null && !b.delivered) {
+		b.add(msg, pid);
+		max.max(b.size);
+		return;
+	}
+	b = new Batch(msg, pid);
+	sender.open.put(dest, b);
+	events.increment();
+	max.max(1);
+	((Transport) src.getProtocol(transport)).send(src, dest, b, tid);
+}
+
+//---------------------------------------------------------------------
+
+/** Returns the latency of the underlying protocol. */
+public long getLatency(Node src, Node dest)
+{
+	return ((Transport) src.getProtocol(transport)).getLatency(src, dest);
+}
+
+//---------------------------------------------------------------------
+//Methods inherited by EDProtocol
+//---------------------------------------------------------------------
+
+/**
+ * Delivers the messages of a batch to their protocols, in order.
+ */
+public void processEvent(Node node, int pid, Object event)
+{
+	final Batch b = (Batch) event;
+	b.delivered = true;
+	for (int i = 0; i < b.size && node.isUp(); ++i) {
+		CommonState.setPid(b.pids[i]);
+		((EDProtocol) node.getProtocol(b.pids[i])).processEvent(node,
+			b.pids[i], b.msgs[i]);
+	}
+	CommonState.setPid(pid);
+}
+
+//---------------------------------------------------------------------
+//Inner classes
+//---------------------------------------------------------------------
+
+/** The messages sent to one receiver in one time unit */
+private static final class Batch
+{
+	Object[] msgs;
+
+	int[] pids;
+
+	int size = 1;
+
+	boolean delivered = false;
+
+	Batch(Object msg, int pid)
+	{
+		msgs = new Object[] { msg };
+		pids = new int[] { pid };
+	}
+
+	void add(Object msg, int pid)
+	{
+		if (size == msgs.length) {
+			msgs = Arrays.copyOf(msgs, 2 * size);
+			pids = Arrays.copyOf(pids, 2 * size);
+		}
+		msgs[size] = msg;
+		pids[size++] = pid;
+	}
+}
+
+}
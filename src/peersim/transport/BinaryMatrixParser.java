@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+
+package peersim.transport;
+
+import java.io.*;
+import java.nio.file.NoSuchFileException;
+import peersim.config.*;
+import peersim.core.Control;
+
+/**
+ * Initializes static singleton {@link E2ENetwork} by mapping a binary
+ * latency matrix into memory (see {@link E2ENetwork} for the format).
+ * The matrix is not read at startup and it takes no heap; the operating
+ * system loads the pages that are used, and shares them among the
+ * simulations that map the same file.
+ * A binary matrix can be produced from the other formats once with
+ * {@link BinaryMatrixWriter}.
+ */
+public class BinaryMatrixParser implements Control
+{
+
+// ---------------------------------------------------------------------
+// Parameters
+// ---------------------------------------------------------------------
+
+/**
+ * The file containing the binary latency matrix.
+ * @config
+ */
+private static final String PAR_FILE = "file";
+
+// ---------------------------------------------------------------------
+// Fields
+// ---------------------------------------------------------------------
+
+/** Name of the file containing the matrix. */
+private final String filename;
+
+/** Prefix for reading parameters */
+private final String prefix;
+
+// ---------------------------------------------------------------------
+// Initialization
+// ---------------------------------------------------------------------
+
+/**
+ * Read the configuration parameters.
+ */
+public BinaryMatrixParser(String prefix)
+{
+	this.prefix = prefix;
+	filename = Configuration.getString(prefix + "." + PAR_FILE);
+}
+
+// ---------------------------------------------------------------------
+// Methods
+// ---------------------------------------------------------------------
+
+/**
+ * Maps the matrix into {@link E2ENetwork}.
+ * @return always false
+ */
+public boolean execute()
+{
+	try {
+		E2ENetwork.map(filename);
+	} catch (NoSuchFileException e) {
+		throw new IllegalParameterException(prefix + "." + PAR_FILE,
+			filename + " does not exist");
+	} catch (IOException e) {
+		throw new IllegalParameterException(prefix + "." + PAR_FILE,
+			e.getMessage());
+	}
+	System.err.println("BinaryMatrixParser: mapped " +
+		E2ENetwork.getSize() + " routers");
+	return false;
+}
+
+}
+
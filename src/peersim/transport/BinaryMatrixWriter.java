@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+
+package peersim.transport;
+
+import java.io.*;
+import peersim.config.*;
+import peersim.core.Control;
+
+/**
+ * Writes the latencies of static singleton {@link E2ENetwork} to a binary
+ * latency matrix, which can be mapped by {@link BinaryMatrixParser}.
+ * It is meant to convert a data set once, after the parser that reads it.
+ * For example, the following configuration converts a king data set:
+ * <pre>
+ * network.size 0
+ * simulation.cycles 0
+ * init.0 peersim.transport.KingParser
+ * init.0.file king.txt
+ * init.1 peersim.transport.BinaryMatrixWriter
+ * init.1.file king.lat
+ * init.1.bits 16
+ * </pre>
+ */
+public class BinaryMatrixWriter implements Control
+{
+
+// ---------------------------------------------------------------------
+// Parameters
+// ---------------------------------------------------------------------
+
+/**
+ * The file to write.
+ * @config
+ */
+private static final String PAR_FILE = "file";
+
+/**
+ * The bits per entry, 16 or 32. With 16 bits the latencies are stored
+ * as multiples of {@value #PAR_QUANTUM}, which halves the size of the
+ * file. Defaults to 32.
+ * @config
+ */
+private static final String PAR_BITS = "bits";
+
+/**
+ * The latency unit of 16 bit entries. Defaults to the smallest one that
+ * fits the largest latency into 16 bits.
+ * @config
+ */
+private static final String PAR_QUANTUM = "quantum";
+
+// ---------------------------------------------------------------------
+// Fields
+// ---------------------------------------------------------------------
+
+/** Name of the file to write. */
+private final String filename;
+
+/** Bytes per entry */
+private final int width;
+
+/** Read from {@value #PAR_QUANTUM}, 0 if not given */
+private final int quantum;
+
+/** Prefix for reading parameters */
+private final String prefix;
+
+// ---------------------------------------------------------------------
+// Initialization
+// ---------------------------------------------------------------------
+
+/**
+ * Read the configuration parameters.
+ */
+public BinaryMatrixWriter(String prefix)
+{
+	this.prefix = prefix;
+	filename = Configuration.getString(prefix + "." + PAR_FILE);
+	final int bits = Configuration.getInt(prefix + "." + PAR_BITS, 32);
+	if (bits != 16 && bits != 32)
+		throw new IllegalParameterException(prefix + "." + PAR_BITS,
+			"Must be 16 or 32");
+	width = bits/8;
+	quantum = Configuration.getInt(prefix + "." + PAR_QUANTUM, 0);
+	if (quantum < 0)
+		throw new IllegalParameterException(prefix + "." + PAR_QUANTUM,
+			"Must be positive");
+}
+
+// ---------------------------------------------------------------------
+// Methods
+// ---------------------------------------------------------------------
+
+/**
+ * Writes the matrix.
+ * @return always false
+ */
+public boolean execute()
+{
+	try {
+		E2ENetwork.save(filename, width, quantum);
+	} catch (IOException e) {
+		throw new IllegalParameterException(prefix + "." + PAR_FILE,
+			e.getMessage());
+	}
+	System.err.println("BinaryMatrixWriter: wrote " +
+		E2ENetwork.getSize() + " routers to " + filename);
+	return false;
+}
+
+}
+
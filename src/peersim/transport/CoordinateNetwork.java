@@ -0,0 +1,233 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+
+package peersim.transport;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * This static singleton emulates an underlying router network with
+ * network coordinates: each router has a point in a low dimensional
+ * Euclidean space and a height, and the latency between two routers is
+ * the distance of their points plus their heights (the height models the
+ * access link, which every path of the router has to cross).
+ * It takes memory linear in the number of routers, unlike the latency
+ * matrix of {@link E2ENetwork}. The coordinates can be fitted to a
+ * latency matrix by {@link VivaldiFitter}, read from a file by
+ * {@link CoordinateParser}, or generated by {@link SyntheticCoordinates}.
+ * <p>
+ * The coordinate file is a text file with one line per router, holding its
+ * coordinates and its height separated by spaces; lines starting with #
+ * are ignored.
+ */
+public class CoordinateNetwork
+{
+
+//---------------------------------------------------------------------
+//Fields
+//---------------------------------------------------------------------
+
+/**
+ * Size of the router network.
+ */
+private static int size;
+
+/**
+ * Number of coordinates of a router.
+ */
+private static int dim;
+
+/**
+ * The coordinates and then the height of each router,
+ * dim+1 values per router.
+ */
+private static double[] coord = new double[0];
+
+//---------------------------------------------------------------------
+//Initialization
+//---------------------------------------------------------------------
+
+/** Disable instance construction */
+private CoordinateNetwork() {}
+
+//---------------------------------------------------------------------
+//Methods
+//---------------------------------------------------------------------
+
+/**
+ * Resets the network. Initially all the routers are at the origin, with
+ * height 0.
+ * @param size the number or routers
+ * @param dim the number of coordinates of a router
+ */
+public static void reset(int size, int dim)
+{
+	CoordinateNetwork.size = size;
+	CoordinateNetwork.dim = dim;
+	coord = new double[size*(dim+1)];
+}
+
+//---------------------------------------------------------------------
+
+/**
+ * Returns the latency between the specified routers, the distance of
+ * their points plus their heights, rounded. It is 0 if the two are the
+ * same. Routers are indexed from 0.
+ *
+ * @param sender the index of the sender
+ * @param receiver the index of the receiver
+ */
+public static int getLatency(int sender, int receiver)
+{
+	if (sender == receiver)
+		return 0;
+	return (int) Math.round(distance(sender, receiver));
+}
+
+//---------------------------------------------------------------------
+
+/**
+ * Returns the latency between the specified routers, the distance of
+ * their points plus their heights, without rounding. Routers are
+ * indexed from 0.
+ *
+ * @param i the index of a router
+ * @param j the index of another router
+ */
+public static double distance(int i, int j)
+{
+	final int a = i*(dim+1), b = j*(dim+1);
+	double sum = 0;
+	for (int k = 0; k < dim; ++k) {
+		final double d = coord[a+k] - coord[b+k];
+		sum += d*d;
+	}
+	return Math.sqrt(sum) + coord[a+dim] + coord[b+dim];
+}
+
+//---------------------------------------------------------------------
+
+/**
+ * Returns coordinate k of router i, or its height if k is the number of
+ * dimensions.
+ */
+public static double getCoordinate(int i, int k)
+{
+	return coord[i*(dim+1)+k];
+}
+
+//---------------------------------------------------------------------
+
+/**
+ * Sets coordinate k of router i, or its height if k is the number of
+ * dimensions.
+ */
+public static void setCoordinate(int i, int k, double value)
+{
+	coord[i*(dim+1)+k] = value;
+}
+
+//---------------------------------------------------------------------
+
+/**
+ * Returns the current size of the underlying network (i.e., the number of
+ * routers).
+ */
+public static int getSize()
+{
+	return size;
+}
+
+//---------------------------------------------------------------------
+
+/**
+ * Returns the number of coordinates of a router, not counting the height.
+ */
+public static int getDimensions()
+{
+	return dim;
+}
+
+//---------------------------------------------------------------------
+
+/**
+ * Writes the coordinates to the given file (see the class description).
+ * @throws IOException if the file cannot be written
+ */
+public static void save(String filename) throws IOException
+{
+	try (PrintWriter out = new PrintWriter(new BufferedWriter(
+			new FileWriter(filename)))) {
+		out.println("# " + size + " routers, " + dim +
+			" coordinates and height");
+		for (int i = 0; i < size; ++i) {
+			final StringBuilder line = new StringBuilder();
+			for (int k = 0; k <= dim; ++k) {
+				if (k > 0) line.append(' ');
+				line.append(coord[i*(dim+1)+k]);
+			}
+			out.println(line);
+		}
+		if (out.checkError())
+			throw new IOException("Cannot write " + filename);
+	}
+}
+
+//---------------------------------------------------------------------
+
+/**
+ * Replaces the network with the coordinates read from the given file
+ * (see the class description).
+ * @throws IOException if the file cannot be read or it is malformed
+ */
+public static void load(String filename) throws IOException
+{
+	final ArrayList<double[]> rows = new ArrayList<double[]>();
+	try (BufferedReader in = new BufferedReader(new FileReader(filename))) {
+		String line;
+		int lc = 0;
+		while ((line = in.readLine()) != null) {
+			++lc;
+			line = line.trim();
+			if (line.isEmpty() || line.startsWith("#")) continue;
+			final String[] tok = line.split("\\s+");
+			if (!rows.isEmpty() && tok.length != rows.get(0).length)
+				throw new IOException(filename + ", line " + lc +
+				": expected " + rows.get(0).length + " values");
+			final double[] r = new double[tok.length];
+			try {
+				for (int k = 0; k < tok.length; ++k)
+					r[k] = Double.parseDouble(tok[k]);
+			} catch (NumberFormatException e) {
+				throw new IOException(filename + ", line " + lc +
+				": " + e.getMessage());
+			}
+			rows.add(r);
+		}
+	}
+	if (rows.isEmpty())
+		throw new IOException(filename + " contains no routers");
+	reset(rows.size(), rows.get(0).length-1);
+	for (int i = 0; i < size; ++i)
+		System.arraycopy(rows.get(i), 0, coord, i*(dim+1), dim+1);
+}
+
+}
+
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+
+package peersim.transport;
+
+import java.io.*;
+import java.nio.file.NoSuchFileException;
+import peersim.config.*;
+import peersim.core.Control;
+
+/**
+ * Initializes static singleton {@link CoordinateNetwork} by reading a
+ * coordinate file (see {@link CoordinateNetwork} for the format), usually
+ * written by {@link VivaldiFitter}.
+ */
+public class CoordinateParser implements Control
+{
+
+// ---------------------------------------------------------------------
+// Parameters
+// ---------------------------------------------------------------------
+
+/**
+ * The file containing the coordinates.
+ * @config
+ */
+private static final String PAR_FILE = "file";
+
+// ---------------------------------------------------------------------
+// Fields
+// ---------------------------------------------------------------------
+
+/** Name of the file containing the coordinates. */
+private final String filename;
+
+/** Prefix for reading parameters */
+private final String prefix;
+
+// ---------------------------------------------------------------------
+// Initialization
+// ---------------------------------------------------------------------
+
+/**
+ * Read the configuration parameters.
+ */
+public CoordinateParser(String prefix)
+{
+	this.prefix = prefix;
+	filename = Configuration.getString(prefix + "." + PAR_FILE);
+}
+
+// ---------------------------------------------------------------------
+// Methods
+// ---------------------------------------------------------------------
+
+/**
+ * Reads the coordinates into {@link CoordinateNetwork}.
+ * @return always false
+ */
+public boolean execute()
+{
+	try {
+		CoordinateNetwork.load(filename);
+	} catch (FileNotFoundException | NoSuchFileException e) {
+		throw new IllegalParameterException(prefix + "." + PAR_FILE,
+			filename + " does not exist");
+	} catch (IOException e) {
+		throw new IllegalParameterException(prefix + "." + PAR_FILE,
+			e.getMessage());
+	}
+	System.err.println("CoordinateParser: read " +
+		CoordinateNetwork.getSize() + " routers in " +
+		CoordinateNetwork.getDimensions() + " dimensions");
+	return false;
+}
+
+}
@@ -18,11 +18,29 @@
 
 package peersim.transport;
 
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
 
 /**
  * This static singleton emulates an underlying router network
  * of fixed size, and stores the latency measurements for all pairs
  * of routers.
+ * <p>
+ * The latencies are either in a heap array, created by {@link #reset} and
+ * filled by {@link #setLatency}, or in a binary file mapped into memory
+ * read-only by {@link #map}. A file is written by {@link #save}.
+ * It starts with a header of {@value #HEADER} bytes, all ints: "PSLM"
+ * ({@link #MAGIC}), the format version (1), the number of routers, 1 if
+ * latency is symmetric (else 0), the bytes per entry (2 or 4), the
+ * quantum, and two zeros. The entries follow in the order of the rows of the
+ * matrix: if latency is symmetric, row i holds the latencies from router
+ * i to routers 0,...,i-1, otherwise to all the routers. 4 byte entries
+ * are the latencies, 2 byte entries are the latencies divided by the
+ * quantum, as unsigned short. All values are big endian.
+ * A mapped matrix takes no heap, and it is loaded by the operating system
+ * page by page when it is used.
  *
  * @author Alberto Montresor
  * @version $Revision: 1.6 $
@@ -48,6 +66,24 @@ private static int size;
  * Latency distances between nodes.
  */
 private static int[][] array;
+
+/** First int of a binary latency matrix */
+public static final int MAGIC = 0x50534C4D;
+
+/** Length of the header of a binary latency matrix in bytes */
+public static final int HEADER = 32;
+
+/** Mapped parts of the entries of a binary latency matrix */
+private static ByteBuffer[] mapped;
+
+/** Bytes in a mapped part; a multiple of 4, so no entry is split */
+private static final int PARTBITS = 30, PART = 1 << PARTBITS;
+
+/** Bytes per entry of the mapped matrix */
+private static int width;
+
+/** Latency of a unit of a mapped entry */
+private static int quantum;
 	
 //---------------------------------------------------------------------
 //Initialization
@@ -71,6 +107,7 @@ public static void reset(int size, boolean symm)
 {
 	E2ENetwork.symm = symm;
 	E2ENetwork.size = size;
+	mapped = null;
 	array = new int[size][];
 	for (int i=0; i < size; i++) {
 		if (symm)
@@ -104,6 +141,16 @@ public static int getLatency(int sender, int receiver)
 			receiver = tmp;
 		}
 	} 
+	if (mapped != null) {
+		final long i = (symm ? (long)sender*(sender-1)/2 :
+			(long)sender*size) + receiver;
+		final long pos = i*width;
+		final ByteBuffer b = mapped[(int)(pos >>> PARTBITS)];
+		final int off = (int)pos & (PART-1);
+		if (width == 2)
+			return (b.getShort(off) & 0xffff)*quantum;
+		return b.getInt(off);
+	}
 	return array[sender][receiver];
 }
 
@@ -116,9 +163,13 @@ public static int getLatency(int sender, int receiver)
  * @param sender the index of the sender
  * @param receiver the index of the receiver
  * @param latency the latency to be set
+ * @throws UnsupportedOperationException if the matrix is mapped
  */
 public static void setLatency(int sender, int receiver, int latency) 
 {
+	if (mapped != null)
+		throw new UnsupportedOperationException(
+		"The latency matrix is mapped read-only");
 	if (symm) {
 		// Symmetric network
 		if (sender < receiver) {
@@ -141,4 +192,108 @@ public static int getSize()
 	return size;
 }
 
+//---------------------------------------------------------------------
+
+/**
+ * Replaces the network with the binary latency matrix in the given file
+ * (see the class description), mapped read-only into memory.
+ * @param filename the file
+ * @throws IOException if the file cannot be read or it is not a
+ * binary latency matrix
+ */
+public static void map(String filename) throws IOException
+{
+	try (FileChannel ch = FileChannel.open(Paths.get(filename),
+			StandardOpenOption.READ)) {
+		final ByteBuffer h = ByteBuffer.allocate(HEADER);
+		while (h.hasRemaining() && ch.read(h) >= 0);
+		h.flip();
+		if (h.remaining() < HEADER || h.getInt() != MAGIC ||
+				h.getInt() != 1)
+			throw new IOException(filename +
+			" is not a binary latency matrix");
+		final int size = h.getInt();
+		final boolean symm = (h.getInt() != 0);
+		final int width = h.getInt();
+		final int quantum = h.getInt();
+		if (size < 0 || (width != 2 && width != 4) || quantum < 1)
+			throw new IOException(filename + ": invalid header");
+		final long bytes = entries(size, symm)*width;
+		if (ch.size() < HEADER + bytes)
+			throw new IOException(filename + " is truncated");
+		final ByteBuffer[] parts =
+			new ByteBuffer[(int)((bytes+PART-1)/PART)];
+		for (int i = 0; i < parts.length; ++i) {
+			final long from = (long)i*PART;
+			parts[i] = ch.map(FileChannel.MapMode.READ_ONLY,
+				HEADER + from, Math.min(PART, bytes - from));
+		}
+		E2ENetwork.size = size;
+		E2ENetwork.symm = symm;
+		E2ENetwork.width = width;
+		E2ENetwork.quantum = quantum;
+		E2ENetwork.array = null;
+		E2ENetwork.mapped = parts;
+	}
+}
+
+//---------------------------------------------------------------------
+
+/**
+ * Writes the current network to the given file as a binary latency matrix
+ * (see the class description).
+ * With 4 bytes per entry the latencies are stored as they are. With 2 bytes
+ * per entry they are divided by the quantum and rounded; latencies
+ * above 65535 quanta are stored as 65535 quanta.
+ * @param filename the file
+ * @param width the bytes per entry, 2 or 4
+ * @param quantum the unit of 2 byte entries; if 0, the smallest one that
+ * fits the largest latency. Ignored with 4 byte entries.
+ * @throws IOException if the file cannot be written
+ */
+public static void save(String filename, int width, int quantum)
+throws IOException
+{
+	if (width != 2 && width != 4)
+		throw new IllegalArgumentException("Entries are 2 or 4 bytes");
+	if (width == 4) quantum = 1;
+	else if (quantum <= 0) {
+		int max = 0;
+		for (int i = 0; i < size; ++i)
+		for (int j = 0; j < (symm ? i : size); ++j)
+			max = Math.max(max, getLatency(i, j));
+		quantum = Math.max(1, (max + 65534)/65535);
+	}
+
+	try (FileChannel ch = FileChannel.open(Paths.get(filename),
+			StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+			StandardOpenOption.TRUNCATE_EXISTING)) {
+		final ByteBuffer b = ByteBuffer.allocate(1 << 16);
+		b.putInt(MAGIC).putInt(1).putInt(size).putInt(symm ? 1 : 0);
+		b.putInt(width).putInt(quantum).putLong(0);
+		for (int i = 0; i < size; ++i)
+		for (int j = 0; j < (symm ? i : size); ++j) {
+			if (b.remaining() < 4) {
+				b.flip();
+				while (b.hasRemaining()) ch.write(b);
+				b.clear();
+			}
+			final int lat = getLatency(i, j);
+			if (width == 4) b.putInt(lat);
+			else b.putShort((short)Math.min(65535,
+				Math.max(0, (lat + quantum/2)/quantum)));
+		}
+		b.flip();
+		while (b.hasRemaining()) ch.write(b);
+	}
+}
+
+//---------------------------------------------------------------------
+
+/** Number of entries of a matrix */
+private static long entries(int size, boolean symm)
+{
+	return (symm ? (long)size*(size-1)/2 : (long)size*size);
+}
+
 }
@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+
+package peersim.transport;
+
+import peersim.config.*;
+import peersim.core.*;
+import peersim.edsim.*;
+import peersim.util.*;
+
+
+/**
+ * Implement a transport layer that reliably delivers messages with a random
+ * delay, drawn from a configurable {@link Distribution}: for instance
+ * {@link LogNormalDistribution}, {@link ParetoDistribution}, or
+ * {@link EmpiricalDistribution} for a CDF measured on a real network. The
+ * value drawn is rounded and added to {@value #PAR_MINDELAY}, and the result
+ * is at most {@value #PAR_MAXDELAY}. For example:
+ * <pre>
+ * protocol.tr peersim.transport.RandomDelayTransport
+ * protocol.tr.mindelay 10
+ * protocol.tr.distribution peersim.util.ParetoDistribution
+ * protocol.tr.distribution.scale 20
+ * protocol.tr.distribution.shape 1.5
+ * </pre>
+ * Like {@link UniformRandomTransport}, a single instance is shared by all
+ * the nodes.
+ */
+public final class RandomDelayTransport implements Transport
+{
+
+//---------------------------------------------------------------------
+//Parameters
+//---------------------------------------------------------------------
+
+/**
+ * The class of the {@link Distribution} of the delays. Its parameters are
+ * read with this parameter as prefix.
+ * @config
+ */
+private static final String PAR_DISTRIBUTION = "distribution";
+
+/**
+ * The minimum latency, added to the values drawn. Defaults to 0.
+ * @config
+ */
+private static final String PAR_MINDELAY = "mindelay";
+
+/**
+ * The maximum latency; larger delays are cut to this. Defaults to no limit.
+ * @config
+ */
+private static final String PAR_MAXDELAY = "maxdelay";
+
+//---------------------------------------------------------------------
+//Fields
+//---------------------------------------------------------------------
+
+/** The distribution of the delays */
+private final Distribution dist;
+
+/** Minimum delay for message sending */
+private final long min;
+
+/** Maximum delay for message sending */
+private final long max;
+
+//---------------------------------------------------------------------
+//Initialization
+//---------------------------------------------------------------------
+
+/**
+ * Reads configuration parameter.
+ */
+public RandomDelayTransport(String prefix)
+{
+	min = Configuration.getLong(prefix + "." + PAR_MINDELAY, 0);
+	max = Configuration.getLong(prefix + "." + PAR_MAXDELAY, Long.MAX_VALUE);
+	if (max < min)
+		throw new IllegalParameterException(prefix+"."+PAR_MAXDELAY,
+		"The maximum latency cannot be smaller than the minimum latency");
+	Object d = Configuration.getInstance(prefix + "." + PAR_DISTRIBUTION);
+	if (!(d instanceof Distribution))
+		throw new IllegalParameterException(prefix+"."+PAR_DISTRIBUTION,
+		d.getClass().getName() + " does not implement Distribution");
+	dist = (Distribution) d;
+}
+
+//---------------------------------------------------------------------
+
+/**
+* Returns <code>this</code>. This way only one instance exists in the system
+* that is linked from all the nodes. This is because this protocol has no
+* node specific state.
+*/
+public Object clone()
+{
+	return this;
+}
+
+//---------------------------------------------------------------------
+//Methods
+//---------------------------------------------------------------------
+
+/**
+ * Delivers the message with a random delay, drawn as described in the
+ * class description.
+*/
+public void send(Node src, Node dest, Object msg, int pid)
+{
+	EDSimulator.add(getLatency(src, dest), msg, dest, pid);
+}
+
+/**
+ * Returns a random delay, drawn as described in the class description.
+*/
+public long getLatency(Node src, Node dest)
+{
+	final double d = dist.next(CommonState.r);
+	// also catches NaN and values beyond the range of long
+	if (!(d > 0)) return min;
+	if (d >= max - min) return max;
+	return Math.min(max, min + Math.round(d));
+}
+
+//---------------------------------------------------------------------
+
+/**
+ * Returns the minimum delay this transport can produce. This is the
+ * lookahead the parallel event driven engine can rely on.
+ */
+public long getMinLatency()
+{
+	return min;
+}
+
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+
+package peersim.transport;
+
+import peersim.config.*;
+import peersim.core.*;
+
+/**
+ * Initializes static singleton {@link CoordinateNetwork} with synthetic
+ * coordinates: the points of the routers are uniformly random in a cube,
+ * and their heights are exponentially distributed. It needs no data set,
+ * and the memory taken is linear in the number of routers.
+ */
+public class SyntheticCoordinates implements Control
+{
+
+// ---------------------------------------------------------------------
+// Parameters
+// ---------------------------------------------------------------------
+
+/**
+ * The number of routers. Defaults to the network size.
+ * @config
+ */
+private static final String PAR_ROUTERS = "routers";
+
+/**
+ * The number of coordinates of a router, not counting the height.
+ * Defaults to 2.
+ * @config
+ */
+private static final String PAR_DIM = "dim";
+
+/**
+ * The side of the cube, in latency units. Defaults to 100.
+ * @config
+ */
+private static final String PAR_SIDE = "side";
+
+/**
+ * The mean height of a router, in latency units. Defaults to 0 (no
+ * heights).
+ * @config
+ */
+private static final String PAR_HEIGHT = "height";
+
+// ---------------------------------------------------------------------
+// Fields
+// ---------------------------------------------------------------------
+
+private final int routers;
+
+private final int dim;
+
+private final double side;
+
+private final double height;
+
+// ---------------------------------------------------------------------
+// Initialization
+// ---------------------------------------------------------------------
+
+/**
+ * Read the configuration parameters.
+ */
+public SyntheticCoordinates(String prefix)
+{
+	routers = Configuration.getInt(prefix + "." + PAR_ROUTERS,
+		Network.size());
+	dim = Configuration.getInt(prefix + "." + PAR_DIM, 2);
+	side = Configuration.getDouble(prefix + "." + PAR_SIDE, 100);
+	height = Configuration.getDouble(prefix + "." + PAR_HEIGHT, 0);
+	if (dim < 1)
+		throw new IllegalParameterException(prefix + "." + PAR_DIM,
+			"must be at least 1");
+}
+
+// ---------------------------------------------------------------------
+// Methods
+// ---------------------------------------------------------------------
+
+/**
+ * Generates the coordinates.
+ * @return always false
+ */
+public boolean execute()
+{
+	CoordinateNetwork.reset(routers, dim);
+	for (int i = 0; i < routers; ++i) {
+		for (int k = 0; k < dim; ++k)
+			CoordinateNetwork.setCoordinate(i, k,
+				side * CommonState.r.nextDouble());
+		if (height > 0)
+			CoordinateNetwork.setCoordinate(i, dim,
+				-height * Math.log(1 - CommonState.r.nextDouble()));
+	}
+	return false;
+}
+
+}
@@ -119,5 +119,16 @@ public long getLatency(Node src, Node dest)
 	return (range==1?min:min + CommonState.r.nextLong(range));
 }
 
+//---------------------------------------------------------------------
+
+/**
+ * Returns the minimum delay this transport can produce. This is the
+ * lookahead the parallel event driven engine can rely on.
+ */
+public long getMinLatency()
+{
+	return min;
+}
+
 
 }
@@ -0,0 +1,276 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+
+package peersim.transport;
+
+import java.io.*;
+import java.util.*;
+import peersim.config.*;
+import peersim.core.*;
+
+/**
+ * Fits the coordinates of static singleton {@link CoordinateNetwork} to
+ * the latencies of static singleton {@link E2ENetwork}, with the
+ * centralized version of the Vivaldi algorithm with heights.
+ * Each router starts at a random point; in every round each router takes
+ * a few random other routers, and for each of them it moves along the
+ * line joining them (and changes its height) by a fraction of the
+ * difference between the measured and the predicted latency, as if the two
+ * were joined by a spring. The fraction decreases geometrically over the
+ * rounds. Pairs with latency 0 (missing measurements) are ignored.
+ * <p>
+ * After fitting it prints the relative error |predicted-measured|/measured
+ * over random pairs of routers: its median, 90th percentile and mean.
+ * The coordinates can be written to a file, so that the fitting is done
+ * once. For example, the following configuration fits a king data set:
+ * <pre>
+ * network.size 0
+ * simulation.cycles 0
+ * init.0 peersim.transport.KingParser
+ * init.0.file king.txt
+ * init.1 peersim.transport.VivaldiFitter
+ * init.1.dim 3
+ * init.1.file king.coord
+ * </pre>
+ * and the simulations then read king.coord with {@link CoordinateParser}.
+ * The source matrix is not released, it can be reset by the caller.
+ */
+public class VivaldiFitter implements Control
+{
+
+// ---------------------------------------------------------------------
+// Parameters
+// ---------------------------------------------------------------------
+
+/**
+ * The number of coordinates of a router, not counting the height.
+ * Defaults to 2.
+ * @config
+ */
+private static final String PAR_DIM = "dim";
+
+/**
+ * The number of rounds. Defaults to 100.
+ * @config
+ */
+private static final String PAR_ROUNDS = "rounds";
+
+/**
+ * The number of routers each router moves towards (or away from) in
+ * each round. Defaults to 16.
+ * @config
+ */
+private static final String PAR_NEIGHBOURS = "neighbours";
+
+/**
+ * The number of random pairs of routers over which the fitting error is
+ * reported. Defaults to 100000; if 0, no report is printed.
+ * @config
+ */
+private static final String PAR_SAMPLES = "samples";
+
+/**
+ * The file the coordinates are written to. If not given, they are not
+ * written.
+ * @config
+ */
+private static final String PAR_FILE = "file";
+
+/** The fraction of the error corrected in the first round */
+private static final double DELTA_MAX = 0.5;
+
+/** The fraction of the error corrected in the last round */
+private static final double DELTA_MIN = 0.005;
+
+/** Attempts to find a pair with a measured latency */
+private static final int ATTEMPTS = 16;
+
+// ---------------------------------------------------------------------
+// Fields
+// ---------------------------------------------------------------------
+
+private final int dim;
+
+private final int rounds;
+
+private final int neighbours;
+
+private final int samples;
+
+/** Name of the file to write, or null. */
+private final String filename;
+
+/** Prefix for reading parameters */
+private final String prefix;
+
+// ---------------------------------------------------------------------
+// Initialization
+// ---------------------------------------------------------------------
+
+/**
+ * Read the configuration parameters.
+ */
+public VivaldiFitter(String prefix)
+{
+	this.prefix = prefix;
+	dim = Configuration.getInt(prefix + "." + PAR_DIM, 2);
+	rounds = Configuration.getInt(prefix + "." + PAR_ROUNDS, 100);
+	neighbours = Configuration.getInt(prefix + "." + PAR_NEIGHBOURS, 16);
+	samples = Configuration.getInt(prefix + "." + PAR_SAMPLES, 100000);
+	filename = Configuration.getString(prefix + "." + PAR_FILE, null);
+	if (dim < 1)
+		throw new IllegalParameterException(prefix + "." + PAR_DIM,
+			"must be at least 1");
+}
+
+// ---------------------------------------------------------------------
+// Methods
+// ---------------------------------------------------------------------
+
+/**
+ * Fits {@link CoordinateNetwork} to {@link E2ENetwork}, prints the
+ * fitting error and writes the coordinates if a file is given.
+ * @return always false
+ */
+public boolean execute()
+{
+	final int size = E2ENetwork.getSize();
+	if (size < 2)
+		throw new IllegalStateException(
+			"VivaldiFitter: E2ENetwork has fewer than 2 routers");
+	final Random r = CommonState.r;
+
+	// the scale of the start positions and heights
+	double sum = 0;
+	int n = 0;
+	for (int s = 0; s < 1000; ++s) {
+		final int lat = measured(r.nextInt(size), r.nextInt(size));
+		if (lat > 0) { sum += lat; ++n; }
+	}
+	final double scale = (n == 0 ? 1 : sum/n);
+	CoordinateNetwork.reset(size, dim);
+	for (int i = 0; i < size; ++i) {
+		for (int k = 0; k < dim; ++k)
+			CoordinateNetwork.setCoordinate(i, k, (r.nextDouble()-0.5)*scale);
+		// heights must start positive to change at all
+		CoordinateNetwork.setCoordinate(i, dim, 0.1*scale*r.nextDouble());
+	}
+
+	final double[] v = new double[dim];
+	for (int t = 0; t < rounds; ++t) {
+		final double delta = DELTA_MAX * Math.pow(DELTA_MIN/DELTA_MAX,
+			rounds == 1 ? 1 : (double) t/(rounds-1));
+		for (int i = 0; i < size; ++i)
+			for (int c = 0; c < neighbours; ++c) {
+				int j = -1, lat = 0;
+				for (int a = 0; a < ATTEMPTS && lat <= 0; ++a) {
+					j = r.nextInt(size);
+					if (j != i) lat = measured(i, j);
+				}
+				if (lat > 0) move(i, j, lat, delta, v, r);
+			}
+	}
+
+	if (samples > 0) report(r);
+	if (filename != null) {
+		try {
+			CoordinateNetwork.save(filename);
+		} catch (IOException e) {
+			throw new IllegalParameterException(prefix + "." + PAR_FILE,
+				e.getMessage());
+		}
+	}
+	return false;
+}
+
+// ---------------------------------------------------------------------
+
+/**
+ * The measured latency between two routers, 0 if it is missing
+ * or they are the same.
+ */
+private static int measured(int i, int j)
+{
+	return (i == j ? 0 : E2ENetwork.getLatency(i, j));
+}
+
+// ---------------------------------------------------------------------
+
+/**
+ * Moves router i by delta times the error of its latency to router j.
+ * The predicted latency is the length of the vector [x_i-x_j, h_i+h_j],
+ * with the norm that adds the heights, and i moves along that vector.
+ */
+private void move(int i, int j, int lat, double delta, double[] v, Random r)
+{
+	double norm = 0;
+	for (int k = 0; k < dim; ++k) {
+		v[k] = CoordinateNetwork.getCoordinate(i, k) -
+			CoordinateNetwork.getCoordinate(j, k);
+		norm += v[k]*v[k];
+	}
+	norm = Math.sqrt(norm);
+	if (norm == 0) {
+		// the two are at the same point, any direction will do
+		for (int k = 0; k < dim; ++k) {
+			v[k] = r.nextGaussian();
+			norm += v[k]*v[k];
+		}
+		norm = Math.sqrt(norm);
+		for (int k = 0; k < dim; ++k) v[k] *= 1e-6*lat/norm;
+		norm = 1e-6*lat;
+	}
+	final double h = CoordinateNetwork.getCoordinate(i, dim) +
+		CoordinateNetwork.getCoordinate(j, dim);
+	final double predicted = norm + h;
+	final double f = delta * (lat - predicted) / predicted;
+	for (int k = 0; k < dim; ++k)
+		CoordinateNetwork.setCoordinate(i, k,
+			CoordinateNetwork.getCoordinate(i, k) + f*v[k]);
+	CoordinateNetwork.setCoordinate(i, dim, Math.max(0,
+		CoordinateNetwork.getCoordinate(i, dim) + f*h));
+}
+
+// ---------------------------------------------------------------------
+
+/** Prints the relative error over random pairs with a measured latency */
+private void report(Random r)
+{
+	final int size = E2ENetwork.getSize();
+	final double[] err = new double[samples];
+	double sum = 0;
+	int n = 0;
+	for (int a = 0; n < samples && a < ATTEMPTS*samples; ++a) {
+		final int i = r.nextInt(size), j = r.nextInt(size);
+		final int lat = measured(i, j);
+		if (lat <= 0) continue;
+		err[n] = Math.abs(CoordinateNetwork.distance(i, j) - lat) / lat;
+		sum += err[n++];
+	}
+	if (n == 0) {
+		System.out.println(prefix + ": no measured latencies");
+		return;
+	}
+	Arrays.sort(err, 0, n);
+	System.out.println(prefix + ": relative error over " + n +
+		" pairs: median " + err[n/2] + " 90th percentile " +
+		err[(int) (0.9*(n-1))] + " mean " + sum/n);
+}
+
+}
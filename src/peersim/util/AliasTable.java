@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+
+package peersim.util;
+
+import java.util.Random;
+
+/**
+* Samples indices 0,...,n-1 with probability proportional to given weights,
+* with replacement, in constant time, using the alias method (in the version
+* of Vose). The table is built in linear time; each draw takes a single
+* random double, whose integer part picks a column and whose fractional
+* part picks either the index of the column or its alias.
+* @see WeightedRandPerm for sampling without replacement
+*/
+public class AliasTable {
+
+
+// ===================== fields ========================================
+// =====================================================================
+
+
+/** Probability of keeping the index of each column */
+private final double[] prob;
+
+/** The other index of each column */
+private final int[] alias;
+
+
+// ====================== initialization ==============================
+// ====================================================================
+
+
+/**
+* Builds the table for the given weights.
+* @param weights non-negative weights, at least one of them positive
+*/
+public AliasTable( double[] weights ) {
+
+	final int n = weights.length;
+	double sum = 0;
+	for(int i=0; i<n; ++i)
+	{
+		if( !(weights[i] >= 0) || Double.isInfinite(weights[i]) )
+			throw new IllegalArgumentException(
+				"weights should be non-negative: w["+i+"]="+weights[i]);
+		sum += weights[i];
+	}
+	if( !(sum > 0) ) throw new IllegalArgumentException(
+		"at least one weight should be positive");
+	
+	prob = new double[n];
+	alias = new int[n];
+	// the columns with less and with more than the average, as stacks
+	final int[] small = new int[n], large = new int[n];
+	int ns = 0, nl = 0;
+	final double[] p = new double[n];
+	for(int i=0; i<n; ++i)
+	{
+		p[i] = weights[i]*n/sum;
+		if( p[i] < 1 ) small[ns++] = i;
+		else large[nl++] = i;
+	}
+	while( ns > 0 && nl > 0 )
+	{
+		final int s = small[--ns], l = large[--nl];
+		prob[s] = p[s];
+		alias[s] = l;
+		p[l] = (p[l]+p[s])-1;
+		if( p[l] < 1 ) small[ns++] = l;
+		else large[nl++] = l;
+	}
+	// what is left is full, up to rounding errors
+	while( nl > 0 ) { final int l = large[--nl]; prob[l] = 1; alias[l] = l; }
+	while( ns > 0 ) { final int s = small[--ns]; prob[s] = 1; alias[s] = s; }
+}
+
+
+// ======================= methods ====================================
+// ====================================================================
+
+
+/** Returns the number of indices. */
+public int size() { return prob.length; }
+
+// --------------------------------------------------------------------
+
+/** Returns an index with probability proportional to its weight. */
+public int next( Random r ) {
+
+	final double u = r.nextDouble()*prob.length;
+	final int i = (int) u;
+	return u-i < prob[i] ? i : alias[i];
+}
+
+}
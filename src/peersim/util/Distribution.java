@@ -0,0 +1,38 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+
+package peersim.util;
+
+import java.util.Random;
+
+/**
+* A probability distribution over the real numbers that can be sampled.
+* Implementations that are configured by
+* {@link peersim.config.Configuration#getInstance} have a constructor that
+* takes the configuration prefix, like protocols and controls; they are used
+* for instance by {@link peersim.transport.RandomDelayTransport}.
+*/
+public interface Distribution {
+
+	/**
+	* Returns a value drawn from the distribution, using the given source
+	* of randomness.
+	*/
+	public double next( Random r );
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+
+package peersim.util;
+
+import java.io.*;
+import java.util.*;
+
+import peersim.config.*;
+
+/**
+* An empirical distribution given by points of its cumulative distribution
+* function (CDF), which is linear between the points: the probability of
+* the first value is the first cumulative probability, and the probability
+* between two consecutive values is the difference of their cumulative
+* probabilities, spread uniformly. The interval is picked with an
+* {@link AliasTable}, so a draw takes constant time however many points
+* there are.
+* <p>
+* The file has one point per line, a value and its cumulative probability
+* (or any non-decreasing weight, it is normalized by the last one),
+* separated by spaces or commas, with non-decreasing values. Empty lines and
+* lines starting with # are ignored.
+*/
+public class EmpiricalDistribution implements Distribution {
+
+
+// ===================== parameters ====================================
+// =====================================================================
+
+
+/**
+* The file containing the CDF.
+* @config
+*/
+private static final String PAR_FILE = "file";
+
+
+// ===================== fields ========================================
+// =====================================================================
+
+
+private final double[] values;
+
+/** Picks the first value (0) or the interval ending at a value */
+private final AliasTable table;
+
+
+// ====================== initialization ==============================
+// ====================================================================
+
+
+/**
+* Reads the CDF from the file given by parameter {@value #PAR_FILE}.
+*/
+public EmpiricalDistribution( String prefix ) {
+
+	final String filename = Configuration.getString(prefix+"."+PAR_FILE);
+	double[][] cdf;
+	try { cdf = read(filename); }
+	catch( FileNotFoundException e ) {
+		throw new IllegalParameterException(prefix+"."+PAR_FILE,
+			filename+" does not exist");
+	}
+	catch( IOException e ) {
+		throw new IllegalParameterException(prefix+"."+PAR_FILE,
+			e.getMessage());
+	}
+	catch( IllegalArgumentException e ) {
+		throw new IllegalParameterException(prefix+"."+PAR_FILE,
+			filename+": "+e.getMessage());
+	}
+	values = cdf[0];
+	table = table(cdf[0],cdf[1]);
+}
+
+// --------------------------------------------------------------------
+
+/**
+* Creates the distribution with the given points of the CDF.
+* @param values non-decreasing values
+* @param cdf their non-decreasing cumulative probabilities, the last one
+* positive (they are normalized by it)
+*/
+public EmpiricalDistribution( double[] values, double[] cdf ) {
+
+	this.values = values.clone();
+	table = table(this.values,cdf);
+}
+
+
+// ======================= methods ====================================
+// ====================================================================
+
+
+public double next( Random r ) {
+
+	final int i = table.next(r);
+	if( i == 0 ) return values[0];
+	return values[i-1]+r.nextDouble()*(values[i]-values[i-1]);
+}
+
+// --------------------------------------------------------------------
+
+/**
+* Reads the points of a CDF from a file (see the class description).
+* @return the values and the cumulative probabilities
+* @throws IOException if the file cannot be read or a line is malformed
+*/
+public static double[][] read( String filename ) throws IOException {
+
+	final ArrayList<double[]> points = new ArrayList<double[]>();
+	try( BufferedReader in = new BufferedReader(new FileReader(filename)) )
+	{
+		String line;
+		int lc = 0;
+		while( (line = in.readLine()) != null )
+		{
+			++lc;
+			line = line.trim();
+			if( line.isEmpty() || line.startsWith("#") ) continue;
+			final String[] tok = line.split("[\\s,]+");
+			if( tok.length != 2 ) throw new IOException(filename+
+				", line "+lc+": expected a value and a probability");
+			try {
+				points.add(new double[] { Double.parseDouble(tok[0]),
+					Double.parseDouble(tok[1]) });
+			} catch( NumberFormatException e ) {
+				throw new IOException(filename+", line "+lc+": "+
+					e.getMessage());
+			}
+		}
+	}
+	final double[][] res = new double[2][points.size()];
+	for(int i=0; i<points.size(); ++i)
+	{
+		res[0][i] = points.get(i)[0];
+		res[1][i] = points.get(i)[1];
+	}
+	return res;
+}
+
+// --------------------------------------------------------------------
+
+private static AliasTable table( double[] values, double[] cdf ) {
+
+	if( values.length == 0 || values.length != cdf.length )
+		throw new IllegalArgumentException(
+			"values and probabilities must be non-empty and as many");
+	final double[] w = new double[cdf.length];
+	for(int i=0; i<cdf.length; ++i)
+	{
+		if( i > 0 && (values[i] < values[i-1] || cdf[i] < cdf[i-1]) )
+			throw new IllegalArgumentException(
+				"the points must be non-decreasing: point "+i);
+		w[i] = ( i == 0 ? cdf[0] : cdf[i]-cdf[i-1] );
+	}
+	return new AliasTable(w);
+}
+
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+
+package peersim.util;
+
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+/**
+* A weighted random permutation of indexes, like {@link WeightedRandPerm}:
+* each element is drawn from the remaining ones with probability
+* proportional to its weight. The weights of the remaining elements are kept
+* in a binary indexed (Fenwick) tree, so that an element is found and
+* removed in logarithmic time instead of the linear scan of
+* {@link WeightedRandPerm}. A reset after a few draws only puts back the
+* drawn elements. It draws the same distribution of permutations, with one
+* random double per element, but not the same permutations for a given seed.
+*/
+public class FastWeightedRandPerm implements IndexIterator {
+
+
+// ======================= private fields ============================
+// ===================================================================
+
+
+/** Holds the weights that are used to initialize the permutation */
+private final double[] w;
+
+/** Holds the sum of the weights until the given index, inclusive. */
+private final double[] wsum;
+
+/** Fenwick tree of the weights of the remaining elements, 1-based */
+private final double[] tree;
+
+/** Whether each element was drawn since the last reset */
+private final boolean[] drawn;
+
+/** The elements drawn since the last reset, in order */
+private final int[] buffer;
+
+/** Tree updates since the tree was last built */
+private long updates = 0;
+
+private int len = 0;
+
+private int pointer = 0;
+
+private double sum = 0.0;
+
+private final Random r;
+
+
+// ======================= initialization ============================
+// ===================================================================
+
+
+/** Set the source of randomness to use and the weights. You need to call
+* {@link #reset} to fully initialize the object.
+* @param r source of randomness
+* @param weights The array that holds the weights for the calculation of the
+* permutation. The length of the array will be an upper bound on the
+* parameter {@link #reset} accepts. If {@link #reset} is called with a
+* parameter less than the length of weights, the prefix of the same length
+* is used.
+* The vector elements must be positive, that is, zero is not accepted either.
+*/
+public FastWeightedRandPerm( Random r, double[] weights ) {
+
+	this.r=r;
+	w = weights.clone();
+	wsum = weights.clone();
+	tree = new double[w.length+1];
+	drawn = new boolean[w.length];
+	buffer = new int[w.length];
+	
+	for(int i=0; i<w.length; ++i)
+	{
+		if( !(w[i] > 0.0) ) throw new IllegalArgumentException(
+			"weights should be positive: w["+i+"]="+w[i]);
+	}
+	
+	for(int i=1; i<w.length; ++i) wsum[i]+=wsum[i-1];
+}
+
+
+// ======================= public methods ============================
+// ===================================================================
+
+
+/**
+* It initiates a random weighted permutation of the integers from 0 to k-1.
+* It does not actually calculate the permutation.
+* The permutation can be read using method {@link #next}.
+* If the previous permutation was of the same length, and only a few
+* elements were drawn from it, it is more efficient.
+* @param k the set is defined as 0,...,k-1
+* @see WeightedRandPerm#reset
+*/
+public void reset(int k) {
+	
+	if( k<0 || k>w.length )
+		throw new IllegalArgumentException(
+			"k should be non-negative and <= "+w.length);
+	
+	final int m = len-pointer;
+	if( k == len && (long)m*(32-Integer.numberOfLeadingZeros(k)) < k &&
+		updates < 16L*k )
+	{
+		// put back the drawn elements
+		for(int j=0; j<m; ++j)
+		{
+			final int i = buffer[j];
+			drawn[i] = false;
+			add(i,w[i]);
+		}
+	}
+	else
+	{
+		for(int j=0; j<m; ++j) drawn[buffer[j]] = false;
+		for(int i=1; i<=k; ++i) tree[i] = w[i-1];
+		for(int i=1; i<=k; ++i)
+		{
+			final int j = i+(i&-i);
+			if( j <= k ) tree[j] += tree[i];
+		}
+		updates = 0;
+		len = k;
+	}
+	pointer = k;
+	sum = ( k==0 ? 0.0 : wsum[k-1] );
+}
+
+// -------------------------------------------------------------------
+
+/**
+* Returns the next element of the permutation.
+* @see WeightedRandPerm#next
+*/
+public int next() {
+	
+	if( pointer < 1 ) throw new NoSuchElementException();
+	
+	// the first element whose cumulative weight exceeds d
+	double d = sum*r.nextDouble();
+	int pos = 0;
+	for(int step=Integer.highestOneBit(len); step>0; step>>=1)
+	{
+		final int nx = pos+step;
+		if( nx <= len && tree[nx] <= d )
+		{
+			pos = nx;
+			d -= tree[nx];
+		}
+	}
+	// rounding errors can point past the end or at a drawn element
+	if( pos >= len || drawn[pos] )
+	{
+		pos = Math.min(pos,len-1);
+		while( drawn[pos] ) pos = ( pos == 0 ? len-1 : pos-1 );
+	}
+	
+	drawn[pos] = true;
+	add(pos,-w[pos]);
+	sum -= w[pos];
+	buffer[len - pointer--] = pos;
+	return pos;
+}
+
+// -------------------------------------------------------------------
+
+public boolean hasNext() { return pointer > 0; }
+
+
+// ======================= private methods ===========================
+// ===================================================================
+
+
+/** Adds x to the weight of element i in the tree */
+private void add(int i, double x) {
+
+	for(int j=i+1; j<=len; j+=j&-j) tree[j] += x;
+	++updates;
+}
+
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package peersim.util;
+
+/**
+* A histogram of non-negative long values with log-linear buckets, in the
+* spirit of HdrHistogram. Values smaller than <code>2^subBits</code> are
+* counted exactly; larger values are counted in buckets whose width is
+* <code>2^-subBits</code> times their magnitude, so that
+* percentiles are reported with a relative error of at most
+* <code>2^-subBits</code>. Memory is fixed (a few thousand longs) and
+* independent of the number of values added, and adding a value takes
+* constant time.
+* @see IncrementalStats
+*/
+public class LogHistogram {
+
+
+// ===================== fields ========================================
+// =====================================================================
+
+
+private final int subBits;
+
+private final long[] counts;
+
+private long n;
+
+private long sum;
+
+private long min;
+
+private long max;
+
+// ====================== initialization ==============================
+// ====================================================================
+
+
+/** Creates a histogram with 5 sub-bucket bits (3% relative error). */
+public LogHistogram() { this(5); }
+
+// --------------------------------------------------------------------
+
+/**
+* Creates a histogram with the given number of sub-bucket bits.
+* @param subBits between 1 and 16
+*/
+public LogHistogram(int subBits) {
+
+	if (subBits < 1 || subBits > 16)
+		throw new IllegalArgumentException("subBits must be in [1,16]");
+	this.subBits = subBits;
+	counts = new long[(64-subBits+1) << subBits];
+	reset();
+}
+
+// --------------------------------------------------------------------
+
+/** Resets the histogram to reflect the zero elements set. */
+public void reset() {
+
+	java.util.Arrays.fill(counts, 0);
+	n = 0;
+	sum = 0;
+	min = Long.MAX_VALUE;
+	max = Long.MIN_VALUE;
+}
+
+
+// ======================== methods ===================================
+// ====================================================================
+
+
+/** Adds a value. Negative values are counted as 0. */
+public void add(long value) {
+
+	if (value < 0) value = 0;
+	counts[index(value)]++;
+	n++;
+	sum += value;
+	if (value < min) min = value;
+	if (value > max) max = value;
+}
+
+// --------------------------------------------------------------------
+
+/** Adds the counts of another histogram with the same number of
+* sub-bucket bits to this one. */
+public void add(LogHistogram other) {
+
+	if (other.subBits != subBits)
+		throw new IllegalArgumentException("Incompatible histograms");
+	for (int i = 0; i < counts.length; ++i) counts[i] += other.counts[i];
+	n += other.n;
+	sum += other.sum;
+	if (other.min < min) min = other.min;
+	if (other.max > max) max = other.max;
+}
+
+// --------------------------------------------------------------------
+
+/** The number of values added. */
+public long getN() { return n; }
+
+// --------------------------------------------------------------------
+
+/** The largest value added, or 0 if empty. */
+public long getMax() { return n == 0 ? 0 : max; }
+
+// --------------------------------------------------------------------
+
+/** The smallest value added, or 0 if empty. */
+public long getMin() { return n == 0 ? 0 : min; }
+
+// --------------------------------------------------------------------
+
+/** The exact average of the values added, or 0 if empty. */
+public double getAverage() { return n == 0 ? 0 : sum / (double) n; }
+
+// --------------------------------------------------------------------
+
+/**
+* Returns the value at the given percentile: the largest value that is
+* equivalent (falls in the same bucket) to the smallest value such that
+* at least <code>p</code> percent of the values are less or equal to it.
+* The result is never larger than {@link #getMax}. Returns 0 if empty.
+* @param p the percentile, between 0 and 100
+*/
+public long getPercentile(double p) {
+
+	if (n == 0) return 0;
+	long rank = (long) Math.ceil(p / 100.0 * n);
+	if (rank < 1) rank = 1;
+	long seen = 0;
+	for (int i = 0; i < counts.length; ++i)
+	{
+		seen += counts[i];
+		if (seen >= rank) return Math.min(highest(i), max);
+	}
+	return max;
+}
+
+// --------------------------------------------------------------------
+
+/** Prints n, min, avg, p50, p90, p99 and max separated by spaces. */
+public String toString() {
+
+	return n+" "+getMin()+" "+getAverage()+" "+getPercentile(50)+" "+
+		getPercentile(90)+" "+getPercentile(99)+" "+getMax();
+}
+
+// --------------------------------------------------------------------
+
+private int index(long v) {
+
+	if (v < (1L << subBits)) return (int) v;
+	final int e = 63 - Long.numberOfLeadingZeros(v);
+	return ((e-subBits+1) << subBits) +
+		(int)((v >>> (e-subBits)) & ((1L << subBits)-1));
+}
+
+// --------------------------------------------------------------------
+
+/** The largest value that falls in bucket i. */
+private long highest(int i) {
+
+	if (i < (1 << subBits)) return i;
+	final int e = (i >>> subBits) + subBits - 1;
+	final long sub = i & ((1 << subBits)-1);
+	final long low = ((1L << subBits) + sub) << (e-subBits);
+	final long high = low + (1L << (e-subBits)) - 1;
+	return high < 0 ? Long.MAX_VALUE : high;
+}
+
+}
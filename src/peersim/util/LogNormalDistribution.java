@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+
+package peersim.util;
+
+import java.util.Random;
+
+import peersim.config.*;
+
+/**
+* The log-normal distribution: the logarithm of the values is normally
+* distributed, with mean {@value #PAR_MU} and standard deviation
+* {@value #PAR_SIGMA}. The median is exp(mu), and the tail is heavier the
+* larger sigma is. It is a common model of network delays.
+*/
+public class LogNormalDistribution implements Distribution {
+
+
+// ===================== parameters ====================================
+// =====================================================================
+
+
+/**
+* The mean of the logarithm of the values.
+* @config
+*/
+private static final String PAR_MU = "mu";
+
+/**
+* The standard deviation of the logarithm of the values.
+* @config
+*/
+private static final String PAR_SIGMA = "sigma";
+
+
+// ===================== fields ========================================
+// =====================================================================
+
+
+private final double mu;
+
+private final double sigma;
+
+
+// ====================== initialization ==============================
+// ====================================================================
+
+
+/** Reads the parameters. */
+public LogNormalDistribution( String prefix ) {
+
+	this(Configuration.getDouble(prefix+"."+PAR_MU),
+		Configuration.getDouble(prefix+"."+PAR_SIGMA));
+}
+
+// --------------------------------------------------------------------
+
+/**
+* @param mu the mean of the logarithm of the values
+* @param sigma the standard deviation of the logarithm of the values,
+* non-negative
+*/
+public LogNormalDistribution( double mu, double sigma ) {
+
+	if( !(sigma >= 0) ) throw new IllegalArgumentException(
+		"sigma must be non-negative: "+sigma);
+	this.mu = mu;
+	this.sigma = sigma;
+}
+
+
+// ======================= methods ====================================
+// ====================================================================
+
+
+public double next( Random r ) {
+
+	return Math.exp(mu+sigma*r.nextGaussian());
+}
+
+}
@@ -0,0 +1,261 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package peersim.util;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+* Named counters, gauges and timers that belong to a single experiment.
+* {@link peersim.Simulator} calls {@link #startExperiment} before and
+* {@link #endExperiment} after each experiment (see
+* <code>simulation.experiments</code>); the former replaces the
+* {@link #current} registry with an empty one, so that metrics of different
+* experiments never mix. Components that keep their own state (for example
+* per-experiment output files) can register a {@link Listener}.
+* <p>
+* All metric types can be updated concurrently, e.g. by the parallel event
+* driven engine. Counters are striped ({@link LongAdder}), so that
+* concurrent increments do not contend. Components on a hot path should look
+* up their metrics once per experiment (from
+* {@link Listener#experimentStarted}) and keep the references.
+*/
+public class MetricsRegistry {
+
+
+// ===================== static fields =================================
+// =====================================================================
+
+
+private static volatile MetricsRegistry current = new MetricsRegistry(0);
+
+private static final List<Listener> listeners =
+	new CopyOnWriteArrayList<Listener>();
+
+
+// ===================== fields ========================================
+// =====================================================================
+
+
+private final int experiment;
+
+private final ConcurrentMap<String,Counter> counters =
+	new ConcurrentSkipListMap<String,Counter>();
+
+private final ConcurrentMap<String,Gauge> gauges =
+	new ConcurrentSkipListMap<String,Gauge>();
+
+private final ConcurrentMap<String,Timer> timers =
+	new ConcurrentSkipListMap<String,Timer>();
+
+
+// ====================== initialization ==============================
+// ====================================================================
+
+
+private MetricsRegistry(int experiment) { this.experiment = experiment; }
+
+
+// ===================== static methods ===============================
+// ====================================================================
+
+
+/** The registry of the running experiment. */
+public static MetricsRegistry current() { return current; }
+
+// --------------------------------------------------------------------
+
+/**
+* Installs an empty registry for experiment <code>k</code> and notifies the
+* listeners.
+*/
+public static void startExperiment(int k) {
+
+	current = new MetricsRegistry(k);
+	for (Listener l : listeners) l.experimentStarted(current);
+}
+
+// --------------------------------------------------------------------
+
+/** Notifies the listeners that the current experiment is over. */
+public static void endExperiment() {
+
+	for (Listener l : listeners) l.experimentEnded(current);
+}
+
+// --------------------------------------------------------------------
+
+/**
+* Registers a listener. If an experiment is running, its
+* {@link Listener#experimentStarted} method is not called for it, the
+* listener must initialize itself from {@link #current}.
+*/
+public static void addListener(Listener l) { listeners.add(l); }
+
+
+// ======================== methods ===================================
+// ====================================================================
+
+
+/** The index of the experiment this registry belongs to. */
+public int getExperiment() { return experiment; }
+
+// --------------------------------------------------------------------
+
+/** Returns the counter with the given name, creating it if needed. */
+public Counter counter(String name) {
+
+	Counter c = counters.get(name);
+	if (c != null) return c;
+	c = new Counter();
+	Counter old = counters.putIfAbsent(name, c);
+	return old == null ? c : old;
+}
+
+// --------------------------------------------------------------------
+
+/** Returns the gauge with the given name, creating it if needed. */
+public Gauge gauge(String name) {
+
+	Gauge g = gauges.get(name);
+	if (g != null) return g;
+	g = new Gauge();
+	Gauge old = gauges.putIfAbsent(name, g);
+	return old == null ? g : old;
+}
+
+// --------------------------------------------------------------------
+
+/** Returns the timer with the given name, creating it if needed. */
+public Timer timer(String name) {
+
+	Timer t = timers.get(name);
+	if (t != null) return t;
+	t = new Timer();
+	Timer old = timers.putIfAbsent(name, t);
+	return old == null ? t : old;
+}
+
+// --------------------------------------------------------------------
+
+/** Prints all metrics, one per line, sorted by name within each type. */
+public String toString() {
+
+	StringBuilder sb = new StringBuilder();
+	for (Map.Entry<String,Counter> e : counters.entrySet())
+		sb.append("counter ").append(e.getKey()).append(' ')
+		  .append(e.getValue().get()).append('\n');
+	for (Map.Entry<String,Gauge> e : gauges.entrySet())
+		sb.append("gauge ").append(e.getKey()).append(' ')
+		  .append(e.getValue().get()).append('\n');
+	for (Map.Entry<String,Timer> e : timers.entrySet())
+		sb.append("timer ").append(e.getKey()).append(' ')
+		  .append(e.getValue()).append('\n');
+	return sb.toString();
+}
+
+
+// ======================== metric types ==============================
+// ====================================================================
+
+
+/** A monotonic counter. */
+public static final class Counter {
+
+	private final LongAdder value = new LongAdder();
+
+	public void increment() { value.increment(); }
+
+	public void add(long x) { value.add(x); }
+
+	public long get() { return value.sum(); }
+}
+
+// --------------------------------------------------------------------
+
+/** A value that is set rather than accumulated. */
+public static final class Gauge {
+
+	private final AtomicLong value = new AtomicLong();
+
+	public void set(long x) { value.set(x); }
+
+	/** Sets the value to x if x is larger. */
+	public void max(long x) {
+
+		long v;
+		while (x > (v = value.get()) && !value.compareAndSet(v, x));
+	}
+
+	public long get() { return value.get(); }
+}
+
+// --------------------------------------------------------------------
+
+/**
+* Accumulates durations in nanoseconds. Usage:
+* <code>long t = timer.start(); ...; timer.stop(t);</code>
+*/
+public static final class Timer {
+
+	private final LongAdder count = new LongAdder();
+
+	private final LongAdder total = new LongAdder();
+
+	private final Gauge max = new Gauge();
+
+	public long start() { return System.nanoTime(); }
+
+	public void stop(long start) { record(System.nanoTime() - start); }
+
+	public void record(long nanos) {
+
+		count.increment();
+		total.add(nanos);
+		max.max(nanos);
+	}
+
+	public long getCount() { return count.sum(); }
+
+	public long getTotalNanos() { return total.sum(); }
+
+	public long getMaxNanos() { return max.get(); }
+
+	/** Prints count, total and max in milliseconds. */
+	public String toString() {
+
+		return getCount()+" "+getTotalNanos()/1e6+"ms max "+
+			getMaxNanos()/1e6+"ms";
+	}
+}
+
+// --------------------------------------------------------------------
+
+/** Notified at the boundaries of experiments. */
+public interface Listener {
+
+	/** Called after the registry of the new experiment is installed. */
+	void experimentStarted(MetricsRegistry registry);
+
+	/** Called when the experiment is over, before the next one starts. */
+	void experimentEnded(MetricsRegistry registry);
+}
+
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+
+package peersim.util;
+
+import java.util.Random;
+
+import peersim.config.*;
+
+/**
+* The Pareto distribution: values are at least {@value #PAR_SCALE}, and the
+* probability of exceeding x is (scale/x)<sup>shape</sup>. The mean is
+* infinite if the shape is at most 1, and the variance if it is at most 2.
+* It models heavy tailed delays, such as those of congested paths.
+*/
+public class ParetoDistribution implements Distribution {
+
+
+// ===================== parameters ====================================
+// =====================================================================
+
+
+/**
+* The smallest value.
+* @config
+*/
+private static final String PAR_SCALE = "scale";
+
+/**
+* The exponent of the tail.
+* @config
+*/
+private static final String PAR_SHAPE = "shape";
+
+
+// ===================== fields ========================================
+// =====================================================================
+
+
+private final double scale;
+
+/** Inverse of the shape */
+private final double inv;
+
+
+// ====================== initialization ==============================
+// ====================================================================
+
+
+/** Reads the parameters. */
+public ParetoDistribution( String prefix ) {
+
+	this(Configuration.getDouble(prefix+"."+PAR_SCALE),
+		Configuration.getDouble(prefix+"."+PAR_SHAPE));
+}
+
+// --------------------------------------------------------------------
+
+/**
+* @param scale the smallest value, positive
+* @param shape the exponent of the tail, positive
+*/
+public ParetoDistribution( double scale, double shape ) {
+
+	if( !(scale > 0) || !(shape > 0) ) throw new IllegalArgumentException(
+		"scale and shape must be positive: "+scale+" "+shape);
+	this.scale = scale;
+	inv = 1/shape;
+}
+
+
+// ======================= methods ====================================
+// ====================================================================
+
+
+public double next( Random r ) {
+
+	// 1-u is in (0,1]
+	return scale/Math.pow(1-r.nextDouble(),inv);
+}
+
+}